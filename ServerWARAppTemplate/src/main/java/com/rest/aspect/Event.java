@@ -33,6 +33,23 @@ public class Event implements Serializable {
 		remoteAddress = request.getRemoteAddr();
 	}
 
+	/**
+	 * An event decoded by EventCodec.
+	 */
+	Event(long startTime, long duration, String method, String accept, String resourcePath, String resourceQueryParams,
+			String remoteAddress, int status, String message) {
+		this.startTime = startTime;
+		this.duration = duration;
+		this.method = method;
+		this.accept = accept;
+		this.resourcePath = resourcePath;
+		this.resourceQueryParams = resourceQueryParams;
+		this.resourceURI = resourceQueryParams != null ? resourcePath + "?" + resourceQueryParams : resourcePath;
+		this.remoteAddress = remoteAddress;
+		this.status = status;
+		this.message = message;
+	}
+
 	public Event start() {
 		startTime = System.currentTimeMillis();
 		return this;
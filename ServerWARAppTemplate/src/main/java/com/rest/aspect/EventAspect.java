@@ -14,7 +14,7 @@ import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.beans.factory.annotation.Autowired;
 
-import com.rest.jms.producer.JmsProducer;
+import com.rest.jms.producer.EventPipeline;
 
 /**
  * Aspect for generating Events for each REST method. These
@@ -26,7 +26,7 @@ public class EventAspect {
 	private static final Logger LOG = LogManager.getLogger(EventAspect.class);
 	
 	@Autowired
-	private JmsProducer jmsProducer;
+	private EventPipeline eventPipeline;
 	
 	/**
 	 * Around advice for REST method entry points.
@@ -71,8 +71,9 @@ public class EventAspect {
         	throw e;
         	
         } finally {
-        	// Place the event on the queue to be processed.
-        	jmsProducer.send(event);
+        	// Place the event on the queue to be processed. It is sent in the background, a slow 
+        	// broker doesn't hold up the response.
+        	eventPipeline.publish(event);
         }
 	}
 
@@ -0,0 +1,250 @@
+package com.rest.aspect;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A compact binary encoding of Event, sent in a BytesMessage instead of a Java serialized ObjectMessage.
+ *
+ * An event is the version byte followed by its fields in order:
+ *
+ * startTime, duration and status as varints, 7 bits per byte with the high bit set on all but the last.
+ * method and accept as a code, 0 for null, 1 for a string that follows and 2 and up for an entry of METHODS
+ * or ACCEPTS.
+ * resourcePath as a code, 0 for null, 1 for a string that follows and 2 and up for an entry of PATHS that the
+ * rest of the path, a string, follows.
+ * resourceQueryParams, remoteAddress and message as strings, the varint length of their UTF-8 bytes plus one,
+ * 0 for null, followed by the bytes.
+ *
+ * resourceURI isn't sent, it is rebuilt from the path and the query. A GET /customers/1 from an IPv4 address
+ * takes 27 bytes where Java serialization takes 299, most of them the class descriptor. See EventCodecBenchmark.
+ *
+ * An envelope of many events is the events back to back, a message of one event is an envelope of one.
+ *
+ * The tables are part of the version, a new entry in them, a new field or any other change to the layout takes
+ * a new VERSION. decode rejects the versions it doesn't know.
+ */
+public final class EventCodec {
+
+	public static final byte VERSION = 1;
+
+	static final String[] METHODS = { "GET", "POST", "PUT", "DELETE", "HEAD", "OPTIONS", "PATCH" };
+
+	static final String[] ACCEPTS = { "application/json", "application/xml", "*/*", "text/plain", "text/html" };
+
+	// The paths of the resources, a path is sent as the longest of them it starts with and the rest of it.
+	static final String[] PATHS = { "/customers", "/customers/", "/customers/batch", "/customers/export",
+			"/admin/hot-customers", "/hello" };
+
+	private static final int NULL = 0;
+	private static final int LITERAL = 1;
+	private static final int INTERNED = 2;
+
+	private static final ThreadLocal<ByteBuffer> SCRATCH = ThreadLocal.withInitial(() -> ByteBuffer.allocate(256));
+
+	private EventCodec() {
+	}
+
+	public static byte[] encode(Event event) {
+		return encode(buffer -> encode(event, buffer));
+	}
+
+	/**
+	 * @return the envelope of the events.
+	 */
+	public static byte[] encode(List<Event> events) {
+		return encode(buffer -> events.forEach(event -> encode(event, buffer)));
+	}
+
+	private static byte[] encode(Consumer<ByteBuffer> writer) {
+		ByteBuffer buffer = SCRATCH.get();
+		while (true) {
+			buffer.clear();
+			try {
+				writer.accept(buffer);
+				return Arrays.copyOf(buffer.array(), buffer.position());
+			} catch (BufferOverflowException e) {
+				// A long message or many events, keep the larger buffer for the next ones.
+				buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+				SCRATCH.set(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Writes the event at the position of the buffer.
+	 *
+	 * @throws BufferOverflowException if the buffer is too small, its position is then undefined.
+	 */
+	public static void encode(Event event, ByteBuffer buffer) {
+		buffer.put(VERSION);
+		putVarint(buffer, event.getStartTime());
+		putVarint(buffer, event.getDuration());
+		putVarint(buffer, event.getStatus());
+		putInterned(buffer, METHODS, event.getMethod());
+		putInterned(buffer, ACCEPTS, event.getAccept());
+		putPath(buffer, event.getResourcePath());
+		putString(buffer, event.getResourceQueryParams());
+		putString(buffer, event.getRemoteAddress());
+		putString(buffer, event.getMessage());
+	}
+
+	public static Event decode(byte[] bytes) {
+		return decode(ByteBuffer.wrap(bytes));
+	}
+
+	/**
+	 * Reads an event at the position of the buffer. The strings are decoded straight from the array of the
+	 * buffer and the interned ones aren't allocated at all.
+	 *
+	 * @throws IllegalArgumentException if the event was encoded by a version this one doesn't know.
+	 */
+	public static Event decode(ByteBuffer buffer) {
+		byte version = buffer.get();
+		if (version != VERSION) {
+			throw new IllegalArgumentException("Unknown Event encoding version " + version);
+		}
+		long startTime = getVarint(buffer);
+		long duration = getVarint(buffer);
+		int status = (int) getVarint(buffer);
+		String method = getInterned(buffer, METHODS);
+		String accept = getInterned(buffer, ACCEPTS);
+		String resourcePath = getPath(buffer);
+		String resourceQueryParams = getString(buffer);
+		String remoteAddress = getString(buffer);
+		String message = getString(buffer);
+		return new Event(startTime, duration, method, accept, resourcePath, resourceQueryParams, remoteAddress, status, message);
+	}
+
+	/**
+	 * Reads the events of an envelope from the position of the buffer to its limit.
+	 */
+	public static List<Event> decodeAll(ByteBuffer buffer) {
+		List<Event> events = new ArrayList<>();
+		while (buffer.hasRemaining()) {
+			events.add(decode(buffer));
+		}
+		return events;
+	}
+
+	static void putVarint(ByteBuffer buffer, long value) {
+		while ((value & ~0x7FL) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	static long getVarint(ByteBuffer buffer) {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Malformed varint");
+	}
+
+	private static void putInterned(ByteBuffer buffer, String[] table, String value) {
+		if (value == null) {
+			buffer.put((byte) NULL);
+			return;
+		}
+		for (int i = 0; i < table.length; i++) {
+			if (table[i].equals(value)) {
+				putVarint(buffer, INTERNED + i);
+				return;
+			}
+		}
+		buffer.put((byte) LITERAL);
+		putString(buffer, value);
+	}
+
+	private static String getInterned(ByteBuffer buffer, String[] table) {
+		int code = (int) getVarint(buffer);
+		if (code == NULL) {
+			return null;
+		}
+		if (code == LITERAL) {
+			return getString(buffer);
+		}
+		return lookup(table, code);
+	}
+
+	private static String lookup(String[] table, int code) {
+		if (code < INTERNED || code - INTERNED >= table.length) {
+			throw new IllegalArgumentException("Unknown code " + code);
+		}
+		return table[code - INTERNED];
+	}
+
+	private static void putPath(ByteBuffer buffer, String path) {
+		if (path == null) {
+			buffer.put((byte) NULL);
+			return;
+		}
+		int longest = -1;
+		for (int i = 0; i < PATHS.length; i++) {
+			if (path.startsWith(PATHS[i]) && (longest < 0 || PATHS[i].length() > PATHS[longest].length())) {
+				longest = i;
+			}
+		}
+		if (longest < 0) {
+			buffer.put((byte) LITERAL);
+			putString(buffer, path);
+		} else {
+			putVarint(buffer, INTERNED + longest);
+			putString(buffer, path.substring(PATHS[longest].length()));
+		}
+	}
+
+	private static String getPath(ByteBuffer buffer) {
+		int code = (int) getVarint(buffer);
+		if (code == NULL) {
+			return null;
+		}
+		if (code == LITERAL) {
+			return getString(buffer);
+		}
+		String prefix = lookup(PATHS, code);
+		String rest = getString(buffer);
+		return rest.isEmpty() ? prefix : prefix + rest;
+	}
+
+	private static void putString(ByteBuffer buffer, String value) {
+		if (value == null) {
+			buffer.put((byte) NULL);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		putVarint(buffer, bytes.length + 1L);
+		buffer.put(bytes);
+	}
+
+	private static String getString(ByteBuffer buffer) {
+		int length = (int) getVarint(buffer) - 1;
+		if (length < 0) {
+			return null;
+		}
+		if (length > buffer.remaining()) {
+			throw new IllegalArgumentException("String of " + length + " bytes past the end of the event");
+		}
+		String value;
+		if (buffer.hasArray()) {
+			value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + length);
+		} else {
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			value = new String(bytes, StandardCharsets.UTF_8);
+		}
+		return value;
+	}
+}
@@ -1,14 +1,45 @@
 package com.rest.dao;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 import com.rest.domain.Customer;
 
 public abstract interface CustomerDAO {
 
 	public abstract Customer createCustomer(Customer customer);
+	/**
+	 * Creates all the customers in a single transaction, the generated ids are set on the customers.
+	 */
+	public abstract List<Customer> createCustomers(List<Customer> customers);
+	/**
+	 * Updates the customer in a single statement and increments its version. If the customer carries a 
+	 * version the update only succeeds if the row still has that version.
+	 * @throws org.springframework.dao.EmptyResultDataAccessException if there is no customer with the id.
+	 * @throws org.springframework.dao.OptimisticLockingFailureException if the customer was updated since the version was read.
+	 */
 	public abstract void updateCustomer(int id, Customer customer);
 	public abstract void deleteCustomer(int id);
 	public abstract Customer getCustomer(int id);
+	/**
+	 * Retrieves the customer with the given email using the unique index on the email, null if there is none.
+	 */
+	public abstract Customer findByEmail(String email);
 	public abstract List<Customer> getCustomers();
+	/**
+	 * Keyset pagination, returns up to limit customers with an id greater than afterId ordered by id.
+	 * Pass 0 as the afterId to retrieve the first page.
+	 */
+	public abstract List<Customer> getCustomers(int afterId, int limit);
+	/**
+	 * Retrieves the customers with the given ids in the order of the ids, ids without a customer are left out.
+	 * Cached customers are retrieved from the cache in one call and the rest from the database in one query.
+	 */
+	public abstract List<Customer> getCustomers(Collection<Integer> ids);
+	/**
+	 * Hands every customer ordered by id to the consumer as it is read from the database without
+	 * holding the whole table in memory. Streamed customers are not placed in the cache.
+	 */
+	public abstract void streamCustomers(Consumer<Customer> consumer);
 }
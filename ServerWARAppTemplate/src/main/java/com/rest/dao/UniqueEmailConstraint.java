@@ -0,0 +1,46 @@
+package com.rest.dao;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+
+/**
+ * The unique constraint on the email of the customers table, CUSTOMERS_IDX01.
+ *
+ * Each DAO surfaces a violation differently, JDBC as a SQLException, Hibernate as a ConstraintViolationException,
+ * JPA as a PersistenceException and MyBatis as a PersistenceException. All of them wrap the SQLException
+ * of the driver so the cause chain is searched for it.
+ */
+public final class UniqueEmailConstraint {
+
+	public static final String NAME = "CUSTOMERS_IDX01";
+
+	// SQL State class for an integrity constraint violation.
+	private static final String INTEGRITY_CONSTRAINT_VIOLATION = "23";
+
+	private UniqueEmailConstraint() {}
+
+	/**
+	 * @param e the exception thrown when writing a customer.
+	 * @return true if the write failed because another customer already has the email.
+	 */
+	public static boolean isViolatedBy(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof SQLException) {
+				SQLException sqlException = (SQLException) cause;
+
+				boolean integrityViolation = sqlException instanceof SQLIntegrityConstraintViolationException
+						|| (sqlException.getSQLState() != null && sqlException.getSQLState().startsWith(INTEGRITY_CONSTRAINT_VIOLATION));
+
+				// Both MySQL and H2 name the violated index in the message.
+				if (integrityViolation && sqlException.getMessage() != null
+						&& sqlException.getMessage().toUpperCase().contains(NAME)) {
+					return true;
+				}
+			}
+			if (cause.getCause() == cause) {
+				break;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,82 @@
+package com.rest.dao.cache;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * The int overloads of a cache keyed by Integer, they box the key and call the cache.
+ */
+class BoxingIntCacheWrapper<V> implements IntCacheWrapper<V> {
+
+	private final CacheWrapper<Integer, V> cache;
+
+	BoxingIntCacheWrapper(CacheWrapper<Integer, V> cache) {
+		this.cache = cache;
+	}
+
+	public void put(int key, V value) {
+		cache.put(key, value);
+	}
+
+	public boolean putIfAbsent(int key, V value) {
+		return cache.putIfAbsent(key, value);
+	}
+
+	public V get(int key) {
+		return cache.get(Integer.valueOf(key));
+	}
+
+	public V get(int key, IntFunction<? extends V> loader) {
+		return cache.get(key, (Function<Integer, V>) boxed -> loader.apply(boxed));
+	}
+
+	public boolean containsKey(int key) {
+		return cache.containsKey(key);
+	}
+
+	public void remove(int key) {
+		cache.remove(key);
+	}
+
+	public void put(Integer key, V value) {
+		cache.put(key, value);
+	}
+
+	public boolean putIfAbsent(Integer key, V value) {
+		return cache.putIfAbsent(key, value);
+	}
+
+	public V get(Integer key) {
+		return cache.get(key);
+	}
+
+	public V get(Integer key, Function<? super Integer, ? extends V> loader) {
+		return cache.get(key, loader);
+	}
+
+	public Map<Integer, V> getAll(Set<? extends Integer> keys) {
+		return cache.getAll(keys);
+	}
+
+	public void putAll(Map<? extends Integer, ? extends V> entries) {
+		cache.putAll(entries);
+	}
+
+	public void removeAll(Set<? extends Integer> keys) {
+		cache.removeAll(keys);
+	}
+
+	public boolean containsKey(Integer key) {
+		return cache.containsKey(key);
+	}
+
+	public void remove(Integer key) {
+		cache.remove(key);
+	}
+
+	public void clear() {
+		cache.clear();
+	}
+}
@@ -0,0 +1,327 @@
+package com.rest.dao.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import com.rest.domain.Customer;
+
+/**
+ * Loads the hottest customers into the customer cache at startup, before the application takes requests.
+ *
+ * An empty cache after a deploy sends every request to the database for the first minutes. The customers
+ * to load are the ids of the hot key file when there is one, one id per line, otherwise the customers with
+ * the highest ids. They are split in chunks of consecutive ids that several threads load in parallel, each
+ * with its own pooled connection. The warm-up gives up when its time budget is spent, the customers it
+ * didn't load are loaded by the requests as before.
+ *
+ * The customers already cached, restored from the persistent tier of the cache, are not queried again. The
+ * customers are put with putIfAbsent so a customer a request loaded in the meantime is kept.
+ */
+@ManagedResource(objectName = "com.rest:type=Cache,name=Warmer", description = "Loads the hottest customers at startup")
+public class CacheWarmer {
+
+	private static final Logger LOG = LogManager.getLogger(CacheWarmer.class);
+
+	// The number of customers loaded per query.
+	static final int CHUNK_SIZE = 1000;
+
+	private final DataSource dataSource;
+	private final CacheWrapper<Integer, Customer> customerCache;
+	private final int customers;
+	private final int threads;
+	private final long budgetMillis;
+
+	private Path hotKeysFile;
+
+	private volatile int target;
+	private final LongAdder loaded = new LongAdder();
+	private final LongAdder cached = new LongAdder();
+	private final AtomicInteger remainingChunks = new AtomicInteger();
+	private volatile long elapsedMillis;
+	private volatile boolean done;
+
+	/**
+	 * @param dataSource the pooled connections to load with.
+	 * @param customerCache the cache to load into.
+	 * @param customers the number of customers to load, 0 to skip the warm-up.
+	 * @param threads the number of chunks loaded in parallel, at most the size of the pool.
+	 * @param budgetMillis how long the warm-up may take.
+	 */
+	public CacheWarmer(DataSource dataSource, CacheWrapper<Integer, Customer> customerCache, int customers, int threads, long budgetMillis) {
+		this.dataSource = dataSource;
+		this.customerCache = customerCache;
+		this.customers = customers;
+		this.threads = threads;
+		this.budgetMillis = budgetMillis;
+	}
+
+	/**
+	 * @param hotKeysFile the file of the ids of the hottest customers, the highest ids are loaded when it doesn't exist.
+	 */
+	public void setHotKeysFile(String hotKeysFile) {
+		this.hotKeysFile = Paths.get(hotKeysFile);
+	}
+
+	/**
+	 * Loads the customers and returns when they are loaded or the time budget is spent.
+	 */
+	public void warmUp() throws InterruptedException {
+		if (customers <= 0) {
+			done = true;
+			return;
+		}
+
+		long start = System.currentTimeMillis();
+		List<Chunk> chunks = chunks();
+		remainingChunks.set(chunks.size());
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "cache-warmer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			for (Chunk chunk : chunks) {
+				executor.execute(() -> load(chunk, start + budgetMillis));
+			}
+			executor.shutdown();
+			if (!executor.awaitTermination(budgetMillis, TimeUnit.MILLISECONDS)) {
+				LOG.warn("Cache warm-up ran out of its {} ms budget with {} chunks left.", budgetMillis, remainingChunks.get());
+			}
+		} finally {
+			executor.shutdownNow();
+			elapsedMillis = System.currentTimeMillis() - start;
+			done = true;
+		}
+		LOG.info("Cache warm-up loaded {} of {} customers in {} ms, {} were already cached.", loaded.sum(), target, elapsedMillis,
+				cached.sum());
+	}
+
+	private List<Chunk> chunks() {
+		List<Chunk> chunks = new ArrayList<>();
+
+		List<Integer> hotIds = readHotKeys();
+		if (!hotIds.isEmpty()) {
+			target = hotIds.size();
+			Collections.sort(hotIds);
+			for (int i = 0; i < hotIds.size(); i += CHUNK_SIZE) {
+				chunks.add(new Chunk(hotIds.subList(i, Math.min(i + CHUNK_SIZE, hotIds.size()))));
+			}
+			return chunks;
+		}
+
+		// The last id range, the customers created last are the ones most likely asked for.
+		int maxId = maxId();
+		int minId = Math.max(1, maxId - customers + 1);
+		target = maxId - minId + 1;
+		for (int from = minId; from <= maxId; from += CHUNK_SIZE) {
+			chunks.add(new Chunk(from, Math.min(from + CHUNK_SIZE - 1, maxId)));
+		}
+		return chunks;
+	}
+
+	private List<Integer> readHotKeys() {
+		if (hotKeysFile == null || !Files.exists(hotKeysFile)) {
+			return new ArrayList<>();
+		}
+		try (Stream<String> lines = Files.lines(hotKeysFile)) {
+			return lines.map(String::trim).filter(line -> !line.isEmpty()).map(Integer::valueOf)
+					.distinct().limit(customers).collect(Collectors.toList());
+		} catch (IOException | NumberFormatException e) {
+			LOG.warn("Error reading the hot keys in {}, loading the last customers instead.", hotKeysFile, e);
+			return new ArrayList<>();
+		}
+	}
+
+	private int maxId() {
+		try (Connection conn = dataSource.getConnection();
+				PreparedStatement statement = conn.prepareStatement("SELECT MAX(id) FROM Customers")) {
+			ResultSet rs = statement.executeQuery();
+			return rs.next() ? rs.getInt(1) : 0;
+		} catch (SQLException e) {
+			// Nothing is loaded, the requests load the customers instead.
+			LOG.error("Error retrieving the last customer id, skipping the cache warm-up", e);
+			return 0;
+		}
+	}
+
+	private void load(Chunk chunk, long deadline) {
+		if (System.currentTimeMillis() > deadline || Thread.currentThread().isInterrupted()) {
+			return;
+		}
+
+		Chunk uncached = chunk.uncached(customerCache);
+		cached.add(chunk.size() - (uncached != null ? uncached.size() : 0));
+		if (uncached == null) {
+			remainingChunks.decrementAndGet();
+			return;
+		}
+		chunk = uncached;
+
+		try (Connection conn = dataSource.getConnection();
+				PreparedStatement statement = conn.prepareStatement(chunk.sql())) {
+
+			chunk.setParameters(statement);
+			ResultSet rs = statement.executeQuery();
+
+			while (rs.next()) {
+				Customer customer = new Customer(rs.getString("first_name"), rs.getString("last_name"), rs.getString("email"));
+				customer.setId(rs.getInt("id"));
+				customer.setVersion(rs.getInt("version"));
+				if (customerCache.putIfAbsent(customer.getId(), customer)) {
+					loaded.increment();
+				}
+			}
+			remainingChunks.decrementAndGet();
+
+		} catch (SQLException e) {
+			// The requests load the customers of the chunk instead.
+			LOG.error("Error warming up the cache with the Customers {}", chunk, e);
+		}
+	}
+
+	/**
+	 * @return the number of customers the warm-up loads.
+	 */
+	@ManagedAttribute(description = "Customers the warm-up loads")
+	public int getTarget() {
+		return target;
+	}
+
+	/**
+	 * @return the number of customers loaded so far.
+	 */
+	@ManagedAttribute(description = "Customers loaded so far")
+	public long getLoaded() {
+		return loaded.sum();
+	}
+
+	/**
+	 * @return the number of customers found already cached, they are not loaded.
+	 */
+	@ManagedAttribute(description = "Customers found already cached")
+	public long getCached() {
+		return cached.sum();
+	}
+
+	/**
+	 * @return the number of chunks of customers not loaded yet.
+	 */
+	@ManagedAttribute(description = "Chunks of customers not loaded yet")
+	public int getRemainingChunks() {
+		return remainingChunks.get();
+	}
+
+	/**
+	 * @return how long the warm-up took, 0 while it runs.
+	 */
+	@ManagedAttribute(description = "Milliseconds the warm-up took")
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	/**
+	 * @return true once the warm-up finished or gave up.
+	 */
+	@ManagedAttribute(description = "Whether the warm-up finished")
+	public boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * Consecutive ids from the last id range or a list of hot ids.
+	 */
+	private static class Chunk {
+
+		private final int fromId;
+		private final int toId;
+		private final List<Integer> ids;
+
+		Chunk(int fromId, int toId) {
+			this.fromId = fromId;
+			this.toId = toId;
+			this.ids = null;
+		}
+
+		Chunk(List<Integer> ids) {
+			this.fromId = ids.get(0);
+			this.toId = ids.get(ids.size() - 1);
+			this.ids = ids;
+		}
+
+		int size() {
+			return ids == null ? toId - fromId + 1 : ids.size();
+		}
+
+		/**
+		 * @return the ids of the chunk that aren't in the cache, this chunk when none are, null when all are.
+		 */
+		Chunk uncached(CacheWrapper<Integer, Customer> cache) {
+			List<Integer> uncached = new ArrayList<>();
+			if (ids == null) {
+				for (int id = fromId; id <= toId; id++) {
+					if (!cache.containsKey(id)) {
+						uncached.add(id);
+					}
+				}
+			} else {
+				for (Integer id : ids) {
+					if (!cache.containsKey(id)) {
+						uncached.add(id);
+					}
+				}
+			}
+
+			if (uncached.isEmpty()) {
+				return null;
+			}
+			return uncached.size() == size() ? this : new Chunk(uncached);
+		}
+
+		String sql() {
+			if (ids == null) {
+				return "SELECT * FROM Customers WHERE id BETWEEN ? AND ?";
+			}
+			return "SELECT * FROM Customers WHERE id IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+		}
+
+		void setParameters(PreparedStatement statement) throws SQLException {
+			if (ids == null) {
+				statement.setInt(1, fromId);
+				statement.setInt(2, toId);
+			} else {
+				for (int i = 0; i < ids.size(); i++) {
+					statement.setInt(i + 1, ids.get(i));
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			return fromId + " to " + toId;
+		}
+	}
+}
@@ -1,5 +1,9 @@
 package com.rest.dao.cache;
 
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
 /**
  * Simple wrapper interface.
  *
@@ -11,6 +15,24 @@ public abstract interface CacheWrapper<K, V> {
 	public abstract void put(K key, V value);
 	public abstract boolean putIfAbsent(K key, V value);
 	public abstract V get(K key);
+	/**
+	 * Retrieves the value of the key, if it is not cached it is loaded with the loader and cached. Nothing is 
+	 * cached when the loader returns null. Implementations may also use the loader to refresh the value.
+	 */
+	public abstract V get(K key, Function<? super K, ? extends V> loader);
+	/**
+	 * Retrieves the value of the key without changing what is cached, a tiered cache doesn't copy the value to 
+	 * a faster tier. Only implementations where reading has such side effects override it.
+	 */
+	public default V peek(K key) {
+		return get(key);
+	}
+	/**
+	 * Retrieves the values of the keys in one call, keys that are not cached are left out of the returned map.
+	 */
+	public abstract Map<K, V> getAll(Set<? extends K> keys);
+	public abstract void putAll(Map<? extends K, ? extends V> entries);
+	public abstract void removeAll(Set<? extends K> keys);
 	public abstract boolean containsKey(K key);
 	public abstract void remove(K key);
 	public abstract void clear();
@@ -0,0 +1,121 @@
+package com.rest.dao.cache;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Weigher;
+
+/**
+ * CacheWrapper of a Caffeine cache.
+ *
+ * Caffeine evicts with W-TinyLFU, an entry is only admitted in place of another when it has been used more often
+ * recently. Unlike the LRU eviction of Ehcache the hot customers stay cached when getCustomers() scans through
+ * the customers that are read once.
+ *
+ * The cache is configured with a Caffeine spec, for example "maximumSize=1000,expireAfterWrite=2m", see
+ * com.github.benmanes.caffeine.cache.CaffeineSpec. A maximumWeight needs a weigher. Refreshing is left to
+ * RefreshAheadCacheWrapper as the refreshAfterWrite of Caffeine needs a loader fixed when the cache is built.
+ */
+@ManagedResource(description = "Caffeine cache")
+public class CaffeineCacheWrapper<K, V> implements CacheWrapper<K, V> {
+
+	private static final Logger LOG = LogManager.getLogger(CaffeineCacheWrapper.class);
+
+	private final Cache<K, V> cache;
+
+	/**
+	 * @param spec the Caffeine spec of the cache.
+	 */
+	public CaffeineCacheWrapper(String spec) {
+		this(spec, null);
+	}
+
+	/**
+	 * @param spec the Caffeine spec of the cache.
+	 * @param weigher the weight of the entries when the spec has a maximumWeight.
+	 */
+	public CaffeineCacheWrapper(String spec, Weigher<? super K, ? super V> weigher) {
+		Caffeine<Object, Object> builder = Caffeine.from(spec).recordStats();
+		if (weigher != null) {
+			cache = builder.weigher(weigher).build();
+		} else {
+			cache = builder.build();
+		}
+		LOG.info("Creating Caffeine cache {}.", spec);
+	}
+
+	public void put(K key, V value) {
+		cache.put(key, value);
+	}
+
+	public boolean putIfAbsent(K key, V value) {
+		return cache.asMap().putIfAbsent(key, value) == null;
+	}
+
+	public V get(K key) {
+		return cache.getIfPresent(key);
+	}
+
+	/**
+	 * The loader runs once per key at a time, concurrent misses of the key wait for it.
+	 */
+	public V get(K key, Function<? super K, ? extends V> loader) {
+		return cache.get(key, loader);
+	}
+
+	public Map<K, V> getAll(Set<? extends K> keys) {
+		return cache.getAllPresent(keys);
+	}
+
+	public void putAll(Map<? extends K, ? extends V> entries) {
+		cache.putAll(entries);
+	}
+
+	public void removeAll(Set<? extends K> keys) {
+		cache.invalidateAll(keys);
+	}
+
+	public boolean containsKey(K key) {
+		return cache.asMap().containsKey(key);
+	}
+
+	public void remove(K key) {
+		cache.invalidate(key);
+	}
+
+	public void clear() {
+		cache.invalidateAll();
+	}
+
+	/**
+	 * @return the ratio of the reads that were hits.
+	 */
+	@ManagedAttribute(description = "Ratio of the reads that were hits")
+	public double getHitRate() {
+		return cache.stats().hitRate();
+	}
+
+	/**
+	 * @return the number of entries evicted because of the size or the expiry.
+	 */
+	@ManagedAttribute(description = "Entries evicted because of the size or the expiry")
+	public long getEvictionCount() {
+		return cache.stats().evictionCount();
+	}
+
+	/**
+	 * @return the approximate number of entries.
+	 */
+	@ManagedAttribute(description = "Approximate number of entries")
+	public long getEstimatedSize() {
+		return cache.estimatedSize();
+	}
+}
@@ -0,0 +1,77 @@
+package com.rest.dao.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A write of a customer on one node that the caches of the other nodes have to forget, see
+ * InvalidationProducer and InvalidationConsumer.
+ *
+ * A batch of them is sent as the number of invalidations followed by 9 bytes per invalidation,
+ * the operation, the id and the version, -1 when there is none.
+ */
+public class CustomerInvalidation {
+
+	public enum Operation {
+		CREATE, UPDATE, DELETE
+	}
+
+	public static final int NO_VERSION = -1;
+
+	private static final int BYTES = 1 + 4 + 4;
+
+	private final Operation operation;
+	private final int id;
+	private final int version;
+
+	public CustomerInvalidation(Operation operation, int id, Integer version) {
+		this.operation = operation;
+		this.id = id;
+		this.version = version != null ? version : NO_VERSION;
+	}
+
+	public Operation getOperation() {
+		return operation;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * @return the version the customer was written with, NO_VERSION when it isn't known.
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	public static byte[] encode(List<CustomerInvalidation> invalidations) {
+		ByteBuffer buffer = ByteBuffer.allocate(4 + invalidations.size() * BYTES);
+		buffer.putInt(invalidations.size());
+		for (CustomerInvalidation invalidation : invalidations) {
+			buffer.put((byte) invalidation.operation.ordinal());
+			buffer.putInt(invalidation.id);
+			buffer.putInt(invalidation.version);
+		}
+		return buffer.array();
+	}
+
+	public static List<CustomerInvalidation> decode(byte[] bytes) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		int count = buffer.getInt();
+		List<CustomerInvalidation> invalidations = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			Operation operation = Operation.values()[buffer.get()];
+			int id = buffer.getInt();
+			int version = buffer.getInt();
+			invalidations.add(new CustomerInvalidation(operation, id, version));
+		}
+		return invalidations;
+	}
+
+	@Override
+	public String toString() {
+		return operation + " " + id + " version " + version;
+	}
+}
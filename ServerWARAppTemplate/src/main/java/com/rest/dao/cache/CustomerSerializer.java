@@ -0,0 +1,90 @@
+package com.rest.dao.cache;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+import org.ehcache.spi.serialization.Serializer;
+import org.ehcache.spi.serialization.SerializerException;
+
+import com.rest.domain.Customer;
+
+/**
+ * Serializes the customers of the off-heap cache tier, see cache/ehcache.xml.
+ *
+ * A customer is written as its id, its version, -1 when it has none, and its first name, last name and email,
+ * each as its length in an unsigned short followed by its UTF-8 bytes. That is about 40 bytes for a typical
+ * customer where Java serialization would need several hundred.
+ */
+public class CustomerSerializer implements Serializer<Customer> {
+
+	/**
+	 * The version of the binary form, change it with the form so that the customers persisted in the old
+	 * form are dropped, see PersistentCacheStamp.
+	 */
+	public static final int FORMAT_VERSION = 1;
+
+	private static final int NO_VERSION = -1;
+
+	/**
+	 * Ehcache creates its serializers with the class loader of the cache.
+	 */
+	public CustomerSerializer(ClassLoader classLoader) {
+	}
+
+	@Override
+	public ByteBuffer serialize(Customer customer) throws SerializerException {
+		byte[] firstName = customer.getFirstName().getBytes(UTF_8);
+		byte[] lastName = customer.getLastName().getBytes(UTF_8);
+		byte[] email = customer.getEmail().getBytes(UTF_8);
+
+		ByteBuffer buffer = ByteBuffer.allocate(4 + 4 + 2 + firstName.length + 2 + lastName.length + 2 + email.length);
+		buffer.putInt(customer.getId());
+		buffer.putInt(customer.getVersion() != null ? customer.getVersion() : NO_VERSION);
+		putString(buffer, firstName);
+		putString(buffer, lastName);
+		putString(buffer, email);
+		buffer.flip();
+		return buffer;
+	}
+
+	private static void putString(ByteBuffer buffer, byte[] bytes) {
+		if (bytes.length > 0xFFFF) {
+			throw new SerializerException("Field of " + bytes.length + " bytes is too long to cache.");
+		}
+		buffer.putShort((short) bytes.length);
+		buffer.put(bytes);
+	}
+
+	@Override
+	public Customer read(ByteBuffer binary) throws SerializerException {
+		int id = binary.getInt();
+		int version = binary.getInt();
+
+		String firstName = getString(binary);
+		String lastName = getString(binary);
+		String email = getString(binary);
+
+		Customer customer = new Customer(firstName, lastName, email);
+		customer.setId(id);
+		customer.setVersion(version != NO_VERSION ? version : null);
+		return customer;
+	}
+
+	private static String getString(ByteBuffer binary) {
+		byte[] bytes = new byte[binary.getShort() & 0xFFFF];
+		binary.get(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	@Override
+	public boolean equals(Customer customer, ByteBuffer binary) throws SerializerException {
+		Customer cached = read(binary);
+		return cached.getId() == customer.getId()
+				&& Objects.equals(cached.getVersion(), customer.getVersion())
+				&& cached.getFirstName().equals(customer.getFirstName())
+				&& cached.getLastName().equals(customer.getLastName())
+				&& cached.getEmail().equals(customer.getEmail());
+	}
+}
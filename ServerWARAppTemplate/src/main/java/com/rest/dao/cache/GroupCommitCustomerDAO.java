@@ -0,0 +1,279 @@
+package com.rest.dao.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import com.rest.dao.CustomerDAO;
+import com.rest.domain.Customer;
+
+/**
+ * Decorates any CustomerDAO so that concurrent creates of single customers are committed together.
+ *
+ * Under load every POST /customers takes a pooled connection for a single INSERT and its commit. Here the
+ * creates are queued and a few writer threads each take up to maxRows of them, waiting at most maxWaitMicros
+ * for more after the first, and create them with createCustomers, one multi-row insert in one transaction.
+ * Every caller waits for its batch and gets its customer back with the generated id. The database sees a
+ * few large transactions on a few connections instead of many small ones.
+ *
+ * A batch is created all or nothing, when it fails its customers are created one at a time so that only
+ * the callers whose customer failed, e.g. because its email is taken, get the exception. An Error fails every
+ * caller of the batch, the writer goes on with the next one.
+ */
+@ManagedResource(objectName = "com.rest:type=CustomerDAO,name=GroupCommit", description = "Commits concurrent creates of customers together")
+public class GroupCommitCustomerDAO implements CustomerDAO {
+
+	private static final Logger LOG = LogManager.getLogger(GroupCommitCustomerDAO.class);
+
+	// How often an idle writer checks if it was closed.
+	private static final long IDLE_POLL_MILLIS = 100;
+
+	private final CustomerDAO customerDAO;
+	private final int maxRows;
+	private final long maxWaitNanos;
+
+	private final BlockingQueue<PendingCreate> queue = new LinkedBlockingQueue<>();
+	private final ExecutorService writers;
+	private volatile boolean closed;
+
+	private final LongAdder batches = new LongAdder();
+	private final LongAdder rows = new LongAdder();
+	private final LongAdder failedBatches = new LongAdder();
+
+	/**
+	 * @param customerDAO the DAO that creates the customers.
+	 * @param maxRows the largest number of customers created in one batch.
+	 * @param maxWaitMicros how long a writer waits for more creates after the first of a batch.
+	 * @param writerThreads the number of batches created at the same time, each holds one connection.
+	 */
+	public GroupCommitCustomerDAO(CustomerDAO customerDAO, int maxRows, long maxWaitMicros, int writerThreads) {
+		this.customerDAO = customerDAO;
+		this.maxRows = maxRows;
+		this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+		this.writers = Executors.newFixedThreadPool(writerThreads, runnable -> {
+			Thread thread = new Thread(runnable, "customer-group-commit");
+			thread.setDaemon(true);
+			return thread;
+		});
+		for (int i = 0; i < writerThreads; i++) {
+			writers.execute(this::writeBatches);
+		}
+	}
+
+	@Override
+	public Customer createCustomer(Customer customer) {
+		if (closed) {
+			return customerDAO.createCustomer(customer);
+		}
+
+		PendingCreate create = new PendingCreate(customer);
+		queue.add(create);
+		if (closed && queue.remove(create)) {
+			// Closed while it was queued, no writer is left to take it.
+			return customerDAO.createCustomer(customer);
+		}
+		try {
+			return create.result.join();
+		} catch (CompletionException e) {
+			// Rethrow what the create got.
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private void writeBatches() {
+		List<PendingCreate> batch = new ArrayList<>(maxRows);
+		while (!closed && !Thread.currentThread().isInterrupted()) {
+			try {
+				PendingCreate first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				long deadline = System.nanoTime() + maxWaitNanos;
+				while (batch.size() < maxRows) {
+					long remaining = deadline - System.nanoTime();
+					// Past the deadline only the creates already queued are taken.
+					PendingCreate next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			if (!batch.isEmpty()) {
+				write(batch);
+				batch.clear();
+			}
+		}
+	}
+
+	void write(List<PendingCreate> batch) {
+		if (batch.size() == 1) {
+			createOne(batch.get(0));
+			return;
+		}
+
+		try {
+			customerDAO.createCustomers(batch.stream().map(create -> create.customer).collect(Collectors.toList()));
+			batches.increment();
+			rows.add(batch.size());
+			for (PendingCreate create : batch) {
+				create.result.complete(create.customer);
+			}
+		} catch (RuntimeException e) {
+			failedBatches.increment();
+			LOG.warn("Error creating {} Customers in a batch, creating them one by one.", batch.size(), e);
+			for (PendingCreate create : batch) {
+				createOne(create);
+			}
+		} catch (Error e) {
+			// Don't leave the callers waiting.
+			failedBatches.increment();
+			LOG.error("Error creating {} Customers in a batch.", batch.size(), e);
+			for (PendingCreate create : batch) {
+				create.result.completeExceptionally(e);
+			}
+		}
+	}
+
+	private void createOne(PendingCreate create) {
+		try {
+			create.result.complete(customerDAO.createCustomer(create.customer));
+			batches.increment();
+			rows.increment();
+		} catch (RuntimeException | Error e) {
+			create.result.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * @return the number of batches created, a single create counts as a batch of one.
+	 */
+	@ManagedAttribute(description = "Batches created")
+	public long getBatches() {
+		return batches.sum();
+	}
+
+	/**
+	 * @return the number of customers created.
+	 */
+	@ManagedAttribute(description = "Customers created")
+	public long getRows() {
+		return rows.sum();
+	}
+
+	/**
+	 * @return the average number of customers per batch.
+	 */
+	@ManagedAttribute(description = "Customers per batch")
+	public double getAverageBatchSize() {
+		long count = batches.sum();
+		return count == 0 ? 0 : (double) rows.sum() / count;
+	}
+
+	/**
+	 * @return the number of batches that failed and were created one customer at a time.
+	 */
+	@ManagedAttribute(description = "Batches created one customer at a time after failing")
+	public long getFailedBatches() {
+		return failedBatches.sum();
+	}
+
+	/**
+	 * Stops the writers, the creates still queued are created before returning. A writer isn't interrupted, it
+	 * finishes the batch it is writing first.
+	 */
+	public void close() throws InterruptedException {
+		closed = true;
+		writers.shutdown();
+		writers.awaitTermination(10, TimeUnit.SECONDS);
+
+		List<PendingCreate> remaining = new ArrayList<>();
+		queue.drainTo(remaining);
+		if (!remaining.isEmpty()) {
+			write(remaining);
+		}
+	}
+
+	@Override
+	public List<Customer> createCustomers(List<Customer> customers) {
+		return customerDAO.createCustomers(customers);
+	}
+
+	@Override
+	public void updateCustomer(int id, Customer customer) {
+		customerDAO.updateCustomer(id, customer);
+	}
+
+	@Override
+	public void deleteCustomer(int id) {
+		customerDAO.deleteCustomer(id);
+	}
+
+	@Override
+	public Customer getCustomer(int id) {
+		return customerDAO.getCustomer(id);
+	}
+
+	@Override
+	public Customer findByEmail(String email) {
+		return customerDAO.findByEmail(email);
+	}
+
+	@Override
+	public List<Customer> getCustomers() {
+		return customerDAO.getCustomers();
+	}
+
+	@Override
+	public List<Customer> getCustomers(int afterId, int limit) {
+		return customerDAO.getCustomers(afterId, limit);
+	}
+
+	@Override
+	public List<Customer> getCustomers(Collection<Integer> ids) {
+		return customerDAO.getCustomers(ids);
+	}
+
+	@Override
+	public void streamCustomers(Consumer<Customer> consumer) {
+		customerDAO.streamCustomers(consumer);
+	}
+
+	/**
+	 * A create waiting for its batch.
+	 */
+	static class PendingCreate {
+
+		private final Customer customer;
+		private final CompletableFuture<Customer> result = new CompletableFuture<>();
+
+		PendingCreate(Customer customer) {
+			this.customer = customer;
+		}
+	}
+}
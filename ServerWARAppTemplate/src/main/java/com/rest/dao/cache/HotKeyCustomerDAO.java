@@ -0,0 +1,231 @@
+package com.rest.dao.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import com.rest.dao.CustomerDAO;
+import com.rest.domain.Customer;
+
+/**
+ * Decorates any CustomerDAO so that the hottest customers are pinned in a cache of their own.
+ *
+ * A few customers get most of the reads, yet they compete with every other customer for the heap of the
+ * customer cache and are evicted by the scans of GET /customers. The reads are sampled into a HotKeySketch
+ * and the top ids are pinned in a small cache, see cache/ehcache.xml, that holds more entries than are ever
+ * pinned so nothing is evicted from it. The pinned customers are reloaded at every refresh, well before
+ * they expire, and the ids that cooled down are unpinned.
+ *
+ * Writes remove the customer from the pinned cache, the next refresh pins it again. A write between the refresh
+ * reading a customer and pinning it would leave the value it replaced pinned, so the ids written during a
+ * refresh are collected and removed again once the refresh has pinned the customers.
+ */
+@ManagedResource(objectName = "com.rest:type=CustomerDAO,name=HotKeys", description = "Pins the hottest customers")
+public class HotKeyCustomerDAO implements CustomerDAO {
+
+	private static final Logger LOG = LogManager.getLogger(HotKeyCustomerDAO.class);
+
+	// The smallest estimate of an id that is pinned, an id sampled once is not hot.
+	static final int MIN_ESTIMATE = 2;
+
+	private final CustomerDAO customerDAO;
+	private final HotKeySketch hotKeys;
+	private final CacheWrapper<Integer, Customer> customerPinnedCache;
+	private final int pinnedSize;
+	private final ScheduledExecutorService scheduler;
+
+	private Path hotKeysFile;
+
+	private volatile Set<Integer> pinnedIds = new HashSet<>();
+	// The ids written while a refresh is running, null between the refreshes.
+	private volatile Set<Integer> writtenIds;
+	private final LongAdder pinnedHits = new LongAdder();
+
+	/**
+	 * @param customerDAO the DAO that loads the customers.
+	 * @param hotKeys the sketch the reads are sampled into.
+	 * @param customerPinnedCache the cache of the pinned customers.
+	 * @param pinnedSize the number of customers pinned, less than the entries of the pinned cache.
+	 * @param refreshMillis how often the pinned customers are chosen and reloaded, less than the ttl of the pinned cache.
+	 */
+	public HotKeyCustomerDAO(CustomerDAO customerDAO, HotKeySketch hotKeys, CacheWrapper<Integer, Customer> customerPinnedCache,
+			int pinnedSize, long refreshMillis) {
+		this.customerDAO = customerDAO;
+		this.hotKeys = hotKeys;
+		this.customerPinnedCache = customerPinnedCache;
+		this.pinnedSize = pinnedSize;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "cache-pinning");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(this::refresh, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param hotKeysFile the file the top ids are written to on close, the hot keys file of CacheWarmer.
+	 */
+	public void setHotKeysFile(String hotKeysFile) {
+		this.hotKeysFile = Paths.get(hotKeysFile);
+	}
+
+	/**
+	 * Pins the top ids and reloads them, unpins the ids that are no longer hot.
+	 */
+	void refresh() {
+		try {
+			Set<Integer> hotIds = hotKeys.top(pinnedSize).stream().filter(entry -> entry.getValue() >= MIN_ESTIMATE)
+					.map(Map.Entry::getKey).collect(Collectors.toSet());
+
+			Set<Integer> unpinned = new HashSet<>(pinnedIds);
+			unpinned.removeAll(hotIds);
+			customerPinnedCache.removeAll(unpinned);
+
+			if (!hotIds.isEmpty()) {
+				Set<Integer> written = ConcurrentHashMap.newKeySet();
+				writtenIds = written;
+				try {
+					List<Customer> customers = customerDAO.getCustomers(hotIds);
+					customerPinnedCache.putAll(customers.stream().collect(Collectors.toMap(Customer::getId, customer -> customer)));
+				} finally {
+					writtenIds = null;
+				}
+				// The customers written since they were read may have been pinned with their previous value.
+				customerPinnedCache.removeAll(written);
+			}
+
+			pinnedIds = hotIds;
+			LOG.debug("Pinned {} customers, unpinned {}.", hotIds.size(), unpinned.size());
+		} catch (RuntimeException e) {
+			// Keep the schedule, the pinned customers expire if the refreshes keep failing.
+			LOG.error("Error refreshing the pinned customers", e);
+		}
+	}
+
+	@Override
+	public Customer getCustomer(int id) {
+		hotKeys.record(id);
+
+		if (pinnedIds.contains(id)) {
+			Customer customer = customerPinnedCache.get(id);
+			if (customer != null) {
+				pinnedHits.increment();
+				return customer;
+			}
+		}
+
+		return customerDAO.getCustomer(id);
+	}
+
+	@Override
+	public void updateCustomer(int id, Customer customer) {
+		customerDAO.updateCustomer(id, customer);
+		unpin(id);
+	}
+
+	@Override
+	public void deleteCustomer(int id) {
+		customerDAO.deleteCustomer(id);
+		unpin(id);
+	}
+
+	/**
+	 * Removes the written customer from the pinned cache. The id is collected before it is removed, so a
+	 * refresh that pins the customer after the removal sees the id once it is done.
+	 */
+	private void unpin(int id) {
+		Set<Integer> written = writtenIds;
+		if (written != null) {
+			written.add(id);
+		}
+		customerPinnedCache.remove(id);
+	}
+
+	/**
+	 * @return the number of customers pinned.
+	 */
+	@ManagedAttribute(description = "Customers pinned")
+	public int getPinned() {
+		return pinnedIds.size();
+	}
+
+	/**
+	 * @return the number of reads answered by the pinned cache.
+	 */
+	@ManagedAttribute(description = "Reads answered by the pinned cache")
+	public long getPinnedHits() {
+		return pinnedHits.sum();
+	}
+
+	/**
+	 * Stops the refreshes and writes the top ids to the hot keys file for the warm-up of the next start.
+	 */
+	public void close() {
+		scheduler.shutdownNow();
+
+		if (hotKeysFile != null) {
+			List<String> ids = hotKeys.top(Integer.MAX_VALUE).stream().map(entry -> entry.getKey().toString())
+					.collect(Collectors.toList());
+			try {
+				Files.createDirectories(hotKeysFile.toAbsolutePath().getParent());
+				Files.write(hotKeysFile, ids);
+				LOG.info("Wrote {} hot customer ids to {}.", ids.size(), hotKeysFile);
+			} catch (IOException e) {
+				LOG.warn("Error writing the hot customer ids to {}", hotKeysFile, e);
+			}
+		}
+	}
+
+	@Override
+	public Customer createCustomer(Customer customer) {
+		return customerDAO.createCustomer(customer);
+	}
+
+	@Override
+	public List<Customer> createCustomers(List<Customer> customers) {
+		return customerDAO.createCustomers(customers);
+	}
+
+	@Override
+	public Customer findByEmail(String email) {
+		return customerDAO.findByEmail(email);
+	}
+
+	@Override
+	public List<Customer> getCustomers() {
+		return customerDAO.getCustomers();
+	}
+
+	@Override
+	public List<Customer> getCustomers(int afterId, int limit) {
+		return customerDAO.getCustomers(afterId, limit);
+	}
+
+	@Override
+	public List<Customer> getCustomers(Collection<Integer> ids) {
+		return customerDAO.getCustomers(ids);
+	}
+
+	@Override
+	public void streamCustomers(Consumer<Customer> consumer) {
+		customerDAO.streamCustomers(consumer);
+	}
+}
@@ -0,0 +1,155 @@
+package com.rest.dao.cache;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Estimates how often each customer id is read and keeps the top ones, see HotKeyCustomerDAO.
+ *
+ * A count-min sketch of 4 rows of counters, an id increments one counter per row and its frequency is
+ * estimated as the smallest of them. Collisions only ever overestimate an id. Once as many reads as
+ * there are counters in a row were recorded every counter is halved, so the ids that were hot a while
+ * ago fade out. Only one read in sampleRate is recorded, it takes a lock and the hot ids are read so
+ * often that a sample finds them.
+ *
+ * The top ids are kept with their estimates, an id whose estimate beats the smallest of them replaces it. The
+ * smallest estimate is remembered from the last time the top was scanned, the ids that don't beat it skip the scan.
+ */
+public class HotKeySketch {
+
+	private static final int DEPTH = 4;
+
+	// Odd multipliers that spread the ids over the counters of each row.
+	private static final int[] SEEDS = { 0x9E3779B1, 0x85EBCA77, 0xC2B2AE3D, 0x27D4EB2F };
+
+	private final int[][] counters;
+	private final int mask;
+	private final int sampleRate;
+	private final int topSize;
+
+	// The ids with the highest estimates and their estimates.
+	private final Map<Integer, Integer> top = new HashMap<>();
+	// At most the smallest estimate of the top ids, the estimates only grow between the scans of the top
+	// and are halved along with it.
+	private int coldestEstimate;
+
+	private int recorded;
+
+	/**
+	 * @param width the number of counters per row, rounded up to a power of 2, a few times the number of distinct hot ids.
+	 * @param sampleRate one read in sampleRate is recorded, 1 records every read.
+	 * @param topSize the number of top ids kept.
+	 */
+	public HotKeySketch(int width, int sampleRate, int topSize) {
+		int size = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+		this.counters = new int[DEPTH][size];
+		this.mask = size - 1;
+		this.sampleRate = sampleRate;
+		this.topSize = topSize;
+	}
+
+	/**
+	 * Records a read of the id if it is sampled.
+	 */
+	public void record(int id) {
+		if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+			return;
+		}
+		increment(id);
+	}
+
+	synchronized void increment(int id) {
+		int estimate = Integer.MAX_VALUE;
+		for (int i = 0; i < DEPTH; i++) {
+			int[] row = counters[i];
+			int index = index(id, i);
+			if (row[index] < Integer.MAX_VALUE) {
+				row[index]++;
+			}
+			estimate = Math.min(estimate, row[index]);
+		}
+		updateTop(id, estimate);
+
+		if (++recorded >= counters[0].length) {
+			age();
+		}
+	}
+
+	private int index(int id, int row) {
+		int hash = id * SEEDS[row];
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+
+	private void updateTop(int id, int estimate) {
+		if (top.containsKey(id)) {
+			top.put(id, estimate);
+			return;
+		}
+		if (top.size() < topSize) {
+			top.put(id, estimate);
+			coldestEstimate = Math.min(coldestEstimate, estimate);
+			return;
+		}
+		if (estimate <= coldestEstimate) {
+			return;
+		}
+
+		Map.Entry<Integer, Integer> coldest = null;
+		for (Map.Entry<Integer, Integer> entry : top.entrySet()) {
+			if (coldest == null || entry.getValue() < coldest.getValue()) {
+				coldest = entry;
+			}
+		}
+		// The estimates left after a replacement are at least that of the coldest id.
+		coldestEstimate = coldest.getValue();
+		if (estimate > coldest.getValue()) {
+			top.remove(coldest.getKey());
+			top.put(id, estimate);
+		}
+	}
+
+	private void age() {
+		for (int[] row : counters) {
+			for (int i = 0; i < row.length; i++) {
+				row[i] >>>= 1;
+			}
+		}
+		for (Iterator<Map.Entry<Integer, Integer>> it = top.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Integer, Integer> entry = it.next();
+			entry.setValue(entry.getValue() >>> 1);
+			if (entry.getValue() == 0) {
+				it.remove();
+			}
+		}
+		coldestEstimate >>>= 1;
+		recorded = 0;
+	}
+
+	/**
+	 * @return the estimated number of sampled reads of the id since the counters were last halved, roughly.
+	 */
+	public synchronized int estimate(int id) {
+		int estimate = Integer.MAX_VALUE;
+		for (int i = 0; i < DEPTH; i++) {
+			estimate = Math.min(estimate, counters[i][index(id, i)]);
+		}
+		return estimate;
+	}
+
+	/**
+	 * @return up to k of the top ids with their estimates, the hottest first.
+	 */
+	public synchronized List<Map.Entry<Integer, Integer>> top(int k) {
+		List<Map.Entry<Integer, Integer>> entries = new ArrayList<>();
+		for (Map.Entry<Integer, Integer> entry : top.entrySet()) {
+			entries.add(new AbstractMap.SimpleImmutableEntry<>(entry));
+		}
+		entries.sort(Map.Entry.<Integer, Integer>comparingByValue().reversed());
+		return entries.size() > k ? new ArrayList<>(entries.subList(0, k)) : entries;
+	}
+}
@@ -0,0 +1,34 @@
+package com.rest.dao.cache;
+
+import java.util.function.IntFunction;
+
+/**
+ * CacheWrapper keyed by an int, the int overloads don't box the key.
+ *
+ * The calls with an int key resolve to these overloads rather than to the ones of CacheWrapper.
+ *
+ * @param <V>
+ */
+public interface IntCacheWrapper<V> extends CacheWrapper<Integer, V> {
+
+	public abstract void put(int key, V value);
+	public abstract boolean putIfAbsent(int key, V value);
+	public abstract V get(int key);
+	/**
+	 * Retrieves the value of the key, if it is not cached it is loaded with the loader and cached. Nothing is
+	 * cached when the loader returns null.
+	 */
+	public abstract V get(int key, IntFunction<? extends V> loader);
+	public abstract boolean containsKey(int key);
+	public abstract void remove(int key);
+
+	/**
+	 * @return the cache itself when it is keyed by an int, otherwise the cache with int overloads that box the key.
+	 */
+	public static <V> IntCacheWrapper<V> of(CacheWrapper<Integer, V> cache) {
+		if (cache instanceof IntCacheWrapper) {
+			return (IntCacheWrapper<V>) cache;
+		}
+		return new BoxingIntCacheWrapper<>(cache);
+	}
+}
@@ -0,0 +1,331 @@
+package com.rest.dao.cache;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * In memory cache keyed by an int, for a large customer cache.
+ *
+ * The entries are kept in open addressing tables of primitive arrays rather than in an entry object per key,
+ * so an entry costs its slots in four arrays and no Integer key, about 35 bytes without the value. The tables
+ * are sized for the maximum size up front and never grow.
+ *
+ * The keys are spread over segments that are each locked on their own. An entry expires a fixed time after it
+ * was written. When a segment is full the entry to evict is chosen with CLOCK, an approximation of LRU: the
+ * entries read since the hand last passed them get another round, the first one that wasn't read is evicted.
+ */
+@ManagedResource(description = "Int keyed in memory cache")
+public class IntMapCacheWrapper<V> implements IntCacheWrapper<V> {
+
+	private static final Logger LOG = LogManager.getLogger(IntMapCacheWrapper.class);
+
+	private static final int SEGMENTS = 64;
+
+	private final Segment<V>[] segments;
+	private final int segmentShift;
+	private final int segmentMask;
+	private final long timeToLiveMillis;
+
+	/**
+	 * @param maximumSize the maximum number of entries.
+	 * @param timeToLiveMillis how long an entry is kept after it was written.
+	 */
+	public IntMapCacheWrapper(int maximumSize, long timeToLiveMillis) {
+		this(maximumSize, timeToLiveMillis, SEGMENTS);
+	}
+
+	/**
+	 * @param segments the number of segments, a power of 2.
+	 */
+	IntMapCacheWrapper(int maximumSize, long timeToLiveMillis, int segments) {
+		this.timeToLiveMillis = timeToLiveMillis;
+		this.segments = newSegments(segments);
+		// The segment is picked by the high bits of the hash and the slot by the low bits.
+		this.segmentShift = segments == 1 ? 0 : 32 - Integer.numberOfTrailingZeros(segments);
+		this.segmentMask = segments - 1;
+		int segmentSize = Math.max(1, (maximumSize + segments - 1) / segments);
+		for (int i = 0; i < segments; i++) {
+			this.segments[i] = new Segment<>(segmentSize);
+		}
+		LOG.info("Creating int keyed cache of {} entries with a time to live of {} ms.", maximumSize, timeToLiveMillis);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <V> Segment<V>[] newSegments(int length) {
+		// The segments all hold values of type V, there is no generic array creation.
+		return (Segment<V>[]) new Segment<?>[length];
+	}
+
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private Segment<V> segment(int hash) {
+		return segments[(hash >>> segmentShift) & segmentMask];
+	}
+
+	public void put(int key, V value) {
+		int hash = hash(key);
+		segment(hash).put(key, hash, value, System.currentTimeMillis(), timeToLiveMillis, false);
+	}
+
+	public boolean putIfAbsent(int key, V value) {
+		int hash = hash(key);
+		return segment(hash).put(key, hash, value, System.currentTimeMillis(), timeToLiveMillis, true) == null;
+	}
+
+	public V get(int key) {
+		int hash = hash(key);
+		return segment(hash).get(key, hash, System.currentTimeMillis());
+	}
+
+	/**
+	 * The loader runs outside of the lock, when concurrent loads of the key race the value cached first is kept.
+	 */
+	public V get(int key, IntFunction<? extends V> loader) {
+		V value = get(key);
+		if (value != null) {
+			return value;
+		}
+
+		value = loader.apply(key);
+		if (value == null) {
+			return null;
+		}
+
+		int hash = hash(key);
+		V cached = segment(hash).put(key, hash, value, System.currentTimeMillis(), timeToLiveMillis, true);
+		return cached != null ? cached : value;
+	}
+
+	public boolean containsKey(int key) {
+		return get(key) != null;
+	}
+
+	public void remove(int key) {
+		int hash = hash(key);
+		segment(hash).remove(key, hash);
+	}
+
+	public void put(Integer key, V value) {
+		put(key.intValue(), value);
+	}
+
+	public boolean putIfAbsent(Integer key, V value) {
+		return putIfAbsent(key.intValue(), value);
+	}
+
+	public V get(Integer key) {
+		return get(key.intValue());
+	}
+
+	public V get(Integer key, Function<? super Integer, ? extends V> loader) {
+		return get(key.intValue(), (IntFunction<? extends V>) loader::apply);
+	}
+
+	public Map<Integer, V> getAll(Set<? extends Integer> keys) {
+		Map<Integer, V> values = new HashMap<>();
+		for (Integer key : keys) {
+			V value = get(key.intValue());
+			if (value != null) {
+				values.put(key, value);
+			}
+		}
+		return values;
+	}
+
+	public void putAll(Map<? extends Integer, ? extends V> entries) {
+		entries.forEach((key, value) -> put(key.intValue(), value));
+	}
+
+	public void removeAll(Set<? extends Integer> keys) {
+		keys.forEach(key -> remove(key.intValue()));
+	}
+
+	public boolean containsKey(Integer key) {
+		return containsKey(key.intValue());
+	}
+
+	public void remove(Integer key) {
+		remove(key.intValue());
+	}
+
+	public void clear() {
+		for (Segment<V> segment : segments) {
+			segment.clear();
+		}
+	}
+
+	/**
+	 * @return the number of entries, including the expired ones not yet evicted.
+	 */
+	@ManagedAttribute(description = "Entries, including the expired ones not yet evicted")
+	public int getSize() {
+		int size = 0;
+		for (Segment<V> segment : segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	/**
+	 * An open addressing table with linear probing, a slot is empty when its value is null.
+	 */
+	private static final class Segment<V> {
+
+		private final int maximumSize;
+		private final int mask;
+
+		private final int[] keys;
+		private final Object[] values;
+		private final long[] expiresAt;
+		// The CLOCK bits, set when the entry is read.
+		private final boolean[] referenced;
+
+		private int size;
+		private int hand;
+
+		Segment(int maximumSize) {
+			this.maximumSize = maximumSize;
+			// At most half full so that the probes stay short.
+			int capacity = Integer.highestOneBit(maximumSize * 2 - 1) << 1;
+			this.mask = capacity - 1;
+			this.keys = new int[capacity];
+			this.values = new Object[capacity];
+			this.expiresAt = new long[capacity];
+			this.referenced = new boolean[capacity];
+		}
+
+		@SuppressWarnings("unchecked")
+		private V value(int slot) {
+			// Only values of type V are put.
+			return (V) values[slot];
+		}
+
+		synchronized V get(int key, int hash, long now) {
+			int slot = find(key, hash, now);
+			if (slot < 0) {
+				return null;
+			}
+			referenced[slot] = true;
+			return value(slot);
+		}
+
+		/**
+		 * @return the value that was cached, null when there was none.
+		 */
+		synchronized V put(int key, int hash, V value, long now, long timeToLiveMillis, boolean onlyIfAbsent) {
+			int slot = find(key, hash, now);
+			if (slot >= 0) {
+				V current = value(slot);
+				if (!onlyIfAbsent) {
+					values[slot] = value;
+					expiresAt[slot] = now + timeToLiveMillis;
+				}
+				return current;
+			}
+
+			if (size == maximumSize) {
+				evict(now);
+			}
+
+			slot = hash & mask;
+			while (values[slot] != null) {
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = key;
+			values[slot] = value;
+			expiresAt[slot] = now + timeToLiveMillis;
+			referenced[slot] = false;
+			size++;
+			return null;
+		}
+
+		synchronized void remove(int key, int hash) {
+			int slot = find(key, hash, Long.MIN_VALUE);
+			if (slot >= 0) {
+				removeAt(slot);
+			}
+		}
+
+		synchronized void clear() {
+			Arrays.fill(values, null);
+			size = 0;
+		}
+
+		synchronized int size() {
+			return size;
+		}
+
+		/**
+		 * @return the slot of the key, -1 when it is missing or expired. An expired entry is removed.
+		 */
+		private int find(int key, int hash, long now) {
+			int slot = hash & mask;
+			while (values[slot] != null) {
+				if (keys[slot] == key) {
+					if (expiresAt[slot] <= now) {
+						removeAt(slot);
+						return -1;
+					}
+					return slot;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return -1;
+		}
+
+		/**
+		 * Evicts the first expired or not recently read entry after the hand.
+		 */
+		private void evict(long now) {
+			while (true) {
+				if (values[hand] != null) {
+					if (expiresAt[hand] <= now || !referenced[hand]) {
+						removeAt(hand);
+						return;
+					}
+					referenced[hand] = false;
+				}
+				hand = (hand + 1) & mask;
+			}
+		}
+
+		/**
+		 * Empties the slot and moves the entries probed past it back, so that every entry can be found from
+		 * its own slot without tombstones.
+		 */
+		private void removeAt(int slot) {
+			int gap = slot;
+			int next = slot;
+			while (true) {
+				next = (next + 1) & mask;
+				if (values[next] == null) {
+					break;
+				}
+				int home = hash(keys[next]) & mask;
+				// The entry can fill the gap unless its own slot lies between the gap and where it is.
+				boolean between = gap < next ? gap < home && home <= next : gap < home || home <= next;
+				if (!between) {
+					keys[gap] = keys[next];
+					values[gap] = values[next];
+					expiresAt[gap] = expiresAt[next];
+					referenced[gap] = referenced[next];
+					gap = next;
+				}
+			}
+			values[gap] = null;
+			size--;
+		}
+	}
+}
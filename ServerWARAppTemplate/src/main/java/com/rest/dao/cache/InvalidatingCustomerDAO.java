@@ -0,0 +1,91 @@
+package com.rest.dao.cache;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.rest.dao.CustomerDAO;
+import com.rest.dao.cache.CustomerInvalidation.Operation;
+import com.rest.domain.Customer;
+import com.rest.jms.producer.InvalidationProducer;
+
+/**
+ * Decorates any CustomerDAO so that the customers written on this node are removed from the caches of the
+ * other nodes, see InvalidationProducer.
+ *
+ * Without it a node serves the customers another node updated or deleted until they expire from its caches.
+ * The invalidations are only published once the write succeeded.
+ */
+public class InvalidatingCustomerDAO implements CustomerDAO {
+
+	private final CustomerDAO customerDAO;
+	private final InvalidationProducer invalidationProducer;
+
+	/**
+	 * @param customerDAO the DAO that writes the customers.
+	 * @param invalidationProducer publishes the writes to the other nodes.
+	 */
+	public InvalidatingCustomerDAO(CustomerDAO customerDAO, InvalidationProducer invalidationProducer) {
+		this.customerDAO = customerDAO;
+		this.invalidationProducer = invalidationProducer;
+	}
+
+	@Override
+	public Customer createCustomer(Customer customer) {
+		Customer created = customerDAO.createCustomer(customer);
+		invalidationProducer.publish(new CustomerInvalidation(Operation.CREATE, created.getId(), created.getVersion()));
+		return created;
+	}
+
+	@Override
+	public List<Customer> createCustomers(List<Customer> customers) {
+		List<Customer> created = customerDAO.createCustomers(customers);
+		for (Customer customer : created) {
+			invalidationProducer.publish(new CustomerInvalidation(Operation.CREATE, customer.getId(), customer.getVersion()));
+		}
+		return created;
+	}
+
+	@Override
+	public void updateCustomer(int id, Customer customer) {
+		customerDAO.updateCustomer(id, customer);
+		// The DAOs set the incremented version on the customer.
+		invalidationProducer.publish(new CustomerInvalidation(Operation.UPDATE, id, customer.getVersion()));
+	}
+
+	@Override
+	public void deleteCustomer(int id) {
+		customerDAO.deleteCustomer(id);
+		invalidationProducer.publish(new CustomerInvalidation(Operation.DELETE, id, null));
+	}
+
+	@Override
+	public Customer getCustomer(int id) {
+		return customerDAO.getCustomer(id);
+	}
+
+	@Override
+	public Customer findByEmail(String email) {
+		return customerDAO.findByEmail(email);
+	}
+
+	@Override
+	public List<Customer> getCustomers() {
+		return customerDAO.getCustomers();
+	}
+
+	@Override
+	public List<Customer> getCustomers(int afterId, int limit) {
+		return customerDAO.getCustomers(afterId, limit);
+	}
+
+	@Override
+	public List<Customer> getCustomers(Collection<Integer> ids) {
+		return customerDAO.getCustomers(ids);
+	}
+
+	@Override
+	public void streamCustomers(Consumer<Customer> consumer) {
+		customerDAO.streamCustomers(consumer);
+	}
+}
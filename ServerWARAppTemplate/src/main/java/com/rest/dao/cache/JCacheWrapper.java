@@ -1,44 +1,114 @@
 package com.rest.dao.cache;
 
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
 import javax.cache.Cache;
 import javax.cache.CacheManager;
+import javax.cache.processor.EntryProcessor;
+import javax.cache.processor.EntryProcessorException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+/**
+ * CacheWrapper of a JCache cache.
+ *
+ * The cache is looked up in the cache manager once and kept, every operation only checks that it is still open.
+ * When the cache or its cache manager was closed, for example when the cache was destroyed and created again,
+ * it is looked up again, the cache manager is recreated from the same URI if it was closed.
+ *
+ * The key and value types must be the ones the cache is declared with in cache/ehcache.xml.
+ */
 public class JCacheWrapper<K, V> implements CacheWrapper<K, V> {
-	
+
 	private static final Logger LOG = LogManager.getLogger(JCacheWrapper.class);
-	
+
 	private final String cacheName;
-	private final CacheManager cacheManager;
+	private final Class<K> keyType;
+	private final Class<V> valueType;
+
+	// Sets the value passed in as the argument unless there is one already, returns the value of the entry.
+	// One instance serves every call.
+	private final EntryProcessor<K, V, V> putIfAbsent;
 
-	public JCacheWrapper(String cacheName, CacheManager cacheManager) {
+	private volatile CacheManager cacheManager;
+	private volatile Cache<K, V> cache;
+
+	public JCacheWrapper(String cacheName, CacheManager cacheManager, Class<K> keyType, Class<V> valueType) {
 		this.cacheName = cacheName;
 		this.cacheManager = cacheManager;
-		LOG.info("Creating cache {} using cache manager {}.", cacheName, cacheManager.getClass().getName());
+		this.keyType = keyType;
+		this.valueType = valueType;
+		this.putIfAbsent = (entry, arguments) -> {
+			if (entry.exists()) {
+				return entry.getValue();
+			}
+			V value = valueType.cast(arguments[0]);
+			entry.setValue(value);
+			return value;
+		};
+		LOG.info("Creating cache {} of {} to {} using cache manager {}.", cacheName, keyType.getSimpleName(),
+				valueType.getSimpleName(), cacheManager.getClass().getName());
+		// Fail on start up when the cache is missing or declared with other types.
+		this.cache = lookup();
 	}
 
 	public void put(K key, V value) {
 		getCache().put(key, value);
 	}
-	
+
 	public boolean putIfAbsent(K key, V value) {
 		return getCache().putIfAbsent(key, value);
 	}
 
 	public V get(K key) {
-		Object value = getCache().get(key);
+		return getCache().get(key);
+	}
+
+	/**
+	 * Like computeIfAbsent, the value cached by the first of concurrent loads is kept and returned to all of them.
+	 * The loader runs outside of the cache so that a slow load doesn't block other entries, concurrent misses
+	 * of the same key each run it, see SingleFlightLoader to coalesce them.
+	 */
+	public V get(K key, Function<? super K, ? extends V> loader) {
+		Cache<K, V> current = getCache();
+		V value = current.get(key);
 		if (value != null) {
-			return (V) value;
+			return value;
 		}
-		return null;
+
+		value = loader.apply(key);
+		if (value == null) {
+			return null;
+		}
+
+		try {
+			return current.invoke(key, putIfAbsent, value);
+		} catch (EntryProcessorException e) {
+			LOG.warn("Error caching {} in {}.", key, cacheName, e);
+			return value;
+		}
+	}
+
+	public Map<K, V> getAll(Set<? extends K> keys) {
+		// JCache bulk operation, a single call to the cache for all the keys.
+		return getCache().getAll(keys);
+	}
+
+	public void putAll(Map<? extends K, ? extends V> entries) {
+		getCache().putAll(entries);
 	}
-	
+
+	public void removeAll(Set<? extends K> keys) {
+		getCache().removeAll(keys);
+	}
+
 	public boolean containsKey(K key) {
 		return getCache().containsKey(key);
 	}
-	
+
 	public void remove(K key) {
 		getCache().remove(key);
 	}
@@ -46,8 +116,38 @@ public class JCacheWrapper<K, V> implements CacheWrapper<K, V> {
 	public void clear() {
 		getCache().clear();
 	}
-	
-	public Cache<Object, Object> getCache() {
-		return cacheManager.getCache(cacheName, Object.class, Object.class);
+
+	public Cache<K, V> getCache() {
+		Cache<K, V> current = cache;
+		if (current.isClosed()) {
+			current = reopen();
+		}
+		return current;
+	}
+
+	private synchronized Cache<K, V> reopen() {
+		// Another thread may have looked it up already.
+		if (!cache.isClosed()) {
+			return cache;
+		}
+
+		CacheManager current = cacheManager;
+		if (current.isClosed()) {
+			LOG.info("Cache manager {} was closed, recreating it.", current.getURI());
+			cacheManager = current.getCachingProvider().getCacheManager(current.getURI(), current.getClassLoader(),
+					current.getProperties());
+		}
+
+		LOG.info("Cache {} was closed, looking it up again.", cacheName);
+		cache = lookup();
+		return cache;
+	}
+
+	private Cache<K, V> lookup() {
+		Cache<K, V> found = cacheManager.getCache(cacheName, keyType, valueType);
+		if (found == null) {
+			throw new IllegalStateException("Cache " + cacheName + " does not exist in " + cacheManager.getURI());
+		}
+		return found;
 	}
 }
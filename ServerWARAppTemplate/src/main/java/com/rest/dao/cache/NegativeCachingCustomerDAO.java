@@ -0,0 +1,127 @@
+package com.rest.dao.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.rest.dao.CustomerDAO;
+import com.rest.domain.Customer;
+
+/**
+ * Decorates any CustomerDAO so that the ids of customers that do not exist are remembered for a short time.
+ *
+ * Requests for deleted or never existing ids always miss the customer cache and run a query. The ids
+ * found to be missing are kept in a small cache with a short time to live, see cache/ehcache.xml,
+ * so that repeated requests for them are answered from memory. Creating a customer removes its id
+ * and deleting one adds its id. Its hit rate is reported by the JCache statistics of the cache.
+ */
+public class NegativeCachingCustomerDAO implements CustomerDAO {
+
+	private static final Logger LOG = LogManager.getLogger(NegativeCachingCustomerDAO.class);
+
+	private final CustomerDAO customerDAO;
+
+	// The ids without a customer, the value is always true.
+	private final CacheWrapper<Integer, Boolean> customerMissingCache;
+
+	/**
+	 * @param customerDAO the DAO that loads the customers.
+	 * @param customerMissingCache the cache of the ids without a customer.
+	 */
+	public NegativeCachingCustomerDAO(CustomerDAO customerDAO, CacheWrapper<Integer, Boolean> customerMissingCache) {
+		this.customerDAO = customerDAO;
+		this.customerMissingCache = customerMissingCache;
+	}
+
+	@Override
+	public Customer getCustomer(int id) {
+		if (customerMissingCache.get(id) != null) {
+			LOG.info("Customer {} is known to be missing.", id);
+			return null;
+		}
+
+		Customer customer = customerDAO.getCustomer(id);
+
+		if (customer == null) {
+			// NOTE: A customer created with this id while it was being loaded is reported missing until the
+			// entry expires. The generated ids only ever grow so this only affects ids asked for before they exist.
+			customerMissingCache.put(id, Boolean.TRUE);
+		}
+
+		return customer;
+	}
+
+	@Override
+	public List<Customer> getCustomers(Collection<Integer> ids) {
+		Set<Integer> missingIds = customerMissingCache.getAll(new HashSet<>(ids)).keySet();
+
+		List<Integer> lookupIds = ids.stream().filter(id -> !missingIds.contains(id)).collect(Collectors.toList());
+		if (lookupIds.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		List<Customer> customers = customerDAO.getCustomers(lookupIds);
+
+		// Remember the ids that came back without a customer.
+		Set<Integer> foundIds = customers.stream().map(Customer::getId).collect(Collectors.toSet());
+		Map<Integer, Boolean> newlyMissing = lookupIds.stream().filter(id -> !foundIds.contains(id))
+				.distinct().collect(Collectors.toMap(Function.identity(), id -> Boolean.TRUE));
+		customerMissingCache.putAll(newlyMissing);
+
+		return customers;
+	}
+
+	@Override
+	public Customer createCustomer(Customer customer) {
+		Customer created = customerDAO.createCustomer(customer);
+		customerMissingCache.remove(created.getId());
+		return created;
+	}
+
+	@Override
+	public List<Customer> createCustomers(List<Customer> customers) {
+		List<Customer> created = customerDAO.createCustomers(customers);
+		customerMissingCache.removeAll(created.stream().map(Customer::getId).collect(Collectors.toSet()));
+		return created;
+	}
+
+	@Override
+	public void deleteCustomer(int id) {
+		customerDAO.deleteCustomer(id);
+		customerMissingCache.put(id, Boolean.TRUE);
+	}
+
+	@Override
+	public void updateCustomer(int id, Customer customer) {
+		customerDAO.updateCustomer(id, customer);
+	}
+
+	@Override
+	public Customer findByEmail(String email) {
+		return customerDAO.findByEmail(email);
+	}
+
+	@Override
+	public List<Customer> getCustomers() {
+		return customerDAO.getCustomers();
+	}
+
+	@Override
+	public List<Customer> getCustomers(int afterId, int limit) {
+		return customerDAO.getCustomers(afterId, limit);
+	}
+
+	@Override
+	public void streamCustomers(Consumer<Customer> consumer) {
+		customerDAO.streamCustomers(consumer);
+	}
+}
@@ -0,0 +1,61 @@
+package com.rest.dao.cache;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Drops the persistent caches when they were written for another database schema or another binary form of
+ * the customers, see cache/ehcache.xml. It has to run before the cache manager opens the caches.
+ *
+ * The stamp of the schema version and of the version of CustomerSerializer is written next to the directory of
+ * the caches. When the stamp differs from the one on disk the directory is deleted and the caches start empty.
+ * The customers that changed while the node was down are removed by PersistentCacheValidator.
+ *
+ * The directory is also set as the DIRECTORY_PROPERTY system property, the persistence directory of the
+ * cache manager.
+ */
+public class PersistentCacheStamp {
+
+	private static final Logger LOG = LogManager.getLogger(PersistentCacheStamp.class);
+
+	public static final String DIRECTORY_PROPERTY = "cache.persistence.directory";
+
+	/**
+	 * @param directory the directory of the persistent caches.
+	 * @param schemaVersion the version of the database schema, the tag of its last Liquibase changelog.
+	 */
+	public PersistentCacheStamp(String directory, String schemaVersion) throws IOException {
+		Path cacheDirectory = Paths.get(directory);
+		Path stampFile = Paths.get(directory + ".stamp");
+		System.setProperty(DIRECTORY_PROPERTY, cacheDirectory.toAbsolutePath().toString());
+		String stamp = "schema " + schemaVersion + ", customer format " + CustomerSerializer.FORMAT_VERSION;
+
+		String persistedStamp = Files.exists(stampFile) ? new String(Files.readAllBytes(stampFile), UTF_8) : null;
+		if (stamp.equals(persistedStamp)) {
+			LOG.info("Persistent caches in {} are valid for {}.", cacheDirectory, stamp);
+			return;
+		}
+
+		if (Files.exists(cacheDirectory)) {
+			LOG.info("Persistent caches in {} were written for {}, deleting them.", cacheDirectory, persistedStamp);
+			try (Stream<Path> paths = Files.walk(cacheDirectory)) {
+				// The files before the directories that hold them.
+				for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+					Files.delete(path);
+				}
+			}
+		}
+
+		Files.createDirectories(cacheDirectory.toAbsolutePath().getParent());
+		Files.write(stampFile, stamp.getBytes(UTF_8));
+	}
+}
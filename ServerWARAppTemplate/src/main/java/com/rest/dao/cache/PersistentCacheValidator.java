@@ -0,0 +1,120 @@
+package com.rest.dao.cache;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.sql.DataSource;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.rest.domain.Customer;
+
+/**
+ * Removes the customers that changed while the node was down from the persistent customer cache.
+ *
+ * PersistentCacheStamp only tells whether the persisted customers can still be read. The customers the other
+ * nodes updated or deleted while this one was down are still cached as they were, the invalidations sent in
+ * the meantime are lost. At startup, before the application takes requests, the id and version of every
+ * persisted customer are checked against its row CHUNK_SIZE customers per query, and the customers whose row
+ * has another version or is gone are removed. Every update of a customer increments its version.
+ *
+ * When the database can't be read the persisted customers can't be trusted and the cache is cleared.
+ */
+public class PersistentCacheValidator {
+
+	private static final Logger LOG = LogManager.getLogger(PersistentCacheValidator.class);
+
+	// The number of customers checked per query.
+	static final int CHUNK_SIZE = 1000;
+
+	private final DataSource dataSource;
+	private final CacheManager cacheManager;
+	private final String cacheName;
+
+	/**
+	 * @param dataSource the pooled connections to check with.
+	 * @param cacheManager the cache manager of the persistent cache.
+	 * @param cacheName the persistent cache of the customers by id.
+	 */
+	public PersistentCacheValidator(DataSource dataSource, CacheManager cacheManager, String cacheName) {
+		this.dataSource = dataSource;
+		this.cacheManager = cacheManager;
+		this.cacheName = cacheName;
+	}
+
+	/**
+	 * Removes the stale customers, returns once every persisted customer was checked.
+	 */
+	public void validate() {
+		Cache<Integer, Customer> cache = cacheManager.getCache(cacheName, Integer.class, Customer.class);
+		if (cache == null) {
+			return;
+		}
+
+		long start = System.currentTimeMillis();
+		int checked = 0;
+		Set<Integer> stale = new HashSet<>();
+		Map<Integer, Integer> versions = new HashMap<>();
+
+		try (Connection conn = dataSource.getConnection()) {
+			for (Cache.Entry<Integer, Customer> entry : cache) {
+				versions.put(entry.getKey(), entry.getValue().getVersion());
+				if (versions.size() == CHUNK_SIZE) {
+					stale.addAll(staleIds(conn, versions));
+					checked += versions.size();
+					versions.clear();
+				}
+			}
+			if (!versions.isEmpty()) {
+				stale.addAll(staleIds(conn, versions));
+				checked += versions.size();
+			}
+		} catch (SQLException e) {
+			LOG.error("Error validating the persisted customers of {}, clearing it.", cacheName, e);
+			cache.clear();
+			return;
+		}
+
+		// Removed once the iteration is over so that it doesn't skip customers.
+		cache.removeAll(stale);
+		LOG.info("Validated {} persisted customers of {} in {} ms, removed {} stale ones.", checked, cacheName,
+				System.currentTimeMillis() - start, stale.size());
+	}
+
+	/**
+	 * @param versions the cached versions of the customers by id.
+	 * @return the ids of the customers whose row has another version or is gone.
+	 */
+	private static Set<Integer> staleIds(Connection conn, Map<Integer, Integer> versions) throws SQLException {
+		String sql = "SELECT id, version FROM Customers WHERE id IN (" + String.join(", ", Collections.nCopies(versions.size(), "?")) + ")";
+
+		try (PreparedStatement statement = conn.prepareStatement(sql)) {
+			int index = 1;
+			for (Integer id : versions.keySet()) {
+				statement.setInt(index++, id);
+			}
+
+			Set<Integer> stale = new HashSet<>(versions.keySet());
+			ResultSet rs = statement.executeQuery();
+			while (rs.next()) {
+				int id = rs.getInt("id");
+				int version = rs.getInt("version");
+				if (!rs.wasNull() && Objects.equals(versions.get(id), version)) {
+					stale.remove(id);
+				}
+			}
+			return stale;
+		}
+	}
+}
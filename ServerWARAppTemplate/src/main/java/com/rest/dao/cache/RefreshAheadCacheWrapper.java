@@ -0,0 +1,254 @@
+package com.rest.dao.cache;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Refresh-ahead for a cache whose entries expire a fixed time after they are put, see cache/ehcache.xml.
+ *
+ * When a hot entry expires every reader of it misses at once and waits on the reload. Here an entry that
+ * is read with a loader close to the end of its lifetime is reloaded in the background while its readers
+ * keep being served the current value. When to reload is decided by probabilistic early expiration, XFetch:
+ *
+ *   now - delta * beta * ln(random) >= expiry
+ *
+ * where delta is how long loading the entry took. The closer the entry is to expiring and the slower it is
+ * to load the more likely a read reloads it, so entries that were put together are not all reloaded together.
+ * A beta above 1 favors reloading earlier, below 1 later.
+ *
+ * Reloads run on a bounded executor. When it is saturated the reload is skipped and the entry expires as usual.
+ *
+ * The timings of the entries are kept in a table of a fixed number of slots, the slot of a key is picked by
+ * its hash and holds the timing of the key written to it last. It takes no more memory however many keys the
+ * cache holds, a key whose slot was taken by another one is just not reloaded early. The table is sized for
+ * the hot entries, those of the heap tier.
+ */
+@ManagedResource(description = "Refreshes the cache entries ahead of their expiry")
+public class RefreshAheadCacheWrapper<K, V> implements CacheWrapper<K, V> {
+
+	private static final Logger LOG = LogManager.getLogger(RefreshAheadCacheWrapper.class);
+
+	private final CacheWrapper<K, V> cache;
+	private final long timeToLiveMillis;
+	private final double beta;
+	private final Executor executor;
+
+	// When the cached entries expire and how long they took to load, by the hash of their key. A new timing
+	// is set before the entry is written so that a reload can tell whether it was written while it was loading.
+	private final AtomicReferenceArray<LoadTiming<K>> timings;
+
+	// The keys being reloaded, a key is only reloaded once at a time.
+	private final Set<K> refreshing = ConcurrentHashMap.newKeySet();
+
+	// Entries put without a loader are assumed to take as long to load as the loads seen so far.
+	private volatile long averageLoadMillis = 1;
+
+	private final LongAdder refreshes = new LongAdder();
+	private final LongAdder skippedRefreshes = new LongAdder();
+
+	/**
+	 * @param cache the cache the entries are kept in.
+	 * @param timeToLiveMillis the time to live of the entries in the cache.
+	 * @param beta how early to reload, 1 is the default of XFetch.
+	 * @param maxEntries the number of hot entries that can be reloaded early, the table has 2 to 4 times as many slots.
+	 * @param executor the bounded executor the entries are reloaded on.
+	 */
+	public RefreshAheadCacheWrapper(CacheWrapper<K, V> cache, long timeToLiveMillis, double beta, int maxEntries, Executor executor) {
+		this.cache = cache;
+		this.timeToLiveMillis = timeToLiveMillis;
+		this.beta = beta;
+		this.executor = executor;
+		// A power of two so that the slot is the low bits of the hash, at least twice and less than 4 times maxEntries.
+		this.timings = new AtomicReferenceArray<>(Integer.highestOneBit(Math.max(maxEntries, 1) * 4 - 1));
+	}
+
+	@Override
+	public V get(K key, Function<? super K, ? extends V> loader) {
+		V value = cache.get(key);
+
+		if (value == null) {
+			long start = System.nanoTime();
+			value = loader.apply(key);
+			if (value != null) {
+				write(key, value, elapsedMillis(start));
+			}
+			return value;
+		}
+
+		int slot = slot(key);
+		LoadTiming<K> timing = timings.get(slot);
+		if (timing != null && timing.key.equals(key) && isExpiringEarly(timing)) {
+			refresh(key, slot, timing, loader);
+		}
+
+		return value;
+	}
+
+	private int slot(K key) {
+		int hash = key.hashCode();
+		return (hash ^ (hash >>> 16)) & (timings.length() - 1);
+	}
+
+	private boolean isExpiringEarly(LoadTiming<K> timing) {
+		// ln of a random number in (0, 1] is negative, the further it is from 0 the earlier the expiry.
+		double random = 1.0 - ThreadLocalRandom.current().nextDouble();
+		return System.currentTimeMillis() - timing.loadMillis * beta * Math.log(random) >= timing.expiresAt;
+	}
+
+	private void refresh(K key, int slot, LoadTiming<K> timing, Function<? super K, ? extends V> loader) {
+		if (!refreshing.add(key)) {
+			return;
+		}
+
+		try {
+			executor.execute(() -> {
+				try {
+					long start = System.nanoTime();
+					V value = loader.apply(key);
+					LoadTiming<K> loaded = value != null ? new LoadTiming<>(key, timeToLiveMillis, elapsedMillis(start)) : null;
+
+					// The entry was written or removed while it was loading, the reloaded value is older than that.
+					if (!timings.compareAndSet(slot, timing, loaded)) {
+						return;
+					}
+					if (value == null) {
+						cache.remove(key);
+					} else {
+						cache.put(key, value);
+						// A write after the timing was swapped may have been overwritten by the reloaded value,
+						// the entry is removed rather than left stale and the next read loads it.
+						if (timings.get(slot) != loaded) {
+							cache.remove(key);
+						}
+					}
+					refreshes.increment();
+				} catch (RuntimeException e) {
+					LOG.warn("Error refreshing {}, it expires as usual.", key, e);
+				} finally {
+					refreshing.remove(key);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			refreshing.remove(key);
+			skippedRefreshes.increment();
+		}
+	}
+
+	private void write(K key, V value, long loadMillis) {
+		averageLoadMillis = (averageLoadMillis * 7 + Math.max(loadMillis, 1)) / 8;
+
+		// The timing is set first so that a reload in flight sees the write and drops its value.
+		timings.set(slot(key), new LoadTiming<>(key, timeToLiveMillis, loadMillis));
+		cache.put(key, value);
+	}
+
+	private static long elapsedMillis(long startNanos) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+	}
+
+	@Override
+	public void put(K key, V value) {
+		write(key, value, averageLoadMillis);
+	}
+
+	@Override
+	public boolean putIfAbsent(K key, V value) {
+		boolean put = cache.putIfAbsent(key, value);
+		if (put) {
+			timings.set(slot(key), new LoadTiming<>(key, timeToLiveMillis, averageLoadMillis));
+		}
+		return put;
+	}
+
+	@Override
+	public V get(K key) {
+		return cache.get(key);
+	}
+
+	@Override
+	public V peek(K key) {
+		return cache.peek(key);
+	}
+
+	@Override
+	public Map<K, V> getAll(Set<? extends K> keys) {
+		return cache.getAll(keys);
+	}
+
+	@Override
+	public void putAll(Map<? extends K, ? extends V> entries) {
+		entries.forEach(this::put);
+	}
+
+	@Override
+	public void removeAll(Set<? extends K> keys) {
+		keys.forEach(this::remove);
+	}
+
+	@Override
+	public boolean containsKey(K key) {
+		return cache.containsKey(key);
+	}
+
+	@Override
+	public void remove(K key) {
+		int slot = slot(key);
+		// Only the timing of the key, a reload of it in flight then drops its value.
+		LoadTiming<K> timing;
+		do {
+			timing = timings.get(slot);
+		} while (timing != null && timing.key.equals(key) && !timings.compareAndSet(slot, timing, null));
+		cache.remove(key);
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < timings.length(); i++) {
+			timings.set(i, null);
+		}
+		cache.clear();
+	}
+
+	/**
+	 * @return the number of entries reloaded ahead of their expiry.
+	 */
+	@ManagedAttribute(description = "Entries reloaded ahead of their expiry")
+	public long getRefreshes() {
+		return refreshes.sum();
+	}
+
+	/**
+	 * @return the number of reloads skipped because the executor was saturated.
+	 */
+	@ManagedAttribute(description = "Reloads skipped because the executor was saturated")
+	public long getSkippedRefreshes() {
+		return skippedRefreshes.sum();
+	}
+
+	private static final class LoadTiming<K> {
+
+		private final K key;
+		private final long expiresAt;
+		private final long loadMillis;
+
+		LoadTiming(K key, long timeToLiveMillis, long loadMillis) {
+			this.key = key;
+			this.expiresAt = System.currentTimeMillis() + timeToLiveMillis;
+			// A load faster than a millisecond would never be reloaded early.
+			this.loadMillis = Math.max(loadMillis, 1);
+		}
+	}
+}
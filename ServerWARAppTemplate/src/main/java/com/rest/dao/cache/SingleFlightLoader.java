@@ -0,0 +1,102 @@
+package com.rest.dao.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Coalesces concurrent loads of the same key into one.
+ *
+ * When a popular customer expires from the cache every request for it misses at the same moment and
+ * runs its own SELECT. The DAOs load their cache misses through here: the first miss of an id starts the
+ * load and every miss arriving while it is in flight waits on the same CompletableFuture, so the database
+ * sees a single query. The load is forgotten as soon as it completes, the cache serves the requests after
+ * it. Cache hits never get here, so the counters are the loads that went to the database and the misses
+ * that waited on them.
+ */
+@ManagedResource(objectName = "com.rest:type=CustomerDAO,name=SingleFlight", description = "Coalesces concurrent loads of a customer")
+public class SingleFlightLoader<K, V> {
+
+	private static final Logger LOG = LogManager.getLogger(SingleFlightLoader.class);
+
+	// The loads in flight by their key.
+	private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+	private final LongAdder originatingLoads = new LongAdder();
+	private final LongAdder coalescedLoads = new LongAdder();
+
+	/**
+	 * Loads the value of the key with the loader, unless a load of the key is already in flight, then
+	 * its value is returned.
+	 */
+	public V load(K key, Function<? super K, ? extends V> loader) {
+		CompletableFuture<V> load = new CompletableFuture<>();
+
+		CompletableFuture<V> current = inFlight.putIfAbsent(key, load);
+		if (current != null) {
+			// Another miss is already loading the key, wait for it.
+			coalescedLoads.increment();
+			LOG.debug("Waiting on the load of {} in flight.", key);
+			return join(current);
+		}
+
+		originatingLoads.increment();
+		try {
+			V value = loader.apply(key);
+			load.complete(value);
+			return value;
+		} catch (RuntimeException | Error e) {
+			load.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, load);
+		}
+	}
+
+	/**
+	 * Forgets the load of the key in flight, after the key was written. A load that started before the
+	 * write may return the previous value, the loads after the write must not wait on it.
+	 */
+	public void forget(K key) {
+		inFlight.remove(key);
+	}
+
+	private static <V> V join(CompletableFuture<V> load) {
+		try {
+			return load.join();
+		} catch (CompletionException e) {
+			// Rethrow what the originating load got.
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the number of loads that went to the database.
+	 */
+	@ManagedAttribute(description = "Loads that went to the database")
+	public long getOriginatingLoads() {
+		return originatingLoads.sum();
+	}
+
+	/**
+	 * @return the number of loads that waited on a load already in flight.
+	 */
+	@ManagedAttribute(description = "Loads that waited on a load already in flight")
+	public long getCoalescedLoads() {
+		return coalescedLoads.sum();
+	}
+}
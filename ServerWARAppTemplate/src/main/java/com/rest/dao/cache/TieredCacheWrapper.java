@@ -0,0 +1,190 @@
+package com.rest.dao.cache;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * A small heap cache in front of a large off-heap cache, see cache/ehcache.xml.
+ *
+ * Every entry is written to both tiers, so an entry evicted from the heap is still found off-heap. An entry
+ * found off-heap is copied back to the heap, where it lives for up to another time to live. Reading off-heap
+ * costs deserializing the entry but no garbage collection pauses, so the whole active set fits in memory
+ * with a small heap.
+ *
+ * An entry is copied back with putIfAbsent so that it doesn't overwrite a newer value written meanwhile. A removal
+ * between reading the entry off-heap and copying it back would leave the removed value in the heap, so the removals
+ * are counted and the copy is undone when one happened in between.
+ *
+ * The hits of each tier are counted, the JCache statistics of the caches only count them per cache.
+ */
+@ManagedResource(description = "Heap cache in front of an off-heap cache")
+public class TieredCacheWrapper<K, V> implements CacheWrapper<K, V> {
+
+	private final CacheWrapper<K, V> heap;
+	private final CacheWrapper<K, V> offHeap;
+
+	// Incremented by every removal between removing off-heap and removing from the heap.
+	private final AtomicLong removals = new AtomicLong();
+
+	private final LongAdder heapHits = new LongAdder();
+	private final LongAdder offHeapHits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * @param heap the cache of the hot entries.
+	 * @param offHeap the cache of all the entries.
+	 */
+	public TieredCacheWrapper(CacheWrapper<K, V> heap, CacheWrapper<K, V> offHeap) {
+		this.heap = heap;
+		this.offHeap = offHeap;
+	}
+
+	@Override
+	public V get(K key) {
+		V value = heap.get(key);
+		if (value != null) {
+			heapHits.increment();
+			return value;
+		}
+
+		long removalsBefore = removals.get();
+		value = offHeap.get(key);
+		if (value != null) {
+			offHeapHits.increment();
+			if (heap.putIfAbsent(key, value) && removals.get() != removalsBefore) {
+				// The entry may have been removed after it was read, it is left to the next read off-heap.
+				heap.remove(key);
+			}
+			return value;
+		}
+
+		misses.increment();
+		return null;
+	}
+
+	@Override
+	public V peek(K key) {
+		// Not counted as a hit or a miss, the entry stays in the tier it is in.
+		V value = heap.peek(key);
+		return value != null ? value : offHeap.peek(key);
+	}
+
+	@Override
+	public V get(K key, Function<? super K, ? extends V> loader) {
+		V value = get(key);
+		if (value == null) {
+			value = loader.apply(key);
+			if (value != null) {
+				put(key, value);
+			}
+		}
+		return value;
+	}
+
+	@Override
+	public Map<K, V> getAll(Set<? extends K> keys) {
+		Map<K, V> values = new HashMap<>(heap.getAll(keys));
+		heapHits.add(values.size());
+
+		if (values.size() < keys.size()) {
+			Set<K> offHeapKeys = new HashSet<>(keys);
+			offHeapKeys.removeAll(values.keySet());
+
+			long removalsBefore = removals.get();
+			Map<K, V> offHeapValues = offHeap.getAll(offHeapKeys);
+			offHeapHits.add(offHeapValues.size());
+			misses.add(offHeapKeys.size() - offHeapValues.size());
+
+			offHeapValues.forEach(heap::putIfAbsent);
+			if (removals.get() != removalsBefore) {
+				heap.removeAll(offHeapValues.keySet());
+			}
+			values.putAll(offHeapValues);
+		}
+		return values;
+	}
+
+	@Override
+	public void put(K key, V value) {
+		offHeap.put(key, value);
+		heap.put(key, value);
+	}
+
+	@Override
+	public boolean putIfAbsent(K key, V value) {
+		long removalsBefore = removals.get();
+		if (heap.containsKey(key) || !offHeap.putIfAbsent(key, value)) {
+			return false;
+		}
+		if (heap.putIfAbsent(key, value) && removals.get() != removalsBefore) {
+			heap.remove(key);
+		}
+		return true;
+	}
+
+	@Override
+	public void putAll(Map<? extends K, ? extends V> entries) {
+		offHeap.putAll(entries);
+		heap.putAll(entries);
+	}
+
+	@Override
+	public boolean containsKey(K key) {
+		return heap.containsKey(key) || offHeap.containsKey(key);
+	}
+
+	@Override
+	public void remove(K key) {
+		// Off-heap first, a read that copied the entry back to the heap before the heap removal sees the count
+		// change and undoes its copy.
+		offHeap.remove(key);
+		removals.incrementAndGet();
+		heap.remove(key);
+	}
+
+	@Override
+	public void removeAll(Set<? extends K> keys) {
+		offHeap.removeAll(keys);
+		removals.incrementAndGet();
+		heap.removeAll(keys);
+	}
+
+	@Override
+	public void clear() {
+		offHeap.clear();
+		removals.incrementAndGet();
+		heap.clear();
+	}
+
+	/**
+	 * @return the number of reads found in the heap.
+	 */
+	@ManagedAttribute(description = "Reads found in the heap")
+	public long getHeapHits() {
+		return heapHits.sum();
+	}
+
+	/**
+	 * @return the number of reads found off-heap but not in the heap.
+	 */
+	@ManagedAttribute(description = "Reads found off-heap but not in the heap")
+	public long getOffHeapHits() {
+		return offHeapHits.sum();
+	}
+
+	/**
+	 * @return the number of reads found in neither tier.
+	 */
+	@ManagedAttribute(description = "Reads found in neither tier")
+	public long getMisses() {
+		return misses.sum();
+	}
+}
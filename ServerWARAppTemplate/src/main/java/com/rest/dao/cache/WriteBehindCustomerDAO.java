@@ -0,0 +1,403 @@
+package com.rest.dao.cache;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import javax.sql.DataSource;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import com.rest.dao.CustomerDAO;
+import com.rest.dao.cache.CustomerInvalidation.Operation;
+import com.rest.domain.Customer;
+import com.rest.jms.producer.InvalidationProducer;
+
+/**
+ * Decorates the JDBC CustomerDAO so that updates are written to the database in the background.
+ *
+ * Bursts of updates of the same few customers each cost an UPDATE and a commit. Here an update is applied
+ * to the cache and kept pending, the updates of a customer within the same window are coalesced into its
+ * last one and a background writer sends all the pending updates in one JDBC batch and one commit. Reads
+ * of a customer with a pending update return it. When as many customers as the capacity have pending
+ * updates the callers wait for the writer. On close the pending updates are written before returning.
+ *
+ * The version is checked against the pending update, so a stale version still fails straight away. A customer
+ * that is neither pending nor cached is read first, so an update of a missing customer still fails. The cache
+ * is written under the same lock as the pending updates, so it ends up with the last of concurrent updates. The
+ * database can't be checked before the flush, an update of a customer that was deleted or changed by
+ * another node, or whose email was taken in the meantime, is logged and dropped by the writer and the
+ * customer is removed from the cache. The pending updates are lost if the JVM dies. Listing, streaming
+ * and finding by email read the database and see the updates once they are written.
+ */
+@ManagedResource(objectName = "com.rest:type=CustomerDAO,name=WriteBehind", description = "Writes the customer updates in the background")
+public class WriteBehindCustomerDAO implements CustomerDAO {
+
+	private static final Logger LOG = LogManager.getLogger(WriteBehindCustomerDAO.class);
+
+	// The coalesced updates are counted into the version, the version is only checked when the first update carried one.
+	private static final String UPDATE_SQL = "UPDATE Customers SET first_name = ?, last_name = ?, email = ?, version = version + ? "
+			+ "WHERE id = ? AND version = COALESCE(?, version)";
+
+	private final CustomerDAO customerDAO;
+	private final DataSource dataSource;
+	private final CacheWrapper<Integer, Customer> customerCache;
+	private final CacheWrapper<String, Integer> customerEmailCache;
+	private final int capacity;
+	private final ScheduledExecutorService writer;
+
+	private InvalidationProducer invalidationProducer;
+
+	// The updates not written yet and the ones being written, by id in the order they were first updated.
+	private Map<Integer, PendingUpdate> pending = new LinkedHashMap<>();
+	private Map<Integer, PendingUpdate> flushing = Collections.emptyMap();
+
+	private final LongAdder updates = new LongAdder();
+	private final LongAdder writes = new LongAdder();
+	private final LongAdder failedWrites = new LongAdder();
+
+	/**
+	 * @param customerDAO the JDBC DAO that does everything else.
+	 * @param dataSource the database the updates are written to.
+	 * @param customerCache the cache of the customers of the JDBC DAO.
+	 * @param customerEmailCache the cache of the ids by email of the JDBC DAO.
+	 * @param capacity the number of customers with pending updates before the callers wait.
+	 * @param windowMillis how often the pending updates are written.
+	 */
+	public WriteBehindCustomerDAO(CustomerDAO customerDAO, DataSource dataSource, CacheWrapper<Integer, Customer> customerCache,
+			CacheWrapper<String, Integer> customerEmailCache, int capacity, long windowMillis) {
+		this.customerDAO = customerDAO;
+		this.dataSource = dataSource;
+		this.customerCache = customerCache;
+		this.customerEmailCache = customerEmailCache;
+		this.capacity = capacity;
+		this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "customer-write-behind");
+			thread.setDaemon(true);
+			return thread;
+		});
+		writer.scheduleWithFixedDelay(this::flush, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param invalidationProducer publishes the written updates to the other nodes, which may have reloaded the
+	 * customers before they were written.
+	 */
+	public void setInvalidationProducer(InvalidationProducer invalidationProducer) {
+		this.invalidationProducer = invalidationProducer;
+	}
+
+	@Override
+	public void updateCustomer(int id, Customer customer) {
+		Customer updated = new Customer(customer.getFirstName(), customer.getLastName(), customer.getEmail());
+		updated.setId(id);
+
+		if (pendingCustomer(id) == null && !customerCache.containsKey(id) && customerDAO.getCustomer(id) == null) {
+			LOG.warn("Customer {} not found", id);
+			throw new EmptyResultDataAccessException("Customer not found", 1);
+		}
+
+		synchronized (this) {
+			waitForCapacity(id);
+
+			PendingUpdate current = pending.containsKey(id) ? pending.get(id) : flushing.get(id);
+
+			if (customer.getVersion() != null && current != null && current.customer.getVersion() != null
+					&& !customer.getVersion().equals(current.customer.getVersion())) {
+				LOG.warn("Customer {} was updated by another request", id);
+				throw new OptimisticLockingFailureException("The customer was updated by another request");
+			}
+
+			PendingUpdate queued = pending.get(id);
+			if (queued == null) {
+				// The version the database will have once the update being written, if any, is written.
+				Integer expectedVersion = current != null ? current.customer.getVersion() : customer.getVersion();
+				queued = new PendingUpdate(expectedVersion);
+				pending.put(id, queued);
+			}
+			queued.updates++;
+			// Without a version the version the customer is updated to is unknown.
+			Integer version = queued.expectedVersion != null ? queued.expectedVersion + queued.updates : null;
+			updated.setVersion(version);
+			queued.customer = updated;
+			updates.increment();
+
+			// The previous email no longer maps to the customer if it was changed.
+			Customer previous = customerCache.get(id);
+			if (previous != null && !previous.getEmail().equals(updated.getEmail())) {
+				customerEmailCache.remove(previous.getEmail());
+			}
+			if (updated.getVersion() != null) {
+				customerCache.put(id, updated);
+			} else {
+				customerCache.remove(id);
+			}
+			customerEmailCache.put(updated.getEmail(), id);
+		}
+
+		customer.setVersion(updated.getVersion());
+	}
+
+	private void waitForCapacity(int id) {
+		boolean interrupted = false;
+		while (pending.size() >= capacity && !pending.containsKey(id)) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private synchronized Customer pendingCustomer(int id) {
+		PendingUpdate update = pending.containsKey(id) ? pending.get(id) : flushing.get(id);
+		return update != null ? update.customer : null;
+	}
+
+	/**
+	 * Writes the pending updates in one batch.
+	 */
+	void flush() {
+		Map<Integer, PendingUpdate> batch;
+		synchronized (this) {
+			if (pending.isEmpty()) {
+				return;
+			}
+			batch = pending;
+			flushing = batch;
+			pending = new LinkedHashMap<>();
+			// The callers waiting for capacity go on.
+			notifyAll();
+		}
+
+		try {
+			write(batch);
+		} catch (RuntimeException e) {
+			LOG.error("Error writing {} customer updates", batch.size(), e);
+		} finally {
+			synchronized (this) {
+				flushing = Collections.emptyMap();
+			}
+		}
+	}
+
+	private void write(Map<Integer, PendingUpdate> batch) {
+		try (Connection conn = dataSource.getConnection();
+				PreparedStatement statement = conn.prepareStatement(UPDATE_SQL)) {
+
+			conn.setAutoCommit(false);
+			try {
+				for (Map.Entry<Integer, PendingUpdate> entry : batch.entrySet()) {
+					setParameters(statement, entry.getKey(), entry.getValue());
+					statement.addBatch();
+				}
+				int[] counts = statement.executeBatch();
+				conn.commit();
+
+				int i = 0;
+				for (Map.Entry<Integer, PendingUpdate> entry : batch.entrySet()) {
+					// MySQL doesn't report the count of every statement of a batch.
+					int count = counts[i++];
+					written(entry.getKey(), entry.getValue(), count > 0 || count == Statement.SUCCESS_NO_INFO);
+				}
+				LOG.info("Wrote {} customer updates.", batch.size());
+				return;
+
+			} catch (SQLException e) {
+				LOG.warn("Error writing {} customer updates in a batch, writing them one by one.", batch.size(), e);
+				conn.rollback();
+			}
+
+			// One failed update fails the whole batch, write them one at a time to drop only the failed ones.
+			for (Map.Entry<Integer, PendingUpdate> entry : batch.entrySet()) {
+				boolean updated;
+				try {
+					setParameters(statement, entry.getKey(), entry.getValue());
+					updated = statement.executeUpdate() > 0;
+					conn.commit();
+				} catch (SQLException e) {
+					LOG.error("Error writing Customer: {}", entry.getValue().customer, e);
+					conn.rollback();
+					updated = false;
+				}
+				written(entry.getKey(), entry.getValue(), updated);
+			}
+
+		} catch (SQLException e) {
+			// The cached customers are stale.
+			LOG.error("Error writing {} customer updates", batch.size(), e);
+			for (Map.Entry<Integer, PendingUpdate> entry : batch.entrySet()) {
+				written(entry.getKey(), entry.getValue(), false);
+			}
+		}
+	}
+
+	private static void setParameters(PreparedStatement statement, int id, PendingUpdate update) throws SQLException {
+		statement.setString(1, update.customer.getFirstName());
+		statement.setString(2, update.customer.getLastName());
+		statement.setString(3, update.customer.getEmail());
+		statement.setInt(4, update.updates);
+		statement.setInt(5, id);
+		statement.setObject(6, update.expectedVersion, Types.INTEGER);
+	}
+
+	private void written(int id, PendingUpdate update, boolean updated) {
+		if (updated) {
+			writes.increment();
+			if (invalidationProducer != null) {
+				invalidationProducer.publish(new CustomerInvalidation(Operation.UPDATE, id, update.customer.getVersion()));
+			}
+		} else {
+			// The customer was deleted or updated elsewhere since the update was accepted, the cache is stale.
+			failedWrites.increment();
+			LOG.warn("Dropped the update of Customer: {}", update.customer);
+			customerCache.remove(id);
+		}
+	}
+
+	@Override
+	public Customer getCustomer(int id) {
+		Customer customer = pendingCustomer(id);
+		return customer != null ? customer : customerDAO.getCustomer(id);
+	}
+
+	@Override
+	public List<Customer> getCustomers(Collection<Integer> ids) {
+		List<Customer> customers = new ArrayList<>(customerDAO.getCustomers(ids));
+		for (int i = 0; i < customers.size(); i++) {
+			Customer customer = pendingCustomer(customers.get(i).getId());
+			if (customer != null) {
+				customers.set(i, customer);
+			}
+		}
+		return customers;
+	}
+
+	@Override
+	public void deleteCustomer(int id) {
+		synchronized (this) {
+			// Nothing to write for a deleted customer.
+			if (pending.remove(id) != null) {
+				notifyAll();
+			}
+		}
+		customerDAO.deleteCustomer(id);
+	}
+
+	/**
+	 * @return the number of customers with pending updates.
+	 */
+	@ManagedAttribute(description = "Customers with pending updates")
+	public synchronized int getQueueDepth() {
+		return pending.size();
+	}
+
+	/**
+	 * @return the number of updates accepted.
+	 */
+	@ManagedAttribute(description = "Updates accepted")
+	public long getUpdates() {
+		return updates.sum();
+	}
+
+	/**
+	 * @return the number of rows written, each one the last of the coalesced updates of a customer.
+	 */
+	@ManagedAttribute(description = "Rows written")
+	public long getWrites() {
+		return writes.sum();
+	}
+
+	/**
+	 * @return the number of updates dropped because the customer was deleted or changed elsewhere.
+	 */
+	@ManagedAttribute(description = "Updates dropped by the writer")
+	public long getFailedWrites() {
+		return failedWrites.sum();
+	}
+
+	/**
+	 * @return the number of updates accepted per row written, 1 when nothing was coalesced.
+	 */
+	@ManagedAttribute(description = "Updates accepted per row written")
+	public double getCoalescingRatio() {
+		long written = writes.sum() + failedWrites.sum();
+		return written == 0 ? 1 : (double) updates.sum() / written;
+	}
+
+	/**
+	 * Stops the writer and writes the pending updates.
+	 */
+	public void close() throws InterruptedException {
+		writer.shutdown();
+		writer.awaitTermination(10, TimeUnit.SECONDS);
+		flush();
+		LOG.info("Wrote the pending customer updates, {} updates were written as {} rows.", updates.sum(), writes.sum());
+	}
+
+	@Override
+	public Customer createCustomer(Customer customer) {
+		return customerDAO.createCustomer(customer);
+	}
+
+	@Override
+	public List<Customer> createCustomers(List<Customer> customers) {
+		return customerDAO.createCustomers(customers);
+	}
+
+	@Override
+	public Customer findByEmail(String email) {
+		return customerDAO.findByEmail(email);
+	}
+
+	@Override
+	public List<Customer> getCustomers() {
+		return customerDAO.getCustomers();
+	}
+
+	@Override
+	public List<Customer> getCustomers(int afterId, int limit) {
+		return customerDAO.getCustomers(afterId, limit);
+	}
+
+	@Override
+	public void streamCustomers(Consumer<Customer> consumer) {
+		customerDAO.streamCustomers(consumer);
+	}
+
+	/**
+	 * The last update of a customer along with the number of updates coalesced into it.
+	 */
+	private static class PendingUpdate {
+
+		// The version the database has before the update is written, null when the version isn't checked.
+		private final Integer expectedVersion;
+		private Customer customer;
+		private int updates;
+
+		PendingUpdate(Integer expectedVersion) {
+			this.expectedVersion = expectedVersion;
+		}
+	}
+}
@@ -1,14 +1,30 @@
 package com.rest.dao.impl.hibernate;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import javax.persistence.OptimisticLockException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StaleStateException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 
 import com.rest.dao.CustomerDAO;
+import com.rest.dao.UniqueEmailConstraint;
+import com.rest.dao.cache.SingleFlightLoader;
 import com.rest.domain.Customer;
 
 /**
@@ -24,19 +40,35 @@ public class CustomerDAOImpl implements CustomerDAO {
 		
 	private static final Logger LOG = LogManager.getLogger(CustomerDAOImpl.class);
 	
+	// The number of inserts sent to the database per round trip when creating customers in bulk.
+	private static final int BATCH_SIZE = 500;
+	
+	// The number of rows the driver retrieves per round trip when streaming.
+	private static final int STREAM_FETCH_SIZE = 1000;
+	
 	@Autowired
 	private SessionFactory sessionFactory;
 	
+	// Coalesces the concurrent loads of a customer missing from the L2 cache, when there is one.
+	@Autowired(required = false)
+	private SingleFlightLoader<Integer, Customer> customerLoads;
+	
 	@Override
 	public Customer createCustomer(Customer customer) {
 		Session session = sessionFactory.openSession();
 		
 		session.getTransaction().begin();
 		
-		session.save(customer);
-		
-		session.getTransaction().commit();
-		session.close();
+		try {
+			session.save(customer);
+			
+			session.getTransaction().commit();
+		} catch (RuntimeException e) {
+			session.getTransaction().rollback();
+			throw translateException(e);
+		} finally {
+			session.close();
+		}
 		
 		LOG.info("Successfully created Customer: {}", customer);
 		
@@ -44,21 +76,73 @@ public class CustomerDAOImpl implements CustomerDAO {
 	}
 
 	@Override
-	public void updateCustomer(int id, Customer customer) {
+	public List<Customer> createCustomers(List<Customer> customers) {
 		Session session = sessionFactory.openSession();
 		
 		session.getTransaction().begin();
 		
-		Customer current = session.get(Customer.class, id);
+		try {
+			for (int i = 0; i < customers.size(); i++) {
+				session.save(customers.get(i));
+				
+				// Flush and clear the session a batch at a time so that it does not end up 
+				// holding every customer that was created. NOTE: The IDENTITY id generation 
+				// makes Hibernate insert each customer when it is saved to learn its id, so 
+				// the inserts themselves are not sent as JDBC batches.
+				if ((i + 1) % BATCH_SIZE == 0) {
+					session.flush();
+					session.clear();
+				}
+			}
+			
+			session.getTransaction().commit();
+		} catch (RuntimeException e) {
+			session.getTransaction().rollback();
+			throw translateException(e);
+		} finally {
+			session.close();
+		}
 		
-		current.setFirstName(customer.getFirstName());
-		current.setLastName(customer.getLastName());
-		current.setEmail(customer.getEmail());
+		LOG.info("Successfully created {} Customers", customers.size());
 		
-		session.update(current);
+		return customers;
+	}
+
+	@Override
+	public void updateCustomer(int id, Customer customer) {
+		Session session = sessionFactory.openSession();
 		
-		session.getTransaction().commit();
-		session.close();
+		session.getTransaction().begin();
+		
+		try {
+			customer.setId(id);
+			
+			if (customer.getVersion() != null) {
+				// Reattach the customer as it is, Hibernate issues a single UPDATE ... WHERE id = ? AND version = ?
+				// without selecting the row first. On commit the L2 cache entry is replaced with the new state.
+				session.update(customer);
+			} else {
+				// Without a version the update always wins, the current version is read, usually from the L2 cache.
+				Customer current = session.get(Customer.class, id);
+				
+				if (current == null) {
+					throw new EmptyResultDataAccessException("Customer not found", 1);
+				}
+				
+				current.setFirstName(customer.getFirstName());
+				current.setLastName(customer.getLastName());
+				current.setEmail(customer.getEmail());
+			}
+			
+			session.getTransaction().commit();
+		} catch (RuntimeException e) {
+			session.getTransaction().rollback();
+			throw translateUpdateException(id, e);
+		} finally {
+			session.close();
+		}
+		
+		forgetLoad(id);
 		
 		LOG.info("Successfully updated Customer: {}", customer);
 	}
@@ -83,12 +167,23 @@ public class CustomerDAOImpl implements CustomerDAO {
 		// was deleted, it is not found which is the correct thing to do so we are putting this 
 		// here just for the getCache().contains() to return the right response of false.
 		sessionFactory.getCache().evict(Customer.class, id);
+		forgetLoad(id);
 		
 		LOG.info("Successfully deleted Customer with id: {}", id);
 	}
 
 	@Override
 	public Customer getCustomer(int id) {
+		
+		// The customers in the L2 cache are read from it. Only the misses are coalesced, so the concurrent 
+		// misses of a customer run a single query.
+		if (customerLoads == null || sessionFactory.getCache().contains(Customer.class, id)) {
+			return loadCustomer(id);
+		}
+		return customerLoads.load(id, this::loadCustomer);
+	}
+	
+	private Customer loadCustomer(int id) {
 		Session session = sessionFactory.openSession();
 		
 		Customer customer = session.get(Customer.class, id);
@@ -97,6 +192,32 @@ public class CustomerDAOImpl implements CustomerDAO {
 		
 		return customer;
 	}
+	
+	/**
+	 * Forgets a load of the customer in flight, so that the misses after a write don't get what it read before.
+	 */
+	private void forgetLoad(int id) {
+		if (customerLoads != null) {
+			customerLoads.forget(id);
+		}
+	}
+
+	@Override
+	public Customer findByEmail(String email) {
+		Session session = sessionFactory.openSession();
+		
+		// Point lookup on the unique index CUSTOMERS_IDX01. The query cache holds the id of the customer 
+		// with the email and the L2 cache holds the customer, the query cache is invalidated by any write
+		// of this node to the customers table so the mapping is kept consistent with its creates, updates
+		// and deletes. The writes of the other nodes evict the cached queries, see InvalidationConsumer.
+		List<Customer> customers = session.createQuery("SELECT c FROM Customer c WHERE c.email = :email", Customer.class)
+				.setParameter("email", email.toLowerCase())
+				.setHint("org.hibernate.cacheable", true).getResultList();
+		
+		session.close();
+		
+		return customers.isEmpty() ? null : customers.get(0);
+	}
 
 	@Override
 	public List<Customer> getCustomers() {
@@ -119,4 +240,110 @@ public class CustomerDAOImpl implements CustomerDAO {
 //					.setParameter("email", email).setHint("org.hibernate.cacheable", true).getResultList();
 //		}
 	}
+
+	@Override
+	public List<Customer> getCustomers(int afterId, int limit) {
+		Session session = sessionFactory.openSession();
+		
+		// Keyset pagination, seeks on the primary key to the first row after the last id of the previous page.
+		List<Customer> customers = session.createQuery("SELECT c FROM Customer c WHERE c.id > :afterId ORDER BY c.id", Customer.class)
+				.setParameter("afterId", afterId).setMaxResults(limit)
+				.setHint("org.hibernate.cacheable", true).getResultList();
+		
+		session.close();
+		
+		return customers;
+	}
+
+	@Override
+	public List<Customer> getCustomers(Collection<Integer> ids) {
+		Session session = sessionFactory.openSession();
+		
+		// The cached customers are loaded into the session from the L2 cache without going to the database.
+		for (Integer id : ids) {
+			if (sessionFactory.getCache().contains(Customer.class, id)) {
+				session.get(Customer.class, id);
+			}
+		}
+		
+		// The rest are loaded in one IN query on the primary key, the customers already in the session are 
+		// not loaded again. The customers are returned in the order of the ids, null if there is no customer.
+		List<Customer> customers = session.byMultipleIds(Customer.class)
+				.enableSessionCheck(true).withBatchSize(ids.size())
+				.multiLoad(new ArrayList<>(ids));
+		
+		session.close();
+		
+		return customers.stream().filter(Objects::nonNull).collect(Collectors.toList());
+	}
+
+	@Override
+	public void streamCustomers(Consumer<Customer> consumer) {
+		Session session = sessionFactory.openSession();
+		
+		// Scroll forward only over read only entities, bypassing the L2 cache. The session is cleared
+		// every fetch so the first level cache does not end up holding the whole table.
+		ScrollableResults results = session.createQuery("SELECT c FROM Customer c ORDER BY c.id", Customer.class)
+				.setFetchSize(STREAM_FETCH_SIZE).setReadOnly(true).setCacheMode(CacheMode.IGNORE)
+				.scroll(ScrollMode.FORWARD_ONLY);
+		
+		try {
+			int count = 0;
+			while (results.next()) {
+				consumer.accept((Customer) results.get(0));
+				if (++count % STREAM_FETCH_SIZE == 0) {
+					session.clear();
+				}
+			}
+		} finally {
+			results.close();
+			session.close();
+		}
+	}
+	
+	/**
+	 * A missing customer and a customer updated since its version was read both fail the version check 
+	 * of the update. The L2 cache entry is evicted as it is stale either way, then the row is looked up 
+	 * to tell the two apart. This only costs a query when the update has already failed.
+	 */
+	private RuntimeException translateUpdateException(int id, RuntimeException e) {
+		if (!isStale(e)) {
+			return translateException(e);
+		}
+		
+		sessionFactory.getCache().evict(Customer.class, id);
+		forgetLoad(id);
+		
+		if (getCustomer(id) == null) {
+			LOG.warn("Customer {} not found", id);
+			return new EmptyResultDataAccessException("Customer not found", 1);
+		}
+		LOG.warn("Customer {} was updated by another request", id, e);
+		return new OptimisticLockingFailureException("The customer was updated by another request", e);
+	}
+	
+	/**
+	 * Hibernate raises a StaleStateException when the version check fails, converted to 
+	 * an OptimisticLockException of JPA by the session.
+	 */
+	private static boolean isStale(Throwable e) {
+		for (Throwable cause = e; cause != null && cause.getCause() != cause; cause = cause.getCause()) {
+			if (cause instanceof OptimisticLockException || cause instanceof StaleStateException) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Translates a violation of the unique constraint on the email, raised when Hibernate writes 
+	 * a customer whose email another customer already has.
+	 */
+	private static RuntimeException translateException(RuntimeException e) {
+		if (UniqueEmailConstraint.isViolatedBy(e)) {
+			LOG.warn("Email already taken by another Customer", e);
+			return new DuplicateKeyException("The email is already taken", e);
+		}
+		return e;
+	}
 }
@@ -5,17 +5,32 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import javax.sql.DataSource;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 
 import com.rest.dao.CustomerDAO;
+import com.rest.dao.UniqueEmailConstraint;
 import com.rest.dao.cache.CacheWrapper;
+import com.rest.dao.cache.IntCacheWrapper;
+import com.rest.dao.cache.SingleFlightLoader;
 import com.rest.domain.Customer;
 
 /*
@@ -35,11 +50,30 @@ public class CustomerDAOImpl implements CustomerDAO {
 	
 	private static final Logger LOG = LogManager.getLogger(CustomerDAOImpl.class);
 	
+	// The number of inserts sent to the database per round trip when creating customers in bulk.
+	private static final int BATCH_SIZE = 500;
+	
+	// The number of rows the driver retrieves per round trip when streaming.
+	private static final int STREAM_FETCH_SIZE = 1000;
+	
 	@Autowired
 	private DataSource dataSource;
 	
+	private IntCacheWrapper<Customer> customerCache;
+	
+	// Maps an email to the id of the customer that has it.
+	@Autowired
+	private CacheWrapper<String, Integer> customerEmailCache;
+	
+	// Coalesces the concurrent loads of a customer missing from the cache, when there is one.
+	@Autowired(required = false)
+	private SingleFlightLoader<Integer, Customer> customerLoads;
+	
 	@Autowired
-	private CacheWrapper<Integer, Customer> customerCache;
+	public void setCustomerCache(CacheWrapper<Integer, Customer> customerCache) {
+		// The int ids are only boxed when the cache isn't keyed by an int.
+		this.customerCache = IntCacheWrapper.of(customerCache);
+	}
 	
 	@Override
 	public Customer createCustomer(Customer customer) {
@@ -62,28 +96,106 @@ public class CustomerDAOImpl implements CustomerDAO {
 					generatedKey = rs.getLong(1);
 				}
 				
-				// Set the generated key on the customer.
+				// Set the generated key and the initial version on the customer.
 			    customer.setId((int) generatedKey);
+			    customer.setVersion(0);
 			    
 			    LOG.info("Successfully created Customer: {}", customer);
 			}
 			
 		} catch (SQLException e) {
+			// Another customer already has the email, the unique constraint on the email caught it.
+			if (UniqueEmailConstraint.isViolatedBy(e)) {
+				LOG.warn("Email already taken by another Customer: {}", customer);
+				throw new DuplicateKeyException("The email is already taken", e);
+			}
 			LOG.error("Error creating Customer: {}", customer, e);
 			throw new RuntimeException(e);
 		}
 		
-		// Set the customer in the cache.
+		// Set the customer and its email in the cache.
 		customerCache.put(customer.getId(), customer);
+		customerEmailCache.put(customer.getEmail(), customer.getId());
 		LOG.info("Set customer {} in the cache.", customer.getId());
 		
 		return customer;
 	}
 
+	@Override
+	public List<Customer> createCustomers(List<Customer> customers) {
+		
+		String sql = "INSERT INTO Customers (first_name, last_name, email) VALUES (?, ?, ?)";
+		
+		try (Connection conn = dataSource.getConnection()) {
+			
+			// All the customers are created or none of them are.
+			conn.setAutoCommit(false);
+			
+			try (PreparedStatement statement = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+				
+				int batchStart = 0;
+				
+				for (int i = 0; i < customers.size(); i++) {
+					Customer customer = customers.get(i);
+					
+					statement.setString(1, customer.getFirstName());
+					statement.setString(2, customer.getLastName());
+					statement.setString(3, customer.getEmail());
+					statement.addBatch();
+					
+					// Send the inserts a batch at a time so that a large list does not have to be
+					// held by the driver all at once.
+					if ((i + 1) % BATCH_SIZE == 0 || i == customers.size() - 1) {
+						statement.executeBatch();
+						
+						// Set the generated keys on the customers of this batch, they are returned in insert order.
+						ResultSet rs = statement.getGeneratedKeys();
+						for (int j = batchStart; j <= i; j++) {
+							if (!rs.next()) {
+								// A customer without its id can't be returned, roll back all of them.
+								throw new SQLException("Expected " + (i + 1 - batchStart) + " generated keys, got " + (j - batchStart));
+							}
+							customers.get(j).setId((int) rs.getLong(1));
+							customers.get(j).setVersion(0);
+						}
+						batchStart = i + 1;
+					}
+				}
+				
+				conn.commit();
+				
+			} catch (SQLException e) {
+				conn.rollback();
+				throw e;
+			}
+			
+			LOG.info("Successfully created {} Customers", customers.size());
+			
+		} catch (SQLException e) {
+			// Another customer already has the email, the unique constraint on the email caught it.
+			if (UniqueEmailConstraint.isViolatedBy(e)) {
+				LOG.warn("Email already taken by another Customer when creating {} Customers", customers.size());
+				throw new DuplicateKeyException("The email is already taken", e);
+			}
+			LOG.error("Error creating {} Customers", customers.size(), e);
+			throw new RuntimeException(e);
+		}
+		
+		// Set the customers and their emails in the cache.
+		for (Customer customer : customers) {
+			customerCache.put(customer.getId(), customer);
+			customerEmailCache.put(customer.getEmail(), customer.getId());
+		}
+		LOG.info("Set {} customers in the cache.", customers.size());
+		
+		return customers;
+	}
+
 	@Override
 	public void updateCustomer(int id, Customer customer) {
 		
-		String sql = "UPDATE Customers SET first_name = ?, last_name = ?, email = ? WHERE id = ?";
+		// The version is only checked if the customer carries one, otherwise the update always wins.
+		String sql = "UPDATE Customers SET first_name = ?, last_name = ?, email = ?, version = version + 1 WHERE id = ? AND version = COALESCE(?, version)";
 		
 		try (Connection conn = dataSource.getConnection();
 				PreparedStatement statement = conn.prepareStatement(sql)) {
@@ -95,25 +207,67 @@ public class CustomerDAOImpl implements CustomerDAO {
 			statement.setString(1, customer.getFirstName());
 			statement.setString(2, customer.getLastName());
 			statement.setString(3, customer.getEmail());
-			statement.setInt(4, customer.getId());
+			statement.setInt(4, id);
+			statement.setObject(5, customer.getVersion(), Types.INTEGER);
 			
 			int count = statement.executeUpdate();
 			 
 			// Commit the update.
 			conn.commit();
 			
-			if (count > 0) {
-				LOG.info("Successfully updated Customer: {}", customer);
+			if (count == 0) {
+				// The cached customer is stale either way.
+				customerCache.remove(id);
+				forgetLoad(id);
+				throw updateFailed(conn, id);
 			}
 			
+			LOG.info("Successfully updated Customer: {}", customer);
+			
 		} catch (SQLException e) {
+			// Another customer already has the email, the unique constraint on the email caught it.
+			if (UniqueEmailConstraint.isViolatedBy(e)) {
+				LOG.warn("Email already taken by another Customer: {}", customer);
+				throw new DuplicateKeyException("The email is already taken", e);
+			}
 			LOG.error("Error updating Customer: {}", customer, e);
 			throw new RuntimeException(e);
 		}
 		
-		LOG.info("Updating customer {} in the cache.", customer.getId());
-		// Update the customer in the cache.
-		customerCache.put(customer.getId(), customer);
+		LOG.info("Updating customer {} in the cache.", id);
+		// The previous email no longer maps to the customer if it was changed.
+		Customer previous = customerCache.get(id);
+		if (previous != null && !previous.getEmail().equals(customer.getEmail())) {
+			customerEmailCache.remove(previous.getEmail());
+		}
+		// Update the customer and its email in the cache. Without a version the version the 
+		// customer was updated to is unknown, so it is read from the database when next needed.
+		if (customer.getVersion() != null) {
+			customer.setVersion(customer.getVersion() + 1);
+			customerCache.put(id, customer);
+		} else {
+			customerCache.remove(id);
+		}
+		customerEmailCache.put(customer.getEmail(), id);
+		forgetLoad(id);
+	}
+	
+	/**
+	 * A missing customer and a customer updated since its version was read both update no rows. 
+	 * The row is looked up to tell the two apart, this only costs a query when the update has already failed.
+	 */
+	private RuntimeException updateFailed(Connection conn, int id) throws SQLException {
+		try (PreparedStatement statement = conn.prepareStatement("SELECT 1 FROM Customers WHERE id = ?")) {
+			
+			statement.setInt(1, id);
+			
+			if (!statement.executeQuery().next()) {
+				LOG.warn("Customer {} not found", id);
+				return new EmptyResultDataAccessException("Customer not found", 1);
+			}
+		}
+		LOG.warn("Customer {} was updated by another request", id);
+		return new OptimisticLockingFailureException("The customer was updated by another request");
 	}
 
 	@Override
@@ -138,20 +292,42 @@ public class CustomerDAOImpl implements CustomerDAO {
 		}
 		
 		LOG.info("Deleting customer {} from the cache.", id);
-		// Delete the customer from the cache.
+		// Delete the customer and its email from the cache. If the customer is not in the cache a 
+		// stale email mapping is ignored by findByEmail as it can't find the customer it maps to.
+		Customer previous = customerCache.get(id);
+		if (previous != null) {
+			customerEmailCache.remove(previous.getEmail());
+		}
 		customerCache.remove(id);
+		forgetLoad(id);
 	}
 
 	@Override
 	public Customer getCustomer(int id) {
 		
-		// Check the cache.
-		Customer customer = customerCache.get(id);
-		if (customer != null) {
-			LOG.info("Found customer {} in cache.",  id);
-			return customer;
+		// Check the cache, the customer is loaded from the database and set in the cache if it is not found.
+		// The cache may also reload the customer in the background when it is about to expire. Only the 
+		// misses and reloads are coalesced, so the concurrent misses of a customer run a single query.
+		return customerCache.get(id, this::loadCustomerOnce);
+	}
+	
+	private Customer loadCustomerOnce(int id) {
+		return customerLoads != null ? customerLoads.load(id, this::loadCustomer) : loadCustomer(id);
+	}
+	
+	/**
+	 * Forgets a load of the customer in flight, so that the misses after a write don't get what it read before.
+	 */
+	private void forgetLoad(int id) {
+		if (customerLoads != null) {
+			customerLoads.forget(id);
 		}
-		LOG.info("Did not find customer {} in cache.", id);
+	}
+	
+	private Customer loadCustomer(int id) {
+		LOG.info("Loading customer {} into the cache.", id);
+		
+		Customer customer = null;
 		
 		String sql = "SELECT * FROM Customers WHERE id = ?";
 		
@@ -165,6 +341,7 @@ public class CustomerDAOImpl implements CustomerDAO {
 			if (rs.next()){
 				customer = new Customer(rs.getString("first_name"), rs.getString("last_name"), rs.getString("email"));
 	        	customer.setId(rs.getInt("id"));
+	        	customer.setVersion(rs.getInt("version"));
 			}
 			
 		} catch (SQLException e) {
@@ -172,14 +349,58 @@ public class CustomerDAOImpl implements CustomerDAO {
 			throw new RuntimeException(e);
 		}
 		
-		// Set the customer in the cache if found.
+		return customer;	
+	}
+
+	@Override
+	public Customer findByEmail(String email) {
+		
+		email = email.toLowerCase();
+		
+		// Check the cache. The email is only mapped to an id, the customer itself has to be in the customer 
+		// cache and still have the email. Otherwise the mapping is stale and the database is checked.
+		Integer id = customerEmailCache.get(email);
+		if (id != null) {
+			Customer customer = customerCache.get(id);
+			if (customer != null && customer.getEmail().equals(email)) {
+				LOG.info("Found customer {} with email {} in cache.", id, email);
+				return customer;
+			}
+			customerEmailCache.remove(email);
+		}
+		LOG.info("Did not find a customer with email {} in cache.", email);
+		
+		// Point lookup on the unique index CUSTOMERS_IDX01.
+		String sql = "SELECT * FROM Customers WHERE email = ?";
+		
+		Customer customer = null;
+		
+		try (Connection conn = dataSource.getConnection();
+				PreparedStatement statement = conn.prepareStatement(sql)) {
+			
+			statement.setString(1, email);
+			
+			ResultSet rs = statement.executeQuery();
+			 
+			if (rs.next()){
+				customer = new Customer(rs.getString("first_name"), rs.getString("last_name"), rs.getString("email"));
+	        	customer.setId(rs.getInt("id"));
+	        	customer.setVersion(rs.getInt("version"));
+			}
+			
+		} catch (SQLException e) {
+			LOG.error("Error retreiving Customer with email: {}", email, e);
+			throw new RuntimeException(e);
+		}
+		
+		// Set the customer and its email in the cache if found.
 		if (customer != null) {
-			// Set the customer in the cache.
 			customerCache.put(customer.getId(), customer);
+			customerEmailCache.put(customer.getEmail(), customer.getId());
 			LOG.info("Set customer {} in the cache.", customer.getId());
 		}
 		
-		return customer;	
+		return customer;
 	}
 
 	@Override
@@ -197,6 +418,7 @@ public class CustomerDAOImpl implements CustomerDAO {
 			while (rs.next()){
 				Customer customer = new Customer(rs.getString("first_name"), rs.getString("last_name"), rs.getString("email"));
 	        	customer.setId(rs.getInt("id"));
+	        	customer.setVersion(rs.getInt("version"));
 	        	customers.add(customer);
 			}
 			
@@ -205,6 +427,93 @@ public class CustomerDAOImpl implements CustomerDAO {
 			throw new RuntimeException(e);
 		}
 		
+		cacheCustomers(customers);
+		
+		return customers;
+	}
+
+	@Override
+	public List<Customer> getCustomers(int afterId, int limit) {
+		
+		List<Customer> customers = new ArrayList<>();
+		
+		// Keyset pagination, the primary key index is used to seek to the first row after the 
+		// last id of the previous page. Unlike OFFSET the cost does not grow the deeper we page.
+		String sql = "SELECT * FROM Customers WHERE id > ? ORDER BY id LIMIT ?";
+		
+		try (Connection conn = dataSource.getConnection();
+				PreparedStatement statement = conn.prepareStatement(sql)) {
+			
+			statement.setInt(1, afterId);
+			statement.setInt(2, limit);
+			
+			ResultSet rs = statement.executeQuery();
+			 
+			while (rs.next()){
+				Customer customer = new Customer(rs.getString("first_name"), rs.getString("last_name"), rs.getString("email"));
+	        	customer.setId(rs.getInt("id"));
+	        	customer.setVersion(rs.getInt("version"));
+	        	customers.add(customer);
+			}
+			
+		} catch (SQLException e) {
+			LOG.error("Error retrieving the Customers after id: {}", afterId, e);
+			throw new RuntimeException(e);
+		}
+		
+		cacheCustomers(customers);
+		
+		return customers;
+	}
+	
+	@Override
+	public List<Customer> getCustomers(Collection<Integer> ids) {
+		
+		// Check the cache for all the customers in one call.
+		Map<Integer, Customer> customers = new HashMap<>(customerCache.getAll(new HashSet<>(ids)));
+		LOG.info("Found {} of {} customers in cache.", customers.size(), ids.size());
+		
+		List<Integer> missingIds = ids.stream().distinct().filter(id -> !customers.containsKey(id)).collect(Collectors.toList());
+		
+		if (!missingIds.isEmpty()) {
+			// Retrieve all the customers that were not cached in one query on the primary key.
+			String sql = "SELECT * FROM Customers WHERE id IN (" + String.join(", ", Collections.nCopies(missingIds.size(), "?")) + ")";
+			
+			Map<Integer, Customer> missingCustomers = new HashMap<>();
+			
+			try (Connection conn = dataSource.getConnection();
+					PreparedStatement statement = conn.prepareStatement(sql)) {
+				
+				for (int i = 0; i < missingIds.size(); i++) {
+					statement.setInt(i + 1, missingIds.get(i));
+				}
+				
+				ResultSet rs = statement.executeQuery();
+				 
+				while (rs.next()){
+					Customer customer = new Customer(rs.getString("first_name"), rs.getString("last_name"), rs.getString("email"));
+		        	customer.setId(rs.getInt("id"));
+		        	customer.setVersion(rs.getInt("version"));
+		        	missingCustomers.put(customer.getId(), customer);
+				}
+				
+			} catch (SQLException e) {
+				LOG.error("Error retrieving the Customers with ids: {}", missingIds, e);
+				throw new RuntimeException(e);
+			}
+			
+			// Set the customers in the cache in one call.
+			customerCache.putAll(missingCustomers);
+			LOG.info("Set {} customers in the cache.", missingCustomers.size());
+			
+			customers.putAll(missingCustomers);
+		}
+		
+		// Return the customers in the order of the ids.
+		return ids.stream().map(customers::get).filter(Objects::nonNull).collect(Collectors.toList());
+	}
+	
+	private void cacheCustomers(List<Customer> customers) {
 		for (Customer customer : customers) {
 			// Check if the customer is in the cache.
 			if (customerCache.putIfAbsent(customer.getId(), customer)) {
@@ -212,7 +521,32 @@ public class CustomerDAOImpl implements CustomerDAO {
 				LOG.info("Set customer {} in the cache.", customer.getId());
 			}
 		}
+	}
+
+	@Override
+	public void streamCustomers(Consumer<Customer> consumer) {
 		
-		return customers;
+		String sql = "SELECT * FROM Customers ORDER BY id";
+		
+		try (Connection conn = dataSource.getConnection();
+				PreparedStatement statement = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+			
+			// A forward only, read only result set with a fetch size only holds one fetch worth of rows 
+			// in memory at a time. MySQL requires useCursorFetch=true on the URL to honour the fetch size.
+			statement.setFetchSize(STREAM_FETCH_SIZE);
+			
+			ResultSet rs = statement.executeQuery();
+			 
+			while (rs.next()){
+				Customer customer = new Customer(rs.getString("first_name"), rs.getString("last_name"), rs.getString("email"));
+	        	customer.setId(rs.getInt("id"));
+	        	customer.setVersion(rs.getInt("version"));
+	        	consumer.accept(customer);
+			}
+			
+		} catch (SQLException e) {
+			LOG.error("Error streaming all the Customers", e);
+			throw new RuntimeException(e);
+		}
 	}
 }
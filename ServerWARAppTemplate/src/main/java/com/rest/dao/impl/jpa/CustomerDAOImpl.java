@@ -1,34 +1,69 @@
 package com.rest.dao.impl.jpa;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import javax.persistence.CacheStoreMode;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
+import javax.persistence.OptimisticLockException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.StaleStateException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 
 import com.rest.dao.CustomerDAO;
+import com.rest.dao.UniqueEmailConstraint;
+import com.rest.dao.cache.SingleFlightLoader;
 import com.rest.domain.Customer;
 
 public class CustomerDAOImpl implements CustomerDAO {
 		
 	private static final Logger LOG = LogManager.getLogger(CustomerDAOImpl.class);
 	
+	// The number of inserts sent to the database per round trip when creating customers in bulk.
+	private static final int BATCH_SIZE = 500;
+	
+	// The number of rows the driver retrieves per round trip when streaming.
+	private static final int STREAM_FETCH_SIZE = 1000;
+	
 	@Autowired
 	private EntityManagerFactory entityManagerFactory;
 	
+	// Coalesces the concurrent loads of a customer missing from the L2 cache, when there is one.
+	@Autowired(required = false)
+	private SingleFlightLoader<Integer, Customer> customerLoads;
+	
 	@Override
 	public Customer createCustomer(Customer customer) {
 		EntityManager em = entityManagerFactory.createEntityManager();
 		
 		em.getTransaction().begin();
 		
-		em.persist(customer);
-		
-		em.getTransaction().commit();
-		em.close();
+		try {
+			em.persist(customer);
+			
+			em.getTransaction().commit();
+		} catch (RuntimeException e) {
+			em.getTransaction().rollback();
+			throw translateException(e);
+		} finally {
+			em.close();
+		}
 		
 		LOG.info("Successfully created Customer: {}", customer);
 		
@@ -36,19 +71,74 @@ public class CustomerDAOImpl implements CustomerDAO {
 	}
 
 	@Override
-	public void updateCustomer(int id, Customer customer) {
+	public List<Customer> createCustomers(List<Customer> customers) {
 		EntityManager em = entityManagerFactory.createEntityManager();
 		
 		em.getTransaction().begin();
 		
-		Customer current = em.find(Customer.class, id);
+		try {
+			for (int i = 0; i < customers.size(); i++) {
+				em.persist(customers.get(i));
+				
+				// Flush and clear the entity manager a batch at a time so that it does not end up 
+				// holding every customer that was created. NOTE: The IDENTITY id generation 
+				// makes Hibernate insert each customer when it is persisted to learn its id, so 
+				// the inserts themselves are not sent as JDBC batches.
+				if ((i + 1) % BATCH_SIZE == 0) {
+					em.flush();
+					em.clear();
+				}
+			}
+			
+			em.getTransaction().commit();
+		} catch (RuntimeException e) {
+			em.getTransaction().rollback();
+			throw translateException(e);
+		} finally {
+			em.close();
+		}
 		
-		current.setFirstName(customer.getFirstName());
-		current.setLastName(customer.getLastName());
-		current.setEmail(customer.getEmail());
+		LOG.info("Successfully created {} Customers", customers.size());
 		
-		em.getTransaction().commit();
-		em.close();
+		return customers;
+	}
+
+	@Override
+	public void updateCustomer(int id, Customer customer) {
+		EntityManager em = entityManagerFactory.createEntityManager();
+		
+		em.getTransaction().begin();
+		
+		try {
+			customer.setId(id);
+			
+			if (customer.getVersion() != null) {
+				// A merge selects the row before updating it, and inserts it if it is missing. Hibernate, the 
+				// provider, reattaches the customer as it is instead and issues a single UPDATE ... WHERE id = ? 
+				// AND version = ?. On commit the L2 cache entry is replaced with the new state.
+				em.unwrap(Session.class).update(customer);
+			} else {
+				// Without a version the update always wins, the current version is read, usually from the L2 cache.
+				Customer current = em.find(Customer.class, id);
+				
+				if (current == null) {
+					throw new EmptyResultDataAccessException("Customer not found", 1);
+				}
+				
+				current.setFirstName(customer.getFirstName());
+				current.setLastName(customer.getLastName());
+				current.setEmail(customer.getEmail());
+			}
+			
+			em.getTransaction().commit();
+		} catch (RuntimeException e) {
+			em.getTransaction().rollback();
+			throw translateUpdateException(id, e);
+		} finally {
+			em.close();
+		}
+		
+		forgetLoad(id);
 		
 		LOG.info("Successfully updated Customer: {}", customer);
 	}
@@ -73,12 +163,23 @@ public class CustomerDAOImpl implements CustomerDAO {
 		// was deleted, it is not found which is the correct thing to do so we are putting this 
 		// here just for the getCache().contains() to return the right response of false.
 		entityManagerFactory.getCache().evict(Customer.class, id);
+		forgetLoad(id);
 		
 		LOG.info("Successfully deleted Customer with id: {}", id);
 	}
 
 	@Override
 	public Customer getCustomer(int id) {
+		
+		// The customers in the L2 cache are read from it. Only the misses are coalesced, so the concurrent 
+		// misses of a customer run a single query.
+		if (customerLoads == null || entityManagerFactory.getCache().contains(Customer.class, id)) {
+			return loadCustomer(id);
+		}
+		return customerLoads.load(id, this::loadCustomer);
+	}
+	
+	private Customer loadCustomer(int id) {
 		EntityManager em = entityManagerFactory.createEntityManager();
 		
 		Customer customer = em.find(Customer.class, id);
@@ -87,6 +188,32 @@ public class CustomerDAOImpl implements CustomerDAO {
 		
 		return customer;
 	}
+	
+	/**
+	 * Forgets a load of the customer in flight, so that the misses after a write don't get what it read before.
+	 */
+	private void forgetLoad(int id) {
+		if (customerLoads != null) {
+			customerLoads.forget(id);
+		}
+	}
+
+	@Override
+	public Customer findByEmail(String email) {
+		EntityManager em = entityManagerFactory.createEntityManager();
+		
+		// Point lookup on the unique index CUSTOMERS_IDX01. The query cache holds the id of the customer 
+		// with the email and the L2 cache holds the customer, the query cache is invalidated by any write
+		// of this node to the customers table so the mapping is kept consistent with its creates, updates
+		// and deletes. The writes of the other nodes evict the cached queries, see InvalidationConsumer.
+		List<Customer> customers = em.createQuery("SELECT c FROM Customer c WHERE c.email = :email", Customer.class)
+				.setParameter("email", email.toLowerCase())
+				.setHint("org.hibernate.cacheable", true).getResultList();
+		
+		em.close();
+		
+		return customers.isEmpty() ? null : customers.get(0);
+	}
 
 	@Override
 	public List<Customer> getCustomers() {
@@ -109,4 +236,118 @@ public class CustomerDAOImpl implements CustomerDAO {
 //					.setParameter("email", email).setHint("org.hibernate.cacheable", true).getResultList();
 //		}
 	}
+
+	@Override
+	public List<Customer> getCustomers(int afterId, int limit) {
+		EntityManager em = entityManagerFactory.createEntityManager();
+		
+		// Keyset pagination, seeks on the primary key to the first row after the last id of the previous page.
+		List<Customer> customers = em.createQuery("SELECT c FROM Customer c WHERE c.id > :afterId ORDER BY c.id", Customer.class)
+				.setParameter("afterId", afterId).setMaxResults(limit)
+				.setHint("org.hibernate.cacheable", true).getResultList();
+		
+		em.close();
+		
+		return customers;
+	}
+
+	@Override
+	public List<Customer> getCustomers(Collection<Integer> ids) {
+		EntityManager em = entityManagerFactory.createEntityManager();
+		
+		Map<Integer, Customer> customers = new HashMap<>();
+		List<Integer> missingIds = new ArrayList<>();
+		
+		// The cached customers are found in the L2 cache without going to the database.
+		for (Integer id : new LinkedHashSet<>(ids)) {
+			if (entityManagerFactory.getCache().contains(Customer.class, id)) {
+				customers.put(id, em.find(Customer.class, id));
+			} else {
+				missingIds.add(id);
+			}
+		}
+		
+		// The rest are retrieved in one IN query on the primary key.
+		if (!missingIds.isEmpty()) {
+			em.createQuery("SELECT c FROM Customer c WHERE c.id IN :ids", Customer.class)
+					.setParameter("ids", missingIds).getResultList()
+					.forEach(customer -> customers.put(customer.getId(), customer));
+		}
+		
+		em.close();
+		
+		// Return the customers in the order of the ids.
+		return ids.stream().map(customers::get).filter(Objects::nonNull).collect(Collectors.toList());
+	}
+
+	@Override
+	public void streamCustomers(Consumer<Customer> consumer) {
+		EntityManager em = entityManagerFactory.createEntityManager();
+		
+		// Hibernate backs the result stream with a forward only scroll. Entities are read only and bypass 
+		// the L2 cache, the entity manager is cleared every fetch so it does not end up holding the whole table.
+		try (Stream<Customer> stream = em.createQuery("SELECT c FROM Customer c ORDER BY c.id", Customer.class)
+				.setHint("org.hibernate.fetchSize", STREAM_FETCH_SIZE)
+				.setHint("org.hibernate.readOnly", true)
+				.setHint("javax.persistence.cache.storeMode", CacheStoreMode.BYPASS)
+				.getResultStream()) {
+			
+			int count = 0;
+			Iterator<Customer> customers = stream.iterator();
+			while (customers.hasNext()) {
+				consumer.accept(customers.next());
+				if (++count % STREAM_FETCH_SIZE == 0) {
+					em.clear();
+				}
+			}
+		} finally {
+			em.close();
+		}
+	}
+	
+	/**
+	 * A missing customer and a customer updated since its version was read both fail the version check 
+	 * of the update. The L2 cache entry is evicted as it is stale either way, then the row is looked up 
+	 * to tell the two apart. This only costs a query when the update has already failed.
+	 */
+	private RuntimeException translateUpdateException(int id, RuntimeException e) {
+		if (!isStale(e)) {
+			return translateException(e);
+		}
+		
+		entityManagerFactory.getCache().evict(Customer.class, id);
+		forgetLoad(id);
+		
+		if (getCustomer(id) == null) {
+			LOG.warn("Customer {} not found", id);
+			return new EmptyResultDataAccessException("Customer not found", 1);
+		}
+		LOG.warn("Customer {} was updated by another request", id, e);
+		return new OptimisticLockingFailureException("The customer was updated by another request", e);
+	}
+	
+	/**
+	 * Hibernate raises a StaleStateException when the version check fails, converted to an 
+	 * OptimisticLockException and wrapped in a RollbackException when it happens on commit.
+	 */
+	private static boolean isStale(Throwable e) {
+		for (Throwable cause = e; cause != null && cause.getCause() != cause; cause = cause.getCause()) {
+			if (cause instanceof OptimisticLockException || cause instanceof StaleStateException) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Translates a violation of the unique constraint on the email, raised when Hibernate writes 
+	 * a customer whose email another customer already has.
+	 */
+	private static RuntimeException translateException(RuntimeException e) {
+		if (UniqueEmailConstraint.isViolatedBy(e)) {
+			LOG.warn("Email already taken by another Customer", e);
+			return new DuplicateKeyException("The email is already taken", e);
+		}
+		return e;
+	}
 }
@@ -1,16 +1,33 @@
 package com.rest.dao.impl.mybatis;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 
 import com.rest.dao.CustomerDAO;
+import com.rest.dao.UniqueEmailConstraint;
 import com.rest.dao.cache.CacheWrapper;
+import com.rest.dao.cache.IntCacheWrapper;
+import com.rest.dao.cache.SingleFlightLoader;
 import com.rest.domain.Customer;
 
 /**
@@ -26,13 +43,29 @@ public class CustomerDAOImpl implements CustomerDAO {
 	
 	private static final Logger LOG = LogManager.getLogger(CustomerDAOImpl.class);
 	
+	// The number of inserts sent to the database per round trip when creating customers in bulk.
+	private static final int BATCH_SIZE = 500;
+	
 	private static final String DAO_NAMESPACE = "Customer.";
 	
 	@Autowired
 	private SqlSessionFactory sqlSessionFactory;
 	
+	private IntCacheWrapper<Customer> customerCache;
+	
+	// Maps an email to the id of the customer that has it.
+	@Autowired
+	private CacheWrapper<String, Integer> customerEmailCache;
+	
+	// Coalesces the concurrent loads of a customer missing from the cache, when there is one.
+	@Autowired(required = false)
+	private SingleFlightLoader<Integer, Customer> customerLoads;
+	
 	@Autowired
-	private CacheWrapper<Integer, Customer> customerCache;
+	public void setCustomerCache(CacheWrapper<Integer, Customer> customerCache) {
+		// The int ids are only boxed when the cache isn't keyed by an int.
+		this.customerCache = IntCacheWrapper.of(customerCache);
+	}
 	
 	private SqlSession getSqlSession()
 	{
@@ -54,30 +87,118 @@ public class CustomerDAOImpl implements CustomerDAO {
 			if (count > 0) {
 				LOG.info("Successfully created Customer: {}", customer);
 			}
+		} catch (PersistenceException e) {
+			// Another customer already has the email, the unique constraint on the email caught it.
+			if (UniqueEmailConstraint.isViolatedBy(e)) {
+				LOG.warn("Email already taken by another Customer: {}", customer);
+				throw new DuplicateKeyException("The email is already taken", e);
+			}
+			throw e;
 		}
 		
-		// Set the customer in the cache.
+		// The row starts out at the default version of the column.
+		customer.setVersion(0);
+		
+		// Set the customer and its email in the cache.
 		customerCache.put(customer.getId(), customer);
+		customerEmailCache.put(customer.getEmail(), customer.getId());
 		LOG.info("Set customer {} in the cache.", customer.getId());
 		
 		return customer;
 	}
 
+	@Override
+	public List<Customer> createCustomers(List<Customer> customers) {
+		
+		// The BATCH executor queues the inserts as JDBC batches, the generated keys are set on 
+		// the customers when the statements are flushed.
+		try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+			for (int i = 0; i < customers.size(); i++) {
+				sqlSession.insert(getNamespace() + "add", customers.get(i));
+				
+				if ((i + 1) % BATCH_SIZE == 0) {
+					sqlSession.flushStatements();
+				}
+			}
+			// Commit flushes the remaining statements. Closing the session without committing rolls back.
+			sqlSession.commit();
+			
+			LOG.info("Successfully created {} Customers", customers.size());
+		} catch (PersistenceException e) {
+			// Another customer already has the email, the unique constraint on the email caught it.
+			if (UniqueEmailConstraint.isViolatedBy(e)) {
+				LOG.warn("Email already taken by another Customer when creating {} Customers", customers.size());
+				throw new DuplicateKeyException("The email is already taken", e);
+			}
+			throw e;
+		}
+		
+		// Set the customers and their emails in the cache.
+		for (Customer customer : customers) {
+			customer.setVersion(0);
+			customerCache.put(customer.getId(), customer);
+			customerEmailCache.put(customer.getEmail(), customer.getId());
+		}
+		LOG.info("Set {} customers in the cache.", customers.size());
+		
+		return customers;
+	}
+
 	@Override
 	public void updateCustomer(int id, Customer customer) {
 		
+		customer.setId(id);
+		
 		try (SqlSession sqlSession = getSqlSession()) {
 			int count = sqlSession.update(getNamespace() + "update", customer);
 			sqlSession.commit();
 			
-			if (count > 0) {
-				LOG.info("Successfully updated Customer: {}", customer);
+			if (count == 0) {
+				// The cached customer is stale either way.
+				customerCache.remove(id);
+				forgetLoad(id);
+				throw updateFailed(sqlSession, id);
 			}
+			
+			LOG.info("Successfully updated Customer: {}", customer);
+		} catch (PersistenceException e) {
+			// Another customer already has the email, the unique constraint on the email caught it.
+			if (UniqueEmailConstraint.isViolatedBy(e)) {
+				LOG.warn("Email already taken by another Customer: {}", customer);
+				throw new DuplicateKeyException("The email is already taken", e);
+			}
+			throw e;
 		}
 		
-		LOG.info("Updating customer {} in the cache.", customer.getId());
-		// Update the customer in the cache.
-		customerCache.put(customer.getId(), customer);
+		LOG.info("Updating customer {} in the cache.", id);
+		// The previous email no longer maps to the customer if it was changed.
+		Customer previous = customerCache.get(id);
+		if (previous != null && !previous.getEmail().equals(customer.getEmail())) {
+			customerEmailCache.remove(previous.getEmail());
+		}
+		// Update the customer and its email in the cache. Without a version the version the 
+		// customer was updated to is unknown, so it is read from the database when next needed.
+		if (customer.getVersion() != null) {
+			customer.setVersion(customer.getVersion() + 1);
+			customerCache.put(id, customer);
+		} else {
+			customerCache.remove(id);
+		}
+		customerEmailCache.put(customer.getEmail(), id);
+		forgetLoad(id);
+	}
+	
+	/**
+	 * A missing customer and a customer updated since its version was read both update no rows. 
+	 * The row is looked up to tell the two apart, this only costs a query when the update has already failed.
+	 */
+	private RuntimeException updateFailed(SqlSession sqlSession, int id) {
+		if (sqlSession.selectOne(getNamespace() + "get", id) == null) {
+			LOG.warn("Customer {} not found", id);
+			return new EmptyResultDataAccessException("Customer not found", 1);
+		}
+		LOG.warn("Customer {} was updated by another request", id);
+		return new OptimisticLockingFailureException("The customer was updated by another request");
 	}
 
 	@Override
@@ -93,33 +214,78 @@ public class CustomerDAOImpl implements CustomerDAO {
 		}
 		
 		LOG.info("Deleting customer {} from the cache.", id);
-		// Delete the customer from the cache.
+		// Delete the customer and its email from the cache. If the customer is not in the cache a 
+		// stale email mapping is ignored by findByEmail as it can't find the customer it maps to.
+		Customer previous = customerCache.get(id);
+		if (previous != null) {
+			customerEmailCache.remove(previous.getEmail());
+		}
 		customerCache.remove(id);
+		forgetLoad(id);
 	}
 
 	@Override
 	public Customer getCustomer(int id) {
 		
-		// Check the cache.
-		Customer customer = customerCache.get(id);
-		if (customer != null) {
-			LOG.info("Found customer {} in cache.",  id);
-			return customer;
+		// Check the cache, the customer is loaded from the database and set in the cache if it is not found.
+		// The cache may also reload the customer in the background when it is about to expire. Only the 
+		// misses and reloads are coalesced, so the concurrent misses of a customer run a single query.
+		return customerCache.get(id, this::loadCustomerOnce);
+	}
+	
+	private Customer loadCustomerOnce(int id) {
+		return customerLoads != null ? customerLoads.load(id, this::loadCustomer) : loadCustomer(id);
+	}
+	
+	/**
+	 * Forgets a load of the customer in flight, so that the misses after a write don't get what it read before.
+	 */
+	private void forgetLoad(int id) {
+		if (customerLoads != null) {
+			customerLoads.forget(id);
+		}
+	}
+	
+	private Customer loadCustomer(int id) {
+		LOG.info("Loading customer {} into the cache.", id);
+		
+		try (SqlSession sqlSession = getSqlSession()) {
+			return sqlSession.selectOne(getNamespace() + "get", id);
 		}
-		LOG.info("Did not find customer {} in cache.", id);
+	}
+
+	@Override
+	public Customer findByEmail(String email) {
+		
+		email = email.toLowerCase();
+		
+		// Check the cache. The email is only mapped to an id, the customer itself has to be in the customer 
+		// cache and still have the email. Otherwise the mapping is stale and the database is checked.
+		Integer id = customerEmailCache.get(email);
+		if (id != null) {
+			Customer customer = customerCache.get(id);
+			if (customer != null && customer.getEmail().equals(email)) {
+				LOG.info("Found customer {} with email {} in cache.", id, email);
+				return customer;
+			}
+			customerEmailCache.remove(email);
+		}
+		LOG.info("Did not find a customer with email {} in cache.", email);
+		
+		Customer customer = null;
 		
 		try (SqlSession sqlSession = getSqlSession()) {
-			customer = sqlSession.selectOne(getNamespace() + "get", id);
+			customer = sqlSession.selectOne(getNamespace() + "findByEmail", email);
 		}
 		
-		// Set the customer in the cache if found.
+		// Set the customer and its email in the cache if found.
 		if (customer != null) {
-			// Set the customer in the cache.
 			customerCache.put(customer.getId(), customer);
+			customerEmailCache.put(customer.getEmail(), customer.getId());
 			LOG.info("Set customer {} in the cache.", customer.getId());
 		}
 		
-		return customer;	
+		return customer;
 	}
 
 	@Override
@@ -131,6 +297,61 @@ public class CustomerDAOImpl implements CustomerDAO {
 			customers = sqlSession.selectList(getNamespace() + "getAll");
 		}
 		
+		cacheCustomers(customers);
+		
+		return customers;
+	}
+
+	@Override
+	public List<Customer> getCustomers(int afterId, int limit) {
+		
+		List<Customer> customers = new ArrayList<>();
+		
+		Map<String, Object> params = new HashMap<>();
+		params.put("afterId", afterId);
+		params.put("limit", limit);
+		
+		try (SqlSession sqlSession = getSqlSession()) {
+			customers = sqlSession.selectList(getNamespace() + "getPage", params);
+		}
+		
+		cacheCustomers(customers);
+		
+		return customers;
+	}
+	
+	@Override
+	public List<Customer> getCustomers(Collection<Integer> ids) {
+		
+		// Check the cache for all the customers in one call.
+		Map<Integer, Customer> customers = new HashMap<>(customerCache.getAll(new HashSet<>(ids)));
+		LOG.info("Found {} of {} customers in cache.", customers.size(), ids.size());
+		
+		List<Integer> missingIds = ids.stream().distinct().filter(id -> !customers.containsKey(id)).collect(Collectors.toList());
+		
+		if (!missingIds.isEmpty()) {
+			Map<Integer, Customer> missingCustomers = new HashMap<>();
+			
+			// Retrieve all the customers that were not cached in one query on the primary key.
+			try (SqlSession sqlSession = getSqlSession()) {
+				List<Customer> found = sqlSession.selectList(getNamespace() + "getByIds", missingIds);
+				for (Customer customer : found) {
+					missingCustomers.put(customer.getId(), customer);
+				}
+			}
+			
+			// Set the customers in the cache in one call.
+			customerCache.putAll(missingCustomers);
+			LOG.info("Set {} customers in the cache.", missingCustomers.size());
+			
+			customers.putAll(missingCustomers);
+		}
+		
+		// Return the customers in the order of the ids.
+		return ids.stream().map(customers::get).filter(Objects::nonNull).collect(Collectors.toList());
+	}
+	
+	private void cacheCustomers(List<Customer> customers) {
 		for (Customer customer : customers) {
 			// Check if the customer is in the cache.
 			if (customerCache.putIfAbsent(customer.getId(), customer)) {
@@ -138,7 +359,18 @@ public class CustomerDAOImpl implements CustomerDAO {
 				LOG.info("Set customer {} in the cache.", customer.getId());
 			}
 		}
+	}
+
+	@Override
+	public void streamCustomers(Consumer<Customer> consumer) {
 		
-		return customers;
+		// A Cursor lazily fetches the rows as they are iterated over, the fetch size is set on the mapped statement.
+		try (SqlSession sqlSession = getSqlSession();
+				Cursor<Customer> cursor = sqlSession.selectCursor(getNamespace() + "streamAll")) {
+			cursor.forEach(consumer);
+		} catch (IOException e) {
+			LOG.error("Error streaming all the Customers", e);
+			throw new RuntimeException(e);
+		}
 	}
 }
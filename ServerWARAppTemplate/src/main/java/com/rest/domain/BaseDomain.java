@@ -5,6 +5,7 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.MappedSuperclass;
+import javax.persistence.Version;
 import javax.validation.constraints.PositiveOrZero;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -31,6 +32,13 @@ public class BaseDomain {
 	@Column(name = "id")
 	private int id;
 	
+	@XmlElement(name = "version") 	// XML/JSON parsing
+	// Optimistic locking, incremented by every update. An update carrying a version only succeeds
+	// if the row still has that version, it is optional so that an update without it always wins.
+	@Version
+	@Column(name = "version")
+	private Integer version;
+	
 	public int getId() {
 		return id;
 	}
@@ -38,4 +46,12 @@ public class BaseDomain {
 	public void setId(int id) {
 		this.id = id;
 	}
+
+	public Integer getVersion() {
+		return version;
+	}
+
+	public void setVersion(Integer version) {
+		this.version = version;
+	}
 }
@@ -29,7 +29,7 @@ import org.hibernate.annotations.CacheConcurrencyStrategy;
 // of the XmlElements so we can return them instead of the object field names.
 @XmlAccessorType(XmlAccessType.FIELD)
 // @XmlType: define the order in which the fields are written in the XML/JSON response.
-@XmlType(propOrder = { "id", "firstName", "lastName", "email" })
+@XmlType(propOrder = { "id", "firstName", "lastName", "email", "version" })
 // Persistence
 @Entity
 @Table(name="customers")
@@ -111,6 +111,7 @@ public class Customer extends BaseDomain {
 				.append(", first name: ").append(firstName)
 				.append(", last name: ").append(lastName)
 				.append(", email: ").append(email)
+				.append(", version: ").append(getVersion())
 				.toString();
 	}
 }
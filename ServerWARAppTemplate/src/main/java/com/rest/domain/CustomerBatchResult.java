@@ -0,0 +1,102 @@
+package com.rest.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The outcome of creating a single customer of a batch.
+ * 
+ * <result>
+ * 		<index>0</index> // The position of the customer in the batch that was sent.
+ * 		<id>3</id> // The generated id, only populated when the customer was created.
+ * 		<status>CREATED</status>
+ * </result>
+ * <result>
+ * 		<index>1</index>
+ * 		<status>FAILED</status>
+ * 		<error>email:The email is already taken</error>
+ * </result>
+ */
+@XmlRootElement(name = "result")
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlType(propOrder = { "index", "id", "status", "errors" })
+public class CustomerBatchResult {
+
+	public enum Status {
+		CREATED, FAILED;
+	}
+
+	@XmlElement(name = "index")
+	private int index;
+
+	@XmlElement(name = "id")
+	private Integer id;
+
+	@XmlElement(name = "status")
+	private Status status;
+
+	@XmlElement(name = "error")
+	@JsonProperty("errors")
+	private List<String> errors = new ArrayList<String>();
+
+	// Required for JAXB marshalling and unmarshalling.
+	@SuppressWarnings("unused")
+	private CustomerBatchResult() {}
+
+	private CustomerBatchResult(int index, Integer id, Status status, List<String> errors) {
+		this.index = index;
+		this.id = id;
+		this.status = status;
+		this.errors = errors;
+	}
+
+	/**
+	 * @param index the position of the customer in the batch.
+	 * @param id the generated id of the customer.
+	 */
+	public static CustomerBatchResult created(int index, int id) {
+		return new CustomerBatchResult(index, id, Status.CREATED, new ArrayList<String>());
+	}
+
+	/**
+	 * @param index the position of the customer in the batch.
+	 * @param errors the reasons the customer was not created.
+	 */
+	public static CustomerBatchResult failed(int index, List<String> errors) {
+		return new CustomerBatchResult(index, null, Status.FAILED, errors);
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public Integer getId() {
+		return id;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public List<String> getErrors() {
+		return errors;
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder()
+				.append("index: ").append(index)
+				.append(", id: ").append(id)
+				.append(", status: ").append(status)
+				.append(", errors: ").append(errors)
+				.toString();
+	}
+}
@@ -0,0 +1,66 @@
+package com.rest.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Wrapper class that wraps the outcome of every customer of a batch, in the order they were sent.
+ * 
+ * <results> // <results> is defined by the @XmlRootElement.
+ * 		<created>1</created>
+ * 		<failed>1</failed>
+ * 		<result>...</result> // <result> is defined by the @XmlElement.
+ * 		<result>...</result>
+ * </results>
+ * 
+ * {"created":1,"failed":1,"results":[{...,...,...},{...,...,...}]} // "results" is defined by the @JsonProperty
+ */
+@XmlRootElement(name = "results")
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlType(propOrder = { "created", "failed", "results" })
+public class CustomerBatchResults {
+
+	@XmlElement(name = "created")
+	private int created;
+
+	@XmlElement(name = "failed")
+	private int failed;
+
+	@XmlElement(name = "result")
+	@JsonProperty("results")
+	private List<CustomerBatchResult> results = new ArrayList<CustomerBatchResult>();
+
+	public int getCreated() {
+		return created;
+	}
+
+	public int getFailed() {
+		return failed;
+	}
+
+	public List<CustomerBatchResult> getResults() {
+		return results;
+	}
+
+	public void add(CustomerBatchResult result) {
+		if (result.getStatus() == CustomerBatchResult.Status.CREATED) {
+			created++;
+		} else {
+			failed++;
+		}
+		this.results.add(result);
+	}
+
+	@Override
+	public String toString() {
+		return results.toString();
+	}
+}
@@ -27,6 +27,12 @@ public class Customers {
 	@XmlElement(name = "customer")
 	@JsonProperty("customers") 
 	private List<Customer> customers = new ArrayList<Customer>();
+	
+	// Opaque cursor the client passes back as the "after" query parameter to retrieve the next page.
+	// Null when there are no more pages.
+	@XmlElement(name = "next_cursor")
+	@JsonProperty("next_cursor")
+	private String nextCursor;
 
 	public List<Customer> getCustomers() {
 		return customers;
@@ -36,6 +42,14 @@ public class Customers {
 		this.customers = customers;
 	}
 
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	public void setNextCursor(String nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+
 	public void add(Customer customers) {
 		this.customers.add(customers);
 	}
@@ -0,0 +1,43 @@
+package com.rest.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Wrapper class that wraps the latencies of the endpoints.
+ * 
+ * <endpoint_latencies> // <endpoint_latencies> is defined by the @XmlRootElement.
+ * 		<endpoint_latency>...</endpoint_latency> // <endpoint_latency> is defined by the @XmlElement.
+ * 		<endpoint_latency>...</endpoint_latency>
+ * </endpoint_latencies>
+ * 
+ * {"endpoint_latencies":[{...,...,...},{...,...,...}]} // "endpoint_latencies" is defined by the @JsonProperty
+ */
+@XmlRootElement(name = "endpoint_latencies")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class EndpointLatencies {
+
+	@XmlElement(name = "endpoint_latency")
+	@JsonProperty("endpoint_latencies")
+	private List<EndpointLatency> endpointLatencies = new ArrayList<EndpointLatency>();
+
+	public List<EndpointLatency> getEndpointLatencies() {
+		return endpointLatencies;
+	}
+
+	public void add(EndpointLatency endpointLatency) {
+		this.endpointLatencies.add(endpointLatency);
+	}
+
+	@Override
+	public String toString() {
+		return endpointLatencies.toString();
+	}
+}
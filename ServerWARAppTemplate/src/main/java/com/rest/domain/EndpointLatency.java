@@ -0,0 +1,141 @@
+package com.rest.domain;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+
+/**
+ * The latencies of the requests to an endpoint with a class of status over a window of the last minutes.
+ * 
+ * <endpoint_latency>
+ * 		<method>GET</method>
+ * 		<path>/customers/{id}</path> // The resource path with the ids replaced.
+ * 		<status>2xx</status>
+ * 		<window>5</window> // The minutes of the window.
+ * 		<count>3000</count>
+ * 		<throughput>10.0</throughput> // The requests per second.
+ * 		<p50>2</p50> // The latency percentiles and the max in milliseconds.
+ * 		<p90>5</p90>
+ * 		<p99>12</p99>
+ * 		<p999>40</p999>
+ * 		<max>41</max>
+ * </endpoint_latency>
+ */
+@XmlRootElement(name = "endpoint_latency")
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlType(propOrder = { "method", "path", "status", "window", "count", "throughput", "p50", "p90", "p99", "p999", "max" })
+public class EndpointLatency {
+
+	@XmlElement(name = "method")
+	private String method;
+
+	@XmlElement(name = "path")
+	private String path;
+
+	@XmlElement(name = "status")
+	private String status;
+
+	@XmlElement(name = "window")
+	private int window;
+
+	@XmlElement(name = "count")
+	private long count;
+
+	@XmlElement(name = "throughput")
+	private double throughput;
+
+	@XmlElement(name = "p50")
+	private long p50;
+
+	@XmlElement(name = "p90")
+	private long p90;
+
+	@XmlElement(name = "p99")
+	private long p99;
+
+	@XmlElement(name = "p999")
+	private long p999;
+
+	@XmlElement(name = "max")
+	private long max;
+
+	// Required for JAXB marshalling and unmarshalling.
+	@SuppressWarnings("unused")
+	private EndpointLatency() {}
+
+	public EndpointLatency(String method, String path, String status, int window, long count, double throughput,
+			long p50, long p90, long p99, long p999, long max) {
+		this.method = method;
+		this.path = path;
+		this.status = status;
+		this.window = window;
+		this.count = count;
+		this.throughput = throughput;
+		this.p50 = p50;
+		this.p90 = p90;
+		this.p99 = p99;
+		this.p999 = p999;
+		this.max = max;
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public int getWindow() {
+		return window;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getThroughput() {
+		return throughput;
+	}
+
+	public long getP50() {
+		return p50;
+	}
+
+	public long getP90() {
+		return p90;
+	}
+
+	public long getP99() {
+		return p99;
+	}
+
+	public long getP999() {
+		return p999;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder()
+				.append(method).append(" ").append(path).append(" ").append(status)
+				.append(", window: ").append(window).append("m")
+				.append(", count: ").append(count)
+				.append(", throughput: ").append(String.format("%.2f", throughput)).append("/s")
+				.append(", p50: ").append(p50)
+				.append(", p90: ").append(p90)
+				.append(", p99: ").append(p99)
+				.append(", p999: ").append(p999)
+				.append(", max: ").append(max)
+				.toString();
+	}
+}
@@ -0,0 +1,62 @@
+package com.rest.domain;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+
+/**
+ * A customer id among the most read along with its estimated reads.
+ * 
+ * <hot_customer>
+ * 		<id>3</id>
+ * 		<estimate>120</estimate> // The sampled reads since the counters were last halved.
+ * 		<pinned>true</pinned> // Whether the customer is in the pinned cache.
+ * </hot_customer>
+ */
+@XmlRootElement(name = "hot_customer")
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlType(propOrder = { "id", "estimate", "pinned" })
+public class HotCustomer {
+
+	@XmlElement(name = "id")
+	private int id;
+
+	@XmlElement(name = "estimate")
+	private int estimate;
+
+	@XmlElement(name = "pinned")
+	private boolean pinned;
+
+	// Required for JAXB marshalling and unmarshalling.
+	@SuppressWarnings("unused")
+	private HotCustomer() {}
+
+	public HotCustomer(int id, int estimate, boolean pinned) {
+		this.id = id;
+		this.estimate = estimate;
+		this.pinned = pinned;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public int getEstimate() {
+		return estimate;
+	}
+
+	public boolean isPinned() {
+		return pinned;
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder()
+				.append("id: ").append(id)
+				.append(", estimate: ").append(estimate)
+				.append(", pinned: ").append(pinned)
+				.toString();
+	}
+}
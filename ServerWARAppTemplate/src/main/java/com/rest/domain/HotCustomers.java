@@ -0,0 +1,43 @@
+package com.rest.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Wrapper class that wraps the most read customer ids, the hottest first.
+ * 
+ * <hot_customers> // <hot_customers> is defined by the @XmlRootElement.
+ * 		<hot_customer>...</hot_customer> // <hot_customer> is defined by the @XmlElement.
+ * 		<hot_customer>...</hot_customer>
+ * </hot_customers>
+ * 
+ * {"hot_customers":[{...,...,...},{...,...,...}]} // "hot_customers" is defined by the @JsonProperty
+ */
+@XmlRootElement(name = "hot_customers")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class HotCustomers {
+
+	@XmlElement(name = "hot_customer")
+	@JsonProperty("hot_customers")
+	private List<HotCustomer> hotCustomers = new ArrayList<HotCustomer>();
+
+	public List<HotCustomer> getHotCustomers() {
+		return hotCustomers;
+	}
+
+	public void add(HotCustomer hotCustomer) {
+		this.hotCustomers.add(hotCustomer);
+	}
+
+	@Override
+	public String toString() {
+		return hotCustomers.toString();
+	}
+}
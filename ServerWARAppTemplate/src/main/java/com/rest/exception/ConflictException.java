@@ -0,0 +1,26 @@
+package com.rest.exception;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+public class ConflictException extends WebApplicationException {
+
+	private static final long serialVersionUID = 4176323856127540261L;
+
+	/**
+	 * Create a HTTP 409 (Conflict) Exception.
+	 * @param message the String that is the entity of the 409 response.
+	 * @param mediaType the requested media type by the client to format the exception in. 
+	 * Defaults to Json if <code>null</code> or if an unknown media type was passed in.
+	 * The supported media types are: <code>application/xml</code> and <code>application/json</code>
+	 */
+	public ConflictException(ErrorMessage message, String mediaType) {
+		super(Response.status(Response.Status.CONFLICT)
+				.entity(message)
+				.type(mediaType != null ? 
+						(mediaType.contains(MediaType.APPLICATION_XML) ? MediaType.APPLICATION_XML : MediaType.APPLICATION_JSON) 
+						: MediaType.APPLICATION_JSON)
+				.build());
+	}
+}
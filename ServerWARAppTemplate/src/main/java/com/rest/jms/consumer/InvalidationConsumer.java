@@ -0,0 +1,110 @@
+package com.rest.jms.consumer;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import javax.persistence.EntityManagerFactory;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.rest.dao.cache.CacheWrapper;
+import com.rest.dao.cache.CustomerInvalidation;
+import com.rest.domain.Customer;
+import com.rest.jms.producer.InvalidationProducer;
+
+/**
+ * Removes the customers written on the other nodes from the caches of this node, see InvalidationProducer.
+ *
+ * An update only removes the cached customer when it is older than the version that was written, a customer
+ * this node already reloaded stays cached. Pinned customers are always removed. The customer is also evicted
+ * from the second level caches of the JPA and Hibernate DAOs, along with their cached queries. Hibernate only
+ * invalidates the cached queries on the writes of this node, so the emails of findByEmail would otherwise still
+ * map to the customers that had them.
+ */
+public class InvalidationConsumer implements MessageListener {
+
+	private static final Logger LOG = LogManager.getLogger(InvalidationConsumer.class);
+
+	private final CacheWrapper<Integer, Customer> customerCache;
+	private final CacheWrapper<Integer, Customer> customerPinnedCache;
+	private final CacheWrapper<Integer, Boolean> customerMissingCache;
+
+	// The JPA EntityManagerFactory and the Hibernate SessionFactory, if they are defined.
+	@Autowired(required = false)
+	private List<EntityManagerFactory> entityManagerFactories = Collections.emptyList();
+
+	/**
+	 * @param customerCache the cache of the customers.
+	 * @param customerPinnedCache the cache of the hottest customers, see HotKeyCustomerDAO.
+	 * @param customerMissingCache the cache of the ids without a customer.
+	 */
+	public InvalidationConsumer(CacheWrapper<Integer, Customer> customerCache, CacheWrapper<Integer, Customer> customerPinnedCache,
+			CacheWrapper<Integer, Boolean> customerMissingCache) {
+		this.customerCache = customerCache;
+		this.customerPinnedCache = customerPinnedCache;
+		this.customerMissingCache = customerMissingCache;
+	}
+
+	@Override
+	public void onMessage(Message message) {
+		List<CustomerInvalidation> invalidations;
+		try {
+			if (InvalidationProducer.NODE.equals(message.getStringProperty(InvalidationProducer.NODE_PROPERTY))) {
+				// This node already wrote its caches.
+				return;
+			}
+			BytesMessage bytesMessage = (BytesMessage) message;
+			byte[] bytes = new byte[(int) bytesMessage.getBodyLength()];
+			bytesMessage.readBytes(bytes);
+			invalidations = CustomerInvalidation.decode(bytes);
+		} catch (JMSException e) {
+			throw new RuntimeException(e);
+		}
+
+		LOG.debug("Received {} invalidations.", invalidations.size());
+		apply(invalidations);
+	}
+
+	public void apply(List<CustomerInvalidation> invalidations) {
+		for (CustomerInvalidation invalidation : invalidations) {
+			int id = invalidation.getId();
+			switch (invalidation.getOperation()) {
+			case CREATE:
+				customerMissingCache.remove(id);
+				break;
+			case UPDATE:
+				// Only a peek, reading the customer must not copy it between the tiers of the cache.
+				Customer cached = customerCache.peek(id);
+				if (cached != null && (invalidation.getVersion() == CustomerInvalidation.NO_VERSION
+						|| cached.getVersion() == null || cached.getVersion() < invalidation.getVersion())) {
+					customerCache.remove(id);
+				}
+				// The next refresh of the pinned customers reloads it.
+				customerPinnedCache.remove(id);
+				break;
+			case DELETE:
+				customerCache.remove(id);
+				customerPinnedCache.remove(id);
+				break;
+			}
+
+			for (EntityManagerFactory entityManagerFactory : entityManagerFactories) {
+				entityManagerFactory.getCache().evict(Customer.class, id);
+			}
+		}
+
+		if (!invalidations.isEmpty()) {
+			// The cached queries, findByEmail among them, may have returned the customers written.
+			for (EntityManagerFactory entityManagerFactory : entityManagerFactories) {
+				entityManagerFactory.unwrap(SessionFactory.class).getCache().evictDefaultQueryRegion();
+			}
+		}
+	}
+}
@@ -1,5 +1,10 @@
 package com.rest.jms.consumer;
 
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+import javax.jms.BytesMessage;
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.MessageListener;
@@ -7,29 +12,63 @@ import javax.jms.ObjectMessage;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
 
 import com.rest.aspect.Event;
+import com.rest.aspect.EventCodec;
 
 /**
  * A JMS consumer that simply logs the message. Here we can take the event and 
  * save it to a time series database like InfluxDB. Using a tool like Graphana
  * it can read and graph the event data from InfluxDB and see the activity of 
  * the request events in our application.
+ * 
+ * The events come in the encoding of EventCodec, a message is an envelope of one or more events. 
+ * The body is read into a buffer that each listener thread reuses and the events are decoded in 
+ * place from it. ObjectMessages are still accepted from nodes that haven't been upgraded yet.
+ * 
+ * Every event is also recorded by the LatencyAggregator, which keeps the latency percentiles of 
+ * each endpoint over the last minutes.
  */
 public class JmsConsumer implements MessageListener {
 
 	private static final Logger LOG = LogManager.getLogger(JmsConsumer.class);
 	
+	@Autowired
+	private LatencyAggregator latencyAggregator;
+	
+	private static final ThreadLocal<ByteBuffer> BODY = ThreadLocal.withInitial(() -> ByteBuffer.allocate(256));
+	
 	@Override
 	public void onMessage(Message message) {
-		Event event = null;
+		List<Event> events = null;
 		try {
-			ObjectMessage objectMessage = ((ObjectMessage) message);
-			event = (Event) objectMessage.getObject();
+			if (message instanceof BytesMessage) {
+				events = EventCodec.decodeAll(readBody((BytesMessage) message));
+			} else {
+				ObjectMessage objectMessage = ((ObjectMessage) message);
+				events = Collections.singletonList((Event) objectMessage.getObject());
+			}
 		} catch (JMSException e) {
 			throw new RuntimeException(e);
 		}
 		
-		LOG.info("Jms message received: {}", event.toString());
+		for (Event event : events) {
+			latencyAggregator.record(event);
+			LOG.info("Jms message received: {}", event.toString());
+		}
+	}
+	
+	static ByteBuffer readBody(BytesMessage message) throws JMSException {
+		int length = (int) message.getBodyLength();
+		ByteBuffer body = BODY.get();
+		if (body.capacity() < length) {
+			body = ByteBuffer.allocate(Integer.highestOneBit(length) << 1);
+			BODY.set(body);
+		}
+		message.readBytes(body.array(), length);
+		body.clear();
+		body.limit(length);
+		return body;
 	}
 }
@@ -0,0 +1,165 @@
+package com.rest.jms.consumer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import com.rest.aspect.Event;
+import com.rest.domain.EndpointLatency;
+
+/**
+ * Turns the events JmsConsumer receives into live latency percentiles and throughput per endpoint.
+ *
+ * An endpoint is the method, the resource path with its numeric segments replaced by {id} and the class of
+ * the status, e.g. GET /customers/{id} 2xx. Each has a LatencyHistogram of the durations of its requests
+ * over the last 15 minutes, read as windows of the last 1, 5 and 15 minutes by GET /rest/admin/latencies
+ * and this MBean.
+ *
+ * Once there are maxEndpoints endpoints the paths of the new ones are counted as OTHER_PATH, so that requests
+ * to made up paths can't grow the histograms without bound.
+ */
+@ManagedResource(objectName = "com.rest:type=Events,name=Latencies", description = "Latencies of the requests per endpoint")
+public class LatencyAggregator {
+
+	public static final int[] WINDOWS = { 1, 5, 15 };
+
+	static final String OTHER_PATH = "{other}";
+
+	private static final Pattern ID_SEGMENT = Pattern.compile("/\\d+(?=/|$)");
+
+	private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+	private final int maxEndpoints;
+	private final LongSupplier clock;
+	private final long startMillis;
+
+	private final Map<Endpoint, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+	/**
+	 * @param maxEndpoints the largest number of endpoints with a path of their own.
+	 */
+	public LatencyAggregator(int maxEndpoints) {
+		this(maxEndpoints, System::currentTimeMillis);
+	}
+
+	LatencyAggregator(int maxEndpoints, LongSupplier clock) {
+		this.maxEndpoints = maxEndpoints;
+		this.clock = clock;
+		this.startMillis = clock.getAsLong();
+	}
+
+	public void record(Event event) {
+		Endpoint endpoint = new Endpoint(event.getMethod(), normalize(event.getResourcePath()), event.getStatus() / 100 + "xx");
+		LatencyHistogram histogram = histograms.get(endpoint);
+		if (histogram == null) {
+			if (histograms.size() >= maxEndpoints) {
+				endpoint = new Endpoint(endpoint.method, OTHER_PATH, endpoint.status);
+			}
+			histogram = histograms.computeIfAbsent(endpoint, key -> new LatencyHistogram());
+		}
+		histogram.record(event.getDuration(), clock.getAsLong() / MINUTE_MILLIS);
+	}
+
+	static String normalize(String path) {
+		return path == null ? "/" : ID_SEGMENT.matcher(path).replaceAll("/{id}");
+	}
+
+	/**
+	 * @param minutes the window, one of WINDOWS.
+	 * @return the latencies of the endpoints with requests in the window, the busiest first.
+	 */
+	public List<EndpointLatency> getLatencies(int minutes) {
+		long now = clock.getAsLong();
+		long minute = now / MINUTE_MILLIS;
+		// The minutes before the current one and the part of it gone by, the time since the start at most.
+		long windowMillis = Math.min((minutes - 1) * MINUTE_MILLIS + now % MINUTE_MILLIS, now - startMillis);
+		double seconds = Math.max(windowMillis, 1000) / 1000.0;
+
+		List<EndpointLatency> latencies = new ArrayList<>();
+		histograms.forEach((endpoint, histogram) -> {
+			LatencyHistogram.Snapshot snapshot = histogram.snapshot(minutes, minute);
+			if (snapshot.getCount() > 0) {
+				latencies.add(new EndpointLatency(endpoint.method, endpoint.path, endpoint.status, minutes, snapshot.getCount(),
+						snapshot.getCount() / seconds, snapshot.valueAt(50), snapshot.valueAt(90), snapshot.valueAt(99),
+						snapshot.valueAt(99.9), snapshot.getMax()));
+			}
+		});
+		latencies.sort(Comparator.comparingLong(EndpointLatency::getCount).reversed());
+		return latencies;
+	}
+
+	private String[] describe(int minutes) {
+		return getLatencies(minutes).stream().map(EndpointLatency::toString).toArray(String[]::new);
+	}
+
+	/**
+	 * @return the latencies of the endpoints over the last minute.
+	 */
+	@ManagedAttribute(description = "Latencies in milliseconds and requests per second of the endpoints over the last minute")
+	public String[] getLastMinute() {
+		return describe(1);
+	}
+
+	/**
+	 * @return the latencies of the endpoints over the last 5 minutes.
+	 */
+	@ManagedAttribute(description = "Latencies in milliseconds and requests per second of the endpoints over the last 5 minutes")
+	public String[] getLast5Minutes() {
+		return describe(5);
+	}
+
+	/**
+	 * @return the latencies of the endpoints over the last 15 minutes.
+	 */
+	@ManagedAttribute(description = "Latencies in milliseconds and requests per second of the endpoints over the last 15 minutes")
+	public String[] getLast15Minutes() {
+		return describe(15);
+	}
+
+	/**
+	 * @return the number of endpoints with a histogram.
+	 */
+	@ManagedAttribute(description = "Endpoints with a histogram")
+	public int getEndpoints() {
+		return histograms.size();
+	}
+
+	/**
+	 * A method, normalized path and class of status.
+	 */
+	private static final class Endpoint {
+
+		private final String method;
+		private final String path;
+		private final String status;
+
+		Endpoint(String method, String path, String status) {
+			this.method = method;
+			this.path = path;
+			this.status = status;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Endpoint)) {
+				return false;
+			}
+			Endpoint other = (Endpoint) obj;
+			return Objects.equals(method, other.method) && path.equals(other.path) && status.equals(other.status);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(method, path, status);
+		}
+	}
+}
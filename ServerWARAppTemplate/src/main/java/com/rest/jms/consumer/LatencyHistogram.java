@@ -0,0 +1,142 @@
+package com.rest.jms.consumer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies in milliseconds over the last minutes, recorded to and read without locks.
+ *
+ * The buckets are log-linear like those of HdrHistogram, the values below 16 have a bucket each and every
+ * power of 2 above is split into 16 buckets, so a value is reported within 1/16 of what was recorded. The
+ * values from 2^MAX_EXPONENT ms, over 4 hours, all fall into the last bucket.
+ *
+ * Each of the last MINUTES minutes counts into a slot of its own, the slot of a minute is cleared by the
+ * first record of the minute that reuses it. A record racing that clear may be lost, the windows are exact
+ * but at the minute boundaries.
+ */
+final class LatencyHistogram {
+
+	// The minutes the windows can reach back.
+	static final int MINUTES = 15;
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	static final int MAX_EXPONENT = 24;
+	static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLong[] slotMinutes = new AtomicLong[MINUTES];
+	private final AtomicLongArray[] slotCounts = new AtomicLongArray[MINUTES];
+
+	LatencyHistogram() {
+		for (int i = 0; i < MINUTES; i++) {
+			slotMinutes[i] = new AtomicLong(-1);
+			slotCounts[i] = new AtomicLongArray(BUCKETS);
+		}
+	}
+
+	/**
+	 * @param minute the minute, since the epoch, the latency was recorded in.
+	 */
+	void record(long latency, long minute) {
+		int slot = (int) (minute % MINUTES);
+		long slotMinute = slotMinutes[slot].get();
+		if (slotMinute < minute && slotMinutes[slot].compareAndSet(slotMinute, minute)) {
+			AtomicLongArray counts = slotCounts[slot];
+			for (int i = 0; i < BUCKETS; i++) {
+				counts.set(i, 0);
+			}
+		}
+		slotCounts[slot].incrementAndGet(bucket(latency));
+	}
+
+	/**
+	 * @param minutes the length of the window, the current minute and the minutes - 1 before it.
+	 * @param minute the current minute since the epoch.
+	 */
+	Snapshot snapshot(int minutes, long minute) {
+		long[] counts = new long[BUCKETS];
+		for (int slot = 0; slot < MINUTES; slot++) {
+			long slotMinute = slotMinutes[slot].get();
+			if (slotMinute > minute - minutes && slotMinute <= minute) {
+				for (int i = 0; i < BUCKETS; i++) {
+					counts[i] += slotCounts[slot].get(i);
+				}
+			}
+		}
+		return new Snapshot(counts);
+	}
+
+	static int bucket(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) Math.max(value, 0);
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if (exponent >= MAX_EXPONENT) {
+			return BUCKETS - 1;
+		}
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+	}
+
+	/**
+	 * @return the smallest value counted in the bucket.
+	 */
+	static long lowestValue(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+	}
+
+	/**
+	 * @return the largest value counted in the bucket.
+	 */
+	static long highestValue(int bucket) {
+		return lowestValue(bucket + 1) - 1;
+	}
+
+	/**
+	 * The counts of a window.
+	 */
+	static final class Snapshot {
+
+		private final long[] counts;
+		private final long count;
+
+		private Snapshot(long[] counts) {
+			this.counts = counts;
+			long count = 0;
+			for (long c : counts) {
+				count += c;
+			}
+			this.count = count;
+		}
+
+		long getCount() {
+			return count;
+		}
+
+		/**
+		 * @param percentile between 0 and 100.
+		 * @return the latency that percentile of the latencies are at or below, 0 when none were recorded.
+		 */
+		long valueAt(double percentile) {
+			if (count == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					return highestValue(i);
+				}
+			}
+			return highestValue(BUCKETS - 1);
+		}
+
+		long getMax() {
+			return valueAt(100);
+		}
+	}
+}
@@ -0,0 +1,242 @@
+package com.rest.jms.producer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import com.rest.aspect.Event;
+
+/**
+ * Hands the events of the REST requests to the JmsProducer off the request threads.
+ *
+ * EventAspect publishes the event of every request into a bounded ring buffer, see EventRingBuffer, which
+ * never blocks the request. Drainer threads take the events in batches and send each batch in one JMS
+ * transaction, so a slow or unavailable broker only fills the buffer. With a batchWindowMillis a drainer
+ * that took an event keeps taking events for up to that long to fill its batch, so that the envelopes that
+ * JmsProducer packs the batch into carry many events even at a low rate of requests. When the buffer is full
+ * the overflow policy decides which events are dropped:
+ *
+ * DROP_NEWEST drops the event being published.
+ * DROP_OLDEST drops the oldest event in the buffer to make room for it.
+ * SAMPLE keeps one event in sampleRate once the buffer is half full, and drops the newest when it is full.
+ */
+@ManagedResource(objectName = "com.rest:type=Events,name=Pipeline", description = "Sends the events of the requests in the background")
+public class EventPipeline {
+
+	private static final Logger LOG = LogManager.getLogger(EventPipeline.class);
+
+	public enum OverflowPolicy {
+		DROP_NEWEST, DROP_OLDEST, SAMPLE
+	}
+
+	// How long an idle drainer sleeps before looking again.
+	private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	// How long a drainer filling a batch sleeps before looking again.
+	private static final long POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+	private final JmsProducer jmsProducer;
+	private final EventRingBuffer<Event> buffer;
+	private final OverflowPolicy overflowPolicy;
+	private final int batchSize;
+	private final ExecutorService drainers;
+	private volatile boolean running = true;
+
+	private int sampleRate = 10;
+	private long batchWindowNanos;
+
+	private final LongAdder published = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder sent = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+
+	/**
+	 * @param jmsProducer sends the batches of events.
+	 * @param capacity the number of events buffered, rounded up to a power of 2.
+	 * @param overflowPolicy the events dropped when the buffer is full.
+	 * @param batchSize the largest number of events sent in one transaction.
+	 * @param drainerThreads the number of batches sent at the same time.
+	 */
+	public EventPipeline(JmsProducer jmsProducer, int capacity, OverflowPolicy overflowPolicy, int batchSize, int drainerThreads) {
+		this.jmsProducer = jmsProducer;
+		this.buffer = new EventRingBuffer<>(capacity);
+		this.overflowPolicy = overflowPolicy;
+		this.batchSize = batchSize;
+		this.drainers = Executors.newFixedThreadPool(Math.max(drainerThreads, 1), runnable -> {
+			Thread thread = new Thread(runnable, "event-drainer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		for (int i = 0; i < drainerThreads; i++) {
+			drainers.execute(this::drainLoop);
+		}
+	}
+
+	/**
+	 * @param sampleRate one event in sampleRate is kept by the SAMPLE policy once the buffer is half full, at least 1.
+	 */
+	public void setSampleRate(int sampleRate) {
+		// Checked here rather than failing every publish once the buffer is half full.
+		if (sampleRate < 1) {
+			throw new IllegalArgumentException("The sample rate must be at least 1, was " + sampleRate);
+		}
+		this.sampleRate = sampleRate;
+	}
+
+	/**
+	 * @param batchWindowMillis how long a drainer waits for more events after the first of a batch, 0 sends
+	 *            the events that are buffered right away.
+	 */
+	public void setBatchWindowMillis(long batchWindowMillis) {
+		this.batchWindowNanos = TimeUnit.MILLISECONDS.toNanos(batchWindowMillis);
+	}
+
+	/**
+	 * Buffers the event to be sent, never blocks.
+	 */
+	public void publish(Event event) {
+		published.increment();
+
+		switch (overflowPolicy) {
+		case DROP_OLDEST:
+			while (!buffer.offer(event)) {
+				// Another thread may have taken the oldest already, then there is room on the next offer.
+				if (buffer.poll() != null) {
+					dropped.increment();
+				}
+			}
+			return;
+		case SAMPLE:
+			if (buffer.size() >= buffer.capacity() / 2 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+				dropped.increment();
+				return;
+			}
+			break;
+		case DROP_NEWEST:
+			break;
+		}
+
+		if (!buffer.offer(event)) {
+			dropped.increment();
+		}
+	}
+
+	private void drainLoop() {
+		while (running) {
+			if (drain() == 0) {
+				LockSupport.parkNanos(IDLE_NANOS);
+			}
+		}
+	}
+
+	/**
+	 * Sends one batch of the buffered events.
+	 *
+	 * @return the number of events taken from the buffer.
+	 */
+	int drain() {
+		List<Event> batch = new ArrayList<>(batchSize);
+		Event event;
+		while (batch.size() < batchSize && (event = buffer.poll()) != null) {
+			batch.add(event);
+		}
+		if (batch.isEmpty()) {
+			return 0;
+		}
+
+		long deadline = System.nanoTime() + batchWindowNanos;
+		while (batch.size() < batchSize && running) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				break;
+			}
+			event = buffer.poll();
+			if (event != null) {
+				batch.add(event);
+			} else {
+				LockSupport.parkNanos(Math.min(remaining, POLL_NANOS));
+			}
+		}
+
+		if (jmsProducer.send(batch)) {
+			sent.add(batch.size());
+			batches.increment();
+		} else {
+			failed.add(batch.size());
+		}
+		return batch.size();
+	}
+
+	/**
+	 * @return the number of events buffered.
+	 */
+	@ManagedAttribute(description = "Events buffered")
+	public int getQueueDepth() {
+		return buffer.size();
+	}
+
+	/**
+	 * @return the number of events published by the requests.
+	 */
+	@ManagedAttribute(description = "Events published")
+	public long getPublished() {
+		return published.sum();
+	}
+
+	/**
+	 * @return the number of events dropped by the overflow policy.
+	 */
+	@ManagedAttribute(description = "Events dropped by the overflow policy")
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	/**
+	 * @return the number of events sent to the broker.
+	 */
+	@ManagedAttribute(description = "Events sent")
+	public long getSent() {
+		return sent.sum();
+	}
+
+	/**
+	 * @return the average number of events per batch sent.
+	 */
+	@ManagedAttribute(description = "Events per batch sent")
+	public double getAverageBatchSize() {
+		long count = batches.sum();
+		return count == 0 ? 0 : (double) sent.sum() / count;
+	}
+
+	/**
+	 * @return the number of events lost because the broker failed.
+	 */
+	@ManagedAttribute(description = "Events lost because the broker failed")
+	public long getFailed() {
+		return failed.sum();
+	}
+
+	/**
+	 * Stops the drainers and sends the buffered events.
+	 */
+	public void close() throws InterruptedException {
+		running = false;
+		drainers.shutdown();
+		drainers.awaitTermination(10, TimeUnit.SECONDS);
+		while (drain() > 0) {
+			// The buffer is emptied even when the broker fails.
+		}
+		LOG.info("Event pipeline closed, {} events sent, {} dropped and {} failed.", sent.sum(), dropped.sum(), failed.sum());
+	}
+}
@@ -0,0 +1,99 @@
+package com.rest.jms.producer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded queue of preallocated slots that any number of threads offer to and poll from without locks.
+ *
+ * Each slot carries a sequence that tells whether it is free for the position being written or holds the
+ * position being read. A writer claims a position by moving the tail forward and then publishes the slot by
+ * advancing its sequence, a reader does the same with the head. Neither ever blocks, a full or empty queue
+ * is reported straight away.
+ */
+final class EventRingBuffer<E> {
+
+	private final AtomicReferenceArray<E> slots;
+	private final AtomicLongArray sequences;
+	private final int mask;
+
+	// The next position to write and to read.
+	private final AtomicLong tail = new AtomicLong();
+	private final AtomicLong head = new AtomicLong();
+
+	/**
+	 * @param capacity the number of slots, rounded up to a power of 2.
+	 */
+	EventRingBuffer(int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+		slots = new AtomicReferenceArray<>(size);
+		sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+		mask = size - 1;
+	}
+
+	/**
+	 * @return false when the queue is full.
+	 */
+	boolean offer(E element) {
+		long position = tail.get();
+		while (true) {
+			int index = (int) position & mask;
+			long difference = sequences.get(index) - position;
+			if (difference == 0) {
+				if (tail.compareAndSet(position, position + 1)) {
+					slots.set(index, element);
+					sequences.set(index, position + 1);
+					return true;
+				}
+				position = tail.get();
+			} else if (difference < 0) {
+				// The slot still holds the element of the previous lap.
+				return false;
+			} else {
+				position = tail.get();
+			}
+		}
+	}
+
+	/**
+	 * @return the oldest element, null when the queue is empty.
+	 */
+	E poll() {
+		long position = head.get();
+		while (true) {
+			int index = (int) position & mask;
+			long difference = sequences.get(index) - (position + 1);
+			if (difference == 0) {
+				if (head.compareAndSet(position, position + 1)) {
+					E element = slots.get(index);
+					slots.set(index, null);
+					// Free the slot for the next lap.
+					sequences.set(index, position + mask + 1);
+					return element;
+				}
+				position = head.get();
+			} else if (difference < 0) {
+				// The slot hasn't been written yet.
+				return null;
+			} else {
+				position = head.get();
+			}
+		}
+	}
+
+	/**
+	 * @return the number of elements, approximate while other threads offer and poll.
+	 */
+	int size() {
+		long size = tail.get() - head.get();
+		return (int) Math.max(0, Math.min(size, capacity()));
+	}
+
+	int capacity() {
+		return mask + 1;
+	}
+}
@@ -0,0 +1,128 @@
+package com.rest.jms.producer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.DeliveryMode;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.Topic;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.rest.dao.cache.CustomerInvalidation;
+
+/**
+ * Publishes the customers written on this node to the other nodes, so that they remove them from their caches.
+ *
+ * The invalidations are collected for a few milliseconds and published as one message on the invalidation topic,
+ * every node subscribes to it with an InvalidationConsumer. The messages are not persistent, a node that is down
+ * misses them and PersistentCacheValidator checks the customers it restarts with against the database instead.
+ * When publishing fails the other nodes keep the customers until they expire.
+ */
+public class InvalidationProducer {
+
+	private static final Logger LOG = LogManager.getLogger(InvalidationProducer.class);
+
+	// The property of the messages that tells the node that sent them, so that a node skips its own.
+	public static final String NODE_PROPERTY = "node";
+	public static final String NODE = UUID.randomUUID().toString();
+
+	private static final int MAX_BATCH_SIZE = 1000;
+
+	@Autowired
+	private ConnectionFactory connectionFactory;
+
+	@Autowired
+	private Topic invalidationTopic;
+
+	private final Queue<CustomerInvalidation> pending = new ConcurrentLinkedQueue<>();
+	private final ScheduledExecutorService scheduler;
+
+	// Only used by the thread of the scheduler, the connection is kept open between batches.
+	private Connection connection;
+	private Session session;
+	private MessageProducer producer;
+
+	/**
+	 * @param flushIntervalMillis how long the invalidations are collected before they are published.
+	 */
+	public InvalidationProducer(long flushIntervalMillis) {
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "cache-invalidation");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	public void publish(CustomerInvalidation invalidation) {
+		pending.add(invalidation);
+	}
+
+	void flush() {
+		while (!pending.isEmpty()) {
+			List<CustomerInvalidation> batch = new ArrayList<>();
+			CustomerInvalidation invalidation;
+			while (batch.size() < MAX_BATCH_SIZE && (invalidation = pending.poll()) != null) {
+				batch.add(invalidation);
+			}
+
+			try {
+				send(batch);
+				LOG.debug("Published {} invalidations.", batch.size());
+			} catch (JMSException | RuntimeException e) {
+				LOG.error("Exception publishing {} invalidations, the other nodes keep them until they expire.", batch.size(), e);
+				closeConnection();
+				return;
+			}
+		}
+	}
+
+	private void send(List<CustomerInvalidation> batch) throws JMSException {
+		if (connection == null) {
+			connection = connectionFactory.createConnection();
+			session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+			producer = session.createProducer(invalidationTopic);
+			producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+		}
+
+		BytesMessage message = session.createBytesMessage();
+		message.setStringProperty(NODE_PROPERTY, NODE);
+		message.writeBytes(CustomerInvalidation.encode(batch));
+		producer.send(message);
+	}
+
+	private void closeConnection() {
+		if (connection != null) {
+			try {
+				connection.close();
+			} catch (JMSException e) {
+				LOG.warn("Exception closing jms connection.", e);
+			}
+			connection = null;
+		}
+	}
+
+	/**
+	 * Publishes the pending invalidations and closes the connection.
+	 */
+	public void close() throws InterruptedException {
+		scheduler.shutdown();
+		scheduler.awaitTermination(1, TimeUnit.SECONDS);
+		flush();
+		closeConnection();
+	}
+}
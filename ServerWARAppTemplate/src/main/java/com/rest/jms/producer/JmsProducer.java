@@ -1,11 +1,13 @@
 package com.rest.jms.producer;
 
+import java.util.List;
+
+import javax.jms.BytesMessage;
 import javax.jms.Connection;
 import javax.jms.ConnectionFactory;
 import javax.jms.Destination;
 import javax.jms.JMSException;
 import javax.jms.MessageProducer;
-import javax.jms.ObjectMessage;
 import javax.jms.Session;
 
 import org.apache.logging.log4j.LogManager;
@@ -13,44 +15,90 @@ import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import com.rest.aspect.Event;
+import com.rest.aspect.EventCodec;
 
 /**
  * A JMS producer that simply sets the event on a queue to be processed by a different
  * part of the application. Here we are striving for loose coupling using asynchronous 
  * communication between component services. 
+ * 
+ * An event is sent on every REST request. The producerConnectionFactory caches the connection, 
+ * sessions and producers so a send doesn't open a connection to the broker, closing them hands 
+ * them back to the cache. See applicationContext.xml.
+ * 
+ * The event is sent as a BytesMessage in the compact encoding of EventCodec rather than as a Java 
+ * serialized ObjectMessage. With an envelopeSize above 1 the events of a batch are packed up to 
+ * envelopeSize at a time into envelope messages that JmsConsumer unpacks, so the broker writes and 
+ * acknowledges one message for many requests.
  */
 public class JmsProducer {
 
 	private static final Logger LOG = LogManager.getLogger(JmsProducer.class);
 	
 	@Autowired
-	private ConnectionFactory connectionFactory;
+	private ConnectionFactory producerConnectionFactory;
 	
 	@Autowired
 	private Destination eventsQueue;
+	
+	private int envelopeSize = 1;
+
+	public JmsProducer() {
+	}
+
+	JmsProducer(ConnectionFactory producerConnectionFactory, Destination eventsQueue) {
+		this.producerConnectionFactory = producerConnectionFactory;
+		this.eventsQueue = eventsQueue;
+	}
+
+	/**
+	 * @param envelopeSize the largest number of events packed into one message, 1 sends a message per event.
+	 */
+	public void setEnvelopeSize(int envelopeSize) {
+		this.envelopeSize = envelopeSize;
+	}
 
 	public void send(Event event) {
 		
-		Connection conn = null;
-		
-		try {
-			conn = connectionFactory.createConnection();
-			Session session = conn.createSession(false, Session.AUTO_ACKNOWLEDGE);
-			MessageProducer producer = session.createProducer(eventsQueue);
-			ObjectMessage message = session.createObjectMessage(event);
+		try (Connection conn = producerConnectionFactory.createConnection();
+				Session session = conn.createSession(false, Session.AUTO_ACKNOWLEDGE);
+				MessageProducer producer = session.createProducer(eventsQueue)) {
 			
-			producer.send(message);
+			producer.send(createMessage(session, EventCodec.encode(event)));
 			
 		} catch (Exception ex) {
 			LOG.error("Exception sending jms message: " + event.toString(), ex);
-		} finally {
-			if (conn != null) {
-				try {
-					conn.close();
-				} catch (JMSException e) {
-					LOG.warn("Exception closing jms connection.", e);
-				}
+		}
+	}
+
+	/**
+	 * Sends the events in one transaction, the broker acknowledges them all at once on commit. The events 
+	 * are packed into envelopes of up to envelopeSize.
+	 * 
+	 * @return false if the events were not sent.
+	 */
+	public boolean send(List<Event> events) {
+		
+		try (Connection conn = producerConnectionFactory.createConnection();
+				Session session = conn.createSession(true, Session.SESSION_TRANSACTED);
+				MessageProducer producer = session.createProducer(eventsQueue)) {
+			
+			for (int from = 0; from < events.size(); from += envelopeSize) {
+				List<Event> envelope = events.subList(from, Math.min(from + envelopeSize, events.size()));
+				producer.send(createMessage(session, EventCodec.encode(envelope)));
 			}
+			session.commit();
+			return true;
+			
+		} catch (Exception ex) {
+			LOG.error("Exception sending {} events as jms messages.", events.size(), ex);
+			return false;
 		}
 	}
+
+	private static BytesMessage createMessage(Session session, byte[] body) throws JMSException {
+		BytesMessage message = session.createBytesMessage();
+		message.writeBytes(body);
+		return message;
+	}
 }
@@ -0,0 +1,99 @@
+package com.rest.resource;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+
+import com.rest.dao.cache.CacheWrapper;
+import com.rest.dao.cache.HotKeySketch;
+import com.rest.domain.Customer;
+import com.rest.domain.EndpointLatencies;
+import com.rest.domain.HotCustomer;
+import com.rest.domain.HotCustomers;
+import com.rest.exception.BadRequestException;
+import com.rest.exception.ErrorMessage;
+import com.rest.jms.consumer.LatencyAggregator;
+import com.webcohesion.enunciate.metadata.rs.TypeHint;
+
+/**
+ * REST layer for the operators of the application, only the ADMIN role can call it.
+ */
+@Controller
+@Path("admin")
+public class AdminResource {
+
+	private static final Logger LOG = LogManager.getLogger(AdminResource.class);
+
+	// The largest number of hot customers that can be retrieved.
+	static final int MAX_HOT_CUSTOMERS = 1000;
+
+	@Autowired
+	private HotKeySketch customerHotKeys;
+
+	@Autowired
+	private CacheWrapper<Integer, Customer> customerPinnedCache;
+
+	@Autowired
+	private LatencyAggregator latencyAggregator;
+
+	/**
+	 * Retrieve the most read customer ids, estimated from a sample of the reads.
+	 *
+	 * @param limit The maximum number of ids to return, capped by the server.
+	 * @param request The HttpServletRequest used for the run-time caller resolution.
+	 * @return <p>HTTP Status OK (200) the hottest customer ids first along with whether they are pinned in the cache.</p>
+	 */
+	@GET
+	@Path("hot-customers")
+	@Produces({ "application/xml", "application/json" })
+	@TypeHint(HotCustomers.class)
+	public Response getHotCustomers(@QueryParam("limit") @DefaultValue("100") int limit, @Context HttpServletRequest request) {
+		HotCustomers hotCustomers = new HotCustomers();
+		for (Map.Entry<Integer, Integer> entry : customerHotKeys.top(Math.max(0, Math.min(limit, MAX_HOT_CUSTOMERS)))) {
+			hotCustomers.add(new HotCustomer(entry.getKey(), entry.getValue(), customerPinnedCache.containsKey(entry.getKey())));
+		}
+		return Response.ok(hotCustomers).build();
+	}
+
+	/**
+	 * Retrieve the latency percentiles and the throughput of each endpoint, a method, a resource path with 
+	 * its ids replaced and a class of status, over the last minutes.
+	 *
+	 * @param window The minutes of the window, 1, 5 or 15.
+	 * @param request The HttpServletRequest used for the run-time caller resolution.
+	 * @return <p>HTTP Status OK (200) the endpoints with requests in the window, the busiest first.</p>
+	 * @throws BadRequestException if the window isn't 1, 5 or 15.
+	 */
+	@GET
+	@Path("latencies")
+	@Produces({ "application/xml", "application/json" })
+	@TypeHint(EndpointLatencies.class)
+	public Response getLatencies(@QueryParam("window") @DefaultValue("1") int window, @Context HttpServletRequest request)
+			throws BadRequestException {
+		if (Arrays.stream(LatencyAggregator.WINDOWS).noneMatch(minutes -> minutes == window)) {
+			ErrorMessage message = new ErrorMessage(Response.Status.BAD_REQUEST.getStatusCode(),
+					"window:The window must be one of " + Arrays.toString(LatencyAggregator.WINDOWS) + " minutes",
+					"http://localhost:8080/error400.jsp", Response.Status.BAD_REQUEST.getReasonPhrase());
+			LOG.warn(message);
+			throw new BadRequestException(message, request.getHeader("accept"));
+		}
+
+		EndpointLatencies endpointLatencies = new EndpointLatencies();
+		latencyAggregator.getLatencies(window).forEach(endpointLatencies::add);
+		return Response.ok(endpointLatencies).build();
+	}
+}
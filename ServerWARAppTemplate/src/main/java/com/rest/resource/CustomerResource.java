@@ -1,30 +1,42 @@
 package com.rest.resource;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.CrossOrigin;
 
 import com.rest.domain.Customer;
+import com.rest.domain.CustomerBatchResults;
 import com.rest.domain.Customers;
 import com.rest.exception.BadRequestException;
+import com.rest.exception.ConflictException;
 import com.rest.exception.ErrorMessage;
 import com.rest.exception.InternalServerErrorException;
 import com.rest.exception.NotFoundException;
@@ -45,6 +57,15 @@ import com.webcohesion.enunciate.metadata.rs.TypeHint;
 public class CustomerResource {
 
 	private static final Logger LOG = LogManager.getLogger(CustomerResource.class);
+	
+	// The page size used when the client does not pass in a limit.
+	static final int DEFAULT_PAGE_SIZE = 100;
+	
+	// The largest page a client can retrieve regardless of the limit it passes in.
+	static final int MAX_PAGE_SIZE = 1000;
+	
+	// The largest number of customers that can be created in a single batch.
+	static final int MAX_BATCH_SIZE = 10000;
 
 	@Autowired
 	private CustomerService customerService;
@@ -82,6 +103,45 @@ public class CustomerResource {
 		}
 	}
 
+	/**
+	 * Create a batch of Customers. Every customer is validated, the valid customers are created 
+	 * together and the outcome of each customer is reported in the order they were sent.
+	 *
+	 * @param customers The customers to create.
+	 * @param request   The HttpServletRequest used for the run-time caller resolution.
+	 * @return <p>HTTP Status OK (200) the outcome of each customer including the generated id of those created.</p>
+	 * @throws BadRequestException if the batch is empty or too large.
+	 * @throws InternalServerErrorException if a server side error occurred.
+	 */
+	@POST
+	@Path("batch")
+	@Consumes({ "application/xml", "application/json" })
+	@Produces({ "application/xml", "application/json" })
+	@TypeHint(CustomerBatchResults.class)
+	public Response createCustomers(Customers customers, @Context HttpServletRequest request)
+			throws BadRequestException, InternalServerErrorException {
+		
+		if (customers == null || customers.getCustomers() == null || customers.getCustomers().isEmpty() 
+				|| customers.getCustomers().size() > MAX_BATCH_SIZE) {
+			ErrorMessage message = new ErrorMessage(Response.Status.BAD_REQUEST.getStatusCode(),
+					"customers:Between 1 and " + MAX_BATCH_SIZE + " customers must be sent", 
+					"http://localhost:8080/error400.jsp", Response.Status.BAD_REQUEST.getReasonPhrase());
+			LOG.warn(message);
+			throw new BadRequestException(message, request.getHeader("accept"));
+		}
+		
+		try {
+			CustomerBatchResults results = customerService.createCustomers(customers.getCustomers());
+			return Response.ok(results).build(); // Returns a 200 OK with the outcome of each customer.
+		} catch (Exception e) {
+			ErrorMessage message = new ErrorMessage(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(),
+					e.getMessage(), "http://localhost:8080/error500.jsp",
+					Response.Status.INTERNAL_SERVER_ERROR.getReasonPhrase());
+			LOG.error(message, e);
+			throw new InternalServerErrorException(message, request.getHeader("accept"));
+		}
+	}
+
 	/**
 	 * Update a Customer.
 	 *
@@ -90,6 +150,8 @@ public class CustomerResource {
 	 * @param request  The HttpServletRequest used for the run-time caller resolution.
 	 * @return <p>HTTP Status No Content (204)</p>
 	 * @throws BadRequestException if the validation of the Customer failed.
+	 * @throws NotFoundException if the Customer was not found.
+	 * @throws ConflictException if the version of the Customer is out of date, it was updated by another request.
 	 * @throws InternalServerErrorException if a server side error occurred.
 	 */
 	@PUT
@@ -97,7 +159,7 @@ public class CustomerResource {
 	@Consumes({ "application/xml", "application/json" })
 	@TypeHint(Customer.class)
 	public Response updateCustomer(@PathParam("id") int id, Customer customer, @Context HttpServletRequest request)
-			throws BadRequestException, InternalServerErrorException {
+			throws BadRequestException, NotFoundException, ConflictException, InternalServerErrorException {
 		try {
 			customer.setId(id);
 			customerService.updateCustomer(id, customer);
@@ -108,6 +170,17 @@ public class CustomerResource {
 					"http://localhost:8080/error400.jsp", Response.Status.BAD_REQUEST.getReasonPhrase());
 			LOG.warn(message);
 			throw new BadRequestException(message, request.getHeader("accept"));
+		} catch (EmptyResultDataAccessException e) {
+			ErrorMessage message = new ErrorMessage(Response.Status.NOT_FOUND.getStatusCode(), "Customer not found",
+					"http://localhost:8080/error404.jsp", Response.Status.NOT_FOUND.getReasonPhrase());
+			LOG.warn(message);
+			throw new NotFoundException(message, request.getHeader("accept"));
+		} catch (OptimisticLockingFailureException e) {
+			ErrorMessage message = new ErrorMessage(Response.Status.CONFLICT.getStatusCode(), 
+					"The customer was updated by another request, retrieve it and retry with its current version",
+					"http://localhost:8080/error409.jsp", Response.Status.CONFLICT.getReasonPhrase());
+			LOG.warn(message);
+			throw new ConflictException(message, request.getHeader("accept"));
 		} catch (Exception e) {
 			ErrorMessage message = new ErrorMessage(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(),
 					e.getMessage(), "http://localhost:8080/error500.jsp",
@@ -178,23 +251,84 @@ public class CustomerResource {
 	}
 
 	/**
-	 * Retrieve all the Customers.
+	 * Retrieve a page of Customers ordered by id, or the Customers with the given ids.
 	 *
-	 * @return <p>HTTP Status OK (200) all the Customers.</p>
+	 * @param after   The opaque cursor returned as the next_cursor of the previous page, omit to retrieve the first page.
+	 * @param limit   The maximum number of customers to return, capped by the server.
+	 * @param ids     A comma separated list of up to 1000 ids, the Customers with these ids are returned in the 
+	 *                same order instead of a page. Ids without a Customer are left out.
+	 * @param request The HttpServletRequest used for the run-time caller resolution.
+	 * @return <p>HTTP Status OK (200) a page of Customers along with the cursor for the next page.</p>
+	 * @throws BadRequestException if the cursor or the ids are not valid.
 	 * @throws InternalServerErrorException if a server side error occurred.
 	 */
 	@GET
 	@Produces({ "application/xml", "application/json" })
 	@TypeHint(Customers.class)
-	public Response getCustomers(@Context HttpServletRequest request) throws InternalServerErrorException {
+	public Response getCustomers(@QueryParam("after") String after, @QueryParam("limit") @DefaultValue("0") int limit,
+			@QueryParam("ids") String ids, @Context HttpServletRequest request) throws BadRequestException, InternalServerErrorException {
+		
+		if (ids != null) {
+			return getCustomersByIds(ids, request);
+		}
+		
+		int afterId = 0;
+		if (after != null && !after.isEmpty()) {
+			try {
+				afterId = decodeCursor(after);
+			} catch (IllegalArgumentException e) {
+				ErrorMessage message = new ErrorMessage(Response.Status.BAD_REQUEST.getStatusCode(),
+						"after:The cursor is not valid", "http://localhost:8080/error400.jsp",
+						Response.Status.BAD_REQUEST.getReasonPhrase());
+				LOG.warn(message);
+				throw new BadRequestException(message, request.getHeader("accept"));
+			}
+		}
+		
+		int pageSize = limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+		
 		try {
-			List<Customer> customers = customerService.getCustomers();
+			List<Customer> customers = customerService.getCustomers(afterId, pageSize);
 			// Wrap the list of customers in a Customers object for clients requesting XML
 			// or JSON. This is primarily done for XML, for JSON you can just pass a List<Customer>
 			// and it will convert it into an array. We wrap the JSON so that we don't have to have
 			// additional methods that produce and consume Customers for XML and List<Customer> for JSON.
 			Customers customersObject = new Customers();
 			customersObject.setCustomers(customers);
+			// A full page means there may be more customers, hand back the cursor to continue from.
+			if (!customers.isEmpty() && customers.size() >= pageSize) {
+				customersObject.setNextCursor(encodeCursor(customers.get(customers.size() - 1).getId()));
+			}
+			return Response.ok(customersObject).build(); // Returns a 200 OK with the customers object.
+		} catch (Exception e) {
+			ErrorMessage message = new ErrorMessage(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(),
+					e.getMessage(), "http://localhost:8080/error500.jsp",
+					Response.Status.INTERNAL_SERVER_ERROR.getReasonPhrase());
+			LOG.error(message, e);
+			throw new InternalServerErrorException(message, request.getHeader("accept"));
+		}
+	}
+	
+	/**
+	 * Retrieves a list of Customers in one call instead of a call per Customer.
+	 */
+	private Response getCustomersByIds(String ids, HttpServletRequest request) 
+			throws BadRequestException, InternalServerErrorException {
+		
+		Set<Integer> idSet;
+		try {
+			idSet = parseIds(ids);
+		} catch (IllegalArgumentException e) {
+			ErrorMessage message = new ErrorMessage(Response.Status.BAD_REQUEST.getStatusCode(),
+					"ids:" + e.getMessage(), "http://localhost:8080/error400.jsp",
+					Response.Status.BAD_REQUEST.getReasonPhrase());
+			LOG.warn(message);
+			throw new BadRequestException(message, request.getHeader("accept"));
+		}
+		
+		try {
+			Customers customersObject = new Customers();
+			customersObject.setCustomers(customerService.getCustomers(idSet));
 			return Response.ok(customersObject).build(); // Returns a 200 OK with the customers object.
 		} catch (Exception e) {
 			ErrorMessage message = new ErrorMessage(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(),
@@ -204,4 +338,73 @@ public class CustomerResource {
 			throw new InternalServerErrorException(message, request.getHeader("accept"));
 		}
 	}
+	
+	/**
+	 * Export all the Customers ordered by id. Unlike retrieving the Customers a page at a time 
+	 * the customers are written to the response as they are read from the database.
+	 *
+	 * @param request The HttpServletRequest used for the run-time caller resolution.
+	 * @param headers The HttpHeaders of the request, the format is the most preferred acceptable one.
+	 * @return <p>HTTP Status OK (200) all the Customers streamed in the requested format.</p>
+	 */
+	@GET
+	@Path("export")
+	@Produces({ "application/xml", "application/json" })
+	@TypeHint(Customers.class)
+	public Response getCustomersExport(@Context HttpServletRequest request, @Context HttpHeaders headers) {
+		// Nothing is read from the database until Jersey writes the entity, errors after that point
+		// can no longer be turned into an error response as the status has already been sent.
+		String mediaType = exportMediaType(headers.getAcceptableMediaTypes());
+		return Response.ok(new CustomersStreamingOutput(customerService, mediaType), mediaType).build();
+	}
+	
+	/**
+	 * The acceptable media types are sorted by preference, the first one that matches a format wins. 
+	 * A wildcard matches json.
+	 */
+	static String exportMediaType(List<MediaType> acceptableMediaTypes) {
+		for (MediaType acceptable : acceptableMediaTypes) {
+			if (acceptable.isCompatible(MediaType.APPLICATION_JSON_TYPE)) {
+				return MediaType.APPLICATION_JSON;
+			}
+			if (acceptable.isCompatible(MediaType.APPLICATION_XML_TYPE)) {
+				return MediaType.APPLICATION_XML;
+			}
+		}
+		return MediaType.APPLICATION_JSON;
+	}
+	
+	/**
+	 * The cursor is opaque to clients so the keyset it wraps can change without breaking them.
+	 */
+	static String encodeCursor(int id) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(Integer.toString(id).getBytes(StandardCharsets.UTF_8));
+	}
+	
+	static int decodeCursor(String cursor) {
+		// Base64 decoding failures and NumberFormatException are both IllegalArgumentExceptions.
+		int id = Integer.parseInt(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+		if (id < 0) {
+			throw new IllegalArgumentException("Negative cursor " + id);
+		}
+		return id;
+	}
+	
+	/**
+	 * Parses a comma separated list of ids keeping the order they were sent in, duplicates are dropped.
+	 */
+	static Set<Integer> parseIds(String ids) {
+		Set<Integer> idSet = new LinkedHashSet<>();
+		for (String id : ids.split(",")) {
+			try {
+				idSet.add(Integer.valueOf(id.trim()));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("The ids must be a comma separated list of numbers");
+			}
+		}
+		if (idSet.size() > MAX_PAGE_SIZE) {
+			throw new IllegalArgumentException("At most " + MAX_PAGE_SIZE + " ids can be retrieved at a time");
+		}
+		return idSet;
+	}
 }
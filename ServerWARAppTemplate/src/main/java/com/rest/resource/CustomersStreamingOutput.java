@@ -0,0 +1,143 @@
+package com.rest.resource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.AnnotationIntrospector;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.introspect.AnnotationIntrospectorPair;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import com.fasterxml.jackson.module.jaxb.JaxbAnnotationIntrospector;
+import com.rest.domain.Customer;
+import com.rest.service.CustomerService;
+
+/**
+ * Writes every customer straight to the HTTP response as it is read from the database. The output
+ * has the same shape as the Customers wrapper so clients can parse it the same way, but the heap
+ * used stays constant regardless of the number of customers.
+ *
+ * <customers><customer>...</customer><customer>...</customer></customers>
+ *
+ * {"customers":[{...,...,...,..."},{...,...,...,..}]}
+ */
+public class CustomersStreamingOutput implements StreamingOutput {
+
+	private static final Logger LOG = LogManager.getLogger(CustomersStreamingOutput.class);
+
+	// These are thread safe once configured so they are shared by all the requests.
+	private static final ObjectWriter JSON_WRITER;
+	private static final JAXBContext JAXB_CONTEXT;
+	private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+	static {
+		// This mimics the configuration done by jersey-media-json-jackson so the customers are named
+		// the same as they are when returned by the other endpoints. See JacksonJsonTest.
+		ObjectMapper objectMapper = new ObjectMapper();
+		AnnotationIntrospector intr = new AnnotationIntrospectorPair(
+				new JacksonAnnotationIntrospector(),
+				new JaxbAnnotationIntrospector(objectMapper.getTypeFactory()));
+		objectMapper.setAnnotationIntrospector(intr);
+		// Let the generator buffer, the response is flushed when the stream completes.
+		objectMapper.disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		JSON_WRITER = objectMapper.writerFor(Customer.class);
+
+		try {
+			JAXB_CONTEXT = JAXBContext.newInstance(Customer.class);
+		} catch (JAXBException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final CustomerService customerService;
+	private final String mediaType;
+
+	/**
+	 * @param customerService the service the customers are streamed from.
+	 * @param mediaType either <code>application/xml</code> or <code>application/json</code>.
+	 */
+	public CustomersStreamingOutput(CustomerService customerService, String mediaType) {
+		this.customerService = customerService;
+		this.mediaType = mediaType;
+	}
+
+	@Override
+	public void write(OutputStream output) throws IOException {
+		try {
+			if (MediaType.APPLICATION_XML.equals(mediaType)) {
+				writeXml(output);
+			} else {
+				writeJson(output);
+			}
+		} catch (UncheckedIOException e) {
+			// Most likely the client went away in the middle of the stream.
+			LOG.warn("Error streaming the Customers", e);
+			throw e.getCause();
+		}
+	}
+
+	private void writeJson(OutputStream output) throws IOException {
+		JsonGenerator generator = JSON_WRITER.getFactory().createGenerator(output, JsonEncoding.UTF8);
+
+		generator.writeStartObject();
+		generator.writeArrayFieldStart("customers");
+
+		customerService.streamCustomers(customer -> {
+			try {
+				JSON_WRITER.writeValue(generator, customer);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+
+		generator.writeEndArray();
+		generator.writeEndObject();
+		generator.flush();
+	}
+
+	private void writeXml(OutputStream output) throws IOException {
+		try {
+			XMLStreamWriter writer = XML_OUTPUT_FACTORY.createXMLStreamWriter(output, "UTF-8");
+
+			// Marshaller is not thread safe, one is created per request.
+			Marshaller marshaller = JAXB_CONTEXT.createMarshaller();
+			// Each customer is a fragment of the document written around it.
+			marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+
+			writer.writeStartDocument("UTF-8", "1.0");
+			writer.writeStartElement("customers");
+
+			customerService.streamCustomers(customer -> {
+				try {
+					marshaller.marshal(customer, writer);
+				} catch (JAXBException e) {
+					throw new RuntimeException(e);
+				}
+			});
+
+			writer.writeEndElement();
+			writer.writeEndDocument();
+			writer.flush();
+			writer.close();
+		} catch (XMLStreamException | JAXBException e) {
+			LOG.error("Error streaming the Customers", e);
+			throw new IOException(e);
+		}
+	}
+}
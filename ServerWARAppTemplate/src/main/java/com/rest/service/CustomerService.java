@@ -1,10 +1,13 @@
 package com.rest.service;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 import javax.validation.constraints.NotNull;
 
 import com.rest.domain.Customer;
+import com.rest.domain.CustomerBatchResults;
 import com.rest.service.validation.ValidationException;
 
 /**
@@ -13,9 +16,20 @@ import com.rest.service.validation.ValidationException;
 public abstract interface CustomerService {
 
 	public abstract Customer createCustomer(Customer customer) throws ValidationException;
+	@NotNull // Validation, the returned CustomerBatchResults should not be null.
+	public abstract CustomerBatchResults createCustomers(List<Customer> customers);
+	/**
+	 * @throws org.springframework.dao.EmptyResultDataAccessException if there is no customer with the id.
+	 * @throws org.springframework.dao.OptimisticLockingFailureException if the version of the customer is out of date.
+	 */
 	public abstract void updateCustomer(int id, Customer customer) throws ValidationException;
 	public abstract void deleteCustomer(int id);
 	public abstract Customer getCustomer(int id);
 	@NotNull // Validation, the returned List<Customer> should not be null.
 	public abstract List<Customer> getCustomers();
+	@NotNull // Validation, the returned List<Customer> should not be null.
+	public abstract List<Customer> getCustomers(int afterId, int limit);
+	@NotNull // Validation, the returned List<Customer> should not be null.
+	public abstract List<Customer> getCustomers(Collection<Integer> ids);
+	public abstract void streamCustomers(Consumer<Customer> consumer);
 }
@@ -1,13 +1,25 @@
 package com.rest.service.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 
 import com.rest.dao.CustomerDAO;
 import com.rest.domain.Customer;
+import com.rest.domain.CustomerBatchResult;
+import com.rest.domain.CustomerBatchResults;
 import com.rest.service.CustomerService;
 import com.rest.service.validation.DomainValidatorFactory;
+import com.rest.service.validation.UniquenessCheck;
+import com.rest.service.validation.ValidationError;
 import com.rest.service.validation.ValidationException;
 import com.rest.service.validation.ValidationOperation;
 
@@ -18,17 +30,72 @@ public class CustomerServiceImpl implements CustomerService {
 
 	@Autowired
 	private DomainValidatorFactory validatorFactory;
+	
+	// QUERY checks that the email is unique before the customer is written. CONSTRAINT skips the 
+	// check and relies on the unique constraint of the database, saving a round trip per write.
+	private UniquenessCheck uniquenessCheck = UniquenessCheck.QUERY;
 
 	@Override
 	public Customer createCustomer(Customer customer) throws ValidationException {
-		validatorFactory.validateDomain(customer, ValidationOperation.CREATE);
-		return customerDAO.createCustomer(customer);
+		validatorFactory.validateDomain(customer, ValidationOperation.CREATE, uniquenessCheck);
+		try {
+			return customerDAO.createCustomer(customer);
+		} catch (DuplicateKeyException e) {
+			throw emailTaken();
+		}
+	}
+
+	@Override
+	public CustomerBatchResults createCustomers(List<Customer> customers) {
+		
+		CustomerBatchResult[] results = new CustomerBatchResult[customers.size()];
+		List<Customer> validCustomers = new ArrayList<>();
+		List<Integer> validIndexes = new ArrayList<>();
+		
+		// The database is only checked for existing emails, the batch itself can have duplicates.
+		Set<String> batchEmails = new HashSet<>();
+		
+		for (int i = 0; i < customers.size(); i++) {
+			Customer customer = customers.get(i);
+			try {
+				validatorFactory.validateDomain(customer, ValidationOperation.CREATE);
+				
+				if (!batchEmails.add(customer.getEmail())) {
+					throw emailTaken();
+				}
+				
+				validCustomers.add(customer);
+				validIndexes.add(i);
+			} catch (ValidationException e) {
+				results[i] = CustomerBatchResult.failed(i, 
+						e.getValidationErrors().stream().map(ve -> ve.toString()).collect(Collectors.toList()));
+			}
+		}
+		
+		if (!validCustomers.isEmpty()) {
+			customerDAO.createCustomers(validCustomers);
+			
+			for (int i = 0; i < validCustomers.size(); i++) {
+				results[validIndexes.get(i)] = CustomerBatchResult.created(validIndexes.get(i), validCustomers.get(i).getId());
+			}
+		}
+		
+		// Report the outcomes in the order the customers were sent.
+		CustomerBatchResults batchResults = new CustomerBatchResults();
+		for (CustomerBatchResult result : results) {
+			batchResults.add(result);
+		}
+		return batchResults;
 	}
 
 	@Override
 	public void updateCustomer(int id, Customer customer) throws ValidationException {
-		validatorFactory.validateDomain(customer, ValidationOperation.UPDATE);
-		customerDAO.updateCustomer(id, customer);
+		validatorFactory.validateDomain(customer, ValidationOperation.UPDATE, uniquenessCheck);
+		try {
+			customerDAO.updateCustomer(id, customer);
+		} catch (DuplicateKeyException e) {
+			throw emailTaken();
+		}
 	}
 
 	@Override
@@ -45,4 +112,35 @@ public class CustomerServiceImpl implements CustomerService {
 	public List<Customer> getCustomers() {
 		return customerDAO.getCustomers();
 	}
+
+	@Override
+	public List<Customer> getCustomers(int afterId, int limit) {
+		return customerDAO.getCustomers(afterId, limit);
+	}
+
+	@Override
+	public List<Customer> getCustomers(Collection<Integer> ids) {
+		return customerDAO.getCustomers(ids);
+	}
+
+	@Override
+	public void streamCustomers(Consumer<Customer> consumer) {
+		customerDAO.streamCustomers(consumer);
+	}
+
+	public UniquenessCheck getUniquenessCheck() {
+		return uniquenessCheck;
+	}
+
+	public void setUniquenessCheck(UniquenessCheck uniquenessCheck) {
+		this.uniquenessCheck = uniquenessCheck;
+	}
+	
+	/**
+	 * The same validation error the validator reports when the email is already taken.
+	 */
+	private static ValidationException emailTaken() {
+		return new ValidationException("Validation Failed for " + Customer.class.getName(), 
+				Collections.singletonList(new ValidationError("email", "The email is already taken")));
+	}
 }
@@ -1,7 +1,5 @@
 package com.rest.service.validation;
 
-import java.util.List;
-
 import javax.validation.ConstraintViolation;
 import javax.validation.Validation;
 import javax.validation.Validator;
@@ -39,23 +37,24 @@ public class CustomerValidator implements SmartValidator {
 
 		if (!ObjectUtils.isEmpty(validationHints)) {
 			
-			// As for right now the only hints being passed in is a ValidationOperation.
+			// The first hint is a ValidationOperation optionally followed by a UniquenessCheck.
 			ValidationOperation operation = (ValidationOperation) validationHints[0];
+			
+			UniquenessCheck uniquenessCheck = validationHints.length > 1 && validationHints[1] instanceof UniquenessCheck 
+					? (UniquenessCheck) validationHints[1] : UniquenessCheck.QUERY;
 
-			if (operation == ValidationOperation.CREATE) {
-				List<Customer> existingCustomers = customerDAO.getCustomers();
-
-				for (Customer existingCustomer : existingCustomers) {
-					if (existingCustomer.getEmail().equalsIgnoreCase(customer.getEmail())) {
+			// With CONSTRAINT the email is checked by the unique constraint on the email when the customer is written.
+			if (uniquenessCheck == UniquenessCheck.QUERY) {
+				if (operation == ValidationOperation.CREATE) {
+					Customer existingCustomer = findByEmail(customer);
+					
+					if (existingCustomer != null) {
 						errors.rejectValue("email", "", "The email is already taken");
 					}
-				}
-			} else if (operation == ValidationOperation.UPDATE) {
-				List<Customer> existingCustomers = customerDAO.getCustomers();
-
-				for (Customer existingCustomer : existingCustomers) {
-					if (existingCustomer.getEmail().equalsIgnoreCase(customer.getEmail()) 
-							&& existingCustomer.getId() != customer.getId()) {
+				} else if (operation == ValidationOperation.UPDATE) {
+					Customer existingCustomer = findByEmail(customer);
+					
+					if (existingCustomer != null && existingCustomer.getId() != customer.getId()) {
 						errors.rejectValue("email", "", "The email is already taken");
 					}
 				}
@@ -70,4 +69,15 @@ public class CustomerValidator implements SmartValidator {
 	    	errors.rejectValue(cv.getPropertyPath().toString(), "", cv.getMessageTemplate());
 	    }
 	}
+	
+	/**
+	 * The email is unique, a single lookup on the email index finds the customer that already has it if any.
+	 * A missing email is reported by the annotation validation.
+	 */
+	private Customer findByEmail(Customer customer) {
+		if (customer.getEmail() == null || customer.getEmail().isEmpty()) {
+			return null;
+		}
+		return customerDAO.findByEmail(customer.getEmail());
+	}
 }
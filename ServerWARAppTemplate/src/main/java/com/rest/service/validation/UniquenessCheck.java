@@ -0,0 +1,13 @@
+package com.rest.service.validation;
+
+/**
+ * How the uniqueness of a domain object is checked when it is written, passed as a validation hint 
+ * after the ValidationOperation.
+ */
+public enum UniquenessCheck {
+	// The validator queries the database before the write. The error is reported along with the 
+	// other validation errors but it costs an extra round trip and is racy under concurrent writes.
+	QUERY, 
+	// The validator skips the query and the unique constraint of the database rejects the write.
+	CONSTRAINT;
+}
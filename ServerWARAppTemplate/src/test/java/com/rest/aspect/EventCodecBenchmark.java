@@ -0,0 +1,97 @@
+package com.rest.aspect;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+/**
+ * Measures the time to encode and decode the event of a REST request with Java serialization, the body of
+ * the ObjectMessage JmsProducer used to send, and with EventCodec. The sizes of both are printed before the
+ * run. Run it with:
+ *
+ * mvn test-compile exec:java -Dexec.mainClass=com.rest.aspect.EventCodecBenchmark -Dexec.classpathScope=test
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventCodecBenchmark {
+
+	@Param({ "serialized", "binary" })
+	public String format;
+
+	private Event event;
+	private byte[] encoded;
+
+	@Setup
+	public void setUp() throws IOException {
+		event = event();
+		encoded = "binary".equals(format) ? EventCodec.encode(event) : serialize(event);
+	}
+
+	@Benchmark
+	public byte[] encode() throws IOException {
+		return "binary".equals(format) ? EventCodec.encode(event) : serialize(event);
+	}
+
+	@Benchmark
+	public Event decode() throws IOException, ClassNotFoundException {
+		return "binary".equals(format) ? EventCodec.decode(encoded) : deserialize(encoded);
+	}
+
+	private static Event event() {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setMethod("GET");
+		request.addHeader("Accept", "application/json");
+		request.setPathInfo("/customers/1");
+		request.setRemoteAddr("127.0.0.1");
+		return new Event(request).start();
+	}
+
+	private static byte[] serialize(Event event) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(event);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static Event deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+			return (Event) in.readObject();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Event event = event();
+		System.out.println("Message body of " + event);
+		System.out.println("serialized: " + serialize(event).length + " bytes");
+		System.out.println("binary: " + EventCodec.encode(event).length + " bytes");
+
+		Options options = new OptionsBuilder()
+				.include(EventCodecBenchmark.class.getSimpleName())
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,131 @@
+package com.rest.aspect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class EventCodecTest {
+
+	private static Event roundTrip(Event event) {
+		return EventCodec.decode(EventCodec.encode(event));
+	}
+
+	private static void assertEvent(Event expected, Event actual) {
+		assertEquals(expected.toString(), actual.toString());
+	}
+
+	@Test
+	public void testRoundTrip() {
+		Event event = new Event(1546300800123L, 42, "GET", "application/json", "/customers/1", null, "127.0.0.1", 200, null);
+		Event decoded = roundTrip(event);
+
+		assertEvent(event, decoded);
+		assertEquals("/customers/1", decoded.getResourceURI());
+		// The interned strings are the constants of the tables.
+		assertTrue(decoded.getMethod() == EventCodec.METHODS[0]);
+	}
+
+	@Test
+	public void testEncodingIsCompact() {
+		Event event = new Event(1546300800123L, 42, "GET", "application/json", "/customers/1", null, "127.0.0.1", 200, null);
+
+		// 1 version, 6 start time, 1 duration, 2 status, 1 method, 1 accept, 3 path, 1 query, 10 address, 1 message.
+		assertEquals(27, EventCodec.encode(event).length);
+	}
+
+	@Test
+	public void testNulls() {
+		Event event = new Event(0, 0, null, null, null, null, null, 0, null);
+		Event decoded = roundTrip(event);
+
+		assertEvent(event, decoded);
+		assertNull(decoded.getResourceURI());
+		assertEquals(10, EventCodec.encode(event).length);
+	}
+
+	@Test
+	public void testStringsNotInTheTables() {
+		char[] longMessage = new char[1000];
+		Arrays.fill(longMessage, 'é');
+		Event event = new Event(1546300800123L, 3000, "TRACE", "application/vnd.rest+json", "/other/path", "limit=10&after=5",
+				"::1", 500, new String(longMessage));
+		Event decoded = roundTrip(event);
+
+		assertEvent(event, decoded);
+		assertEquals("/other/path?limit=10&after=5", decoded.getResourceURI());
+	}
+
+	@Test
+	public void testLongestPathPrefix() {
+		for (String path : new String[] { "/customers", "/customers/", "/customers/batch", "/customers/export", "/customers/123",
+				"/admin/hot-customers", "/hello" }) {
+			Event event = new Event(1, 1, "GET", null, path, null, null, 200, null);
+			assertEquals(path, roundTrip(event).getResourcePath());
+		}
+		// /customers/export is sent as its code and an empty rest, 2 of the 12 bytes.
+		Event event = new Event(1, 1, "GET", null, "/customers/export", null, null, 200, null);
+		assertEquals(12, EventCodec.encode(event).length);
+	}
+
+	@Test
+	public void testVarint() {
+		for (long value : new long[] { 0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, Long.MAX_VALUE, -1 }) {
+			ByteBuffer buffer = ByteBuffer.allocate(10);
+			EventCodec.putVarint(buffer, value);
+			buffer.flip();
+			assertEquals(value, EventCodec.getVarint(buffer));
+			assertEquals(0, buffer.remaining());
+		}
+	}
+
+	@Test
+	public void testEventsInOneBuffer() {
+		Event first = new Event(1, 2, "POST", "application/xml", "/customers", null, "10.0.0.1", 201, null);
+		Event second = new Event(3, 4, "DELETE", null, "/customers/7", null, "10.0.0.2", 404, "Customer not found");
+		ByteBuffer buffer = ByteBuffer.allocate(256);
+		EventCodec.encode(first, buffer);
+		EventCodec.encode(second, buffer);
+		buffer.flip();
+
+		assertEvent(first, EventCodec.decode(buffer));
+		assertEvent(second, EventCodec.decode(buffer));
+		assertEquals(0, buffer.remaining());
+	}
+
+	@Test
+	public void testEnvelope() {
+		Event first = new Event(1, 2, "POST", "application/xml", "/customers", null, "10.0.0.1", 201, null);
+		Event second = new Event(3, 4, "DELETE", null, "/customers/7", null, "10.0.0.2", 404, "Customer not found");
+		byte[] envelope = EventCodec.encode(Arrays.asList(first, second));
+
+		assertEquals(EventCodec.encode(first).length + EventCodec.encode(second).length, envelope.length);
+		List<Event> events = EventCodec.decodeAll(ByteBuffer.wrap(envelope));
+		assertEquals(2, events.size());
+		assertEvent(first, events.get(0));
+		assertEvent(second, events.get(1));
+
+		// A message of one event is an envelope of one.
+		assertEquals(1, EventCodec.decodeAll(ByteBuffer.wrap(EventCodec.encode(first))).size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownVersion() {
+		byte[] bytes = EventCodec.encode(new Event(0, 0, null, null, null, null, null, 0, null));
+		bytes[0] = EventCodec.VERSION + 1;
+		EventCodec.decode(bytes);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownCode() {
+		byte[] bytes = EventCodec.encode(new Event(0, 0, "GET", null, null, null, null, 0, null));
+		// The method code after the version, start time, duration and status.
+		bytes[4] = 100;
+		EventCodec.decode(bytes);
+	}
+}
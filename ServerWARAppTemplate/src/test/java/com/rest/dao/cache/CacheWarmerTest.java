@@ -0,0 +1,172 @@
+package com.rest.dao.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.rest.domain.Customer;
+
+public class CacheWarmerTest {
+
+	private static final int CUSTOMERS = 2500;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private JdbcDataSource dataSource;
+	private CacheWrapper<Integer, Customer> customerCache;
+
+	@Before
+	public void setUp() throws SQLException {
+		dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:CacheWarmerTest;DB_CLOSE_DELAY=-1");
+
+		try (Connection conn = dataSource.getConnection(); Statement statement = conn.createStatement()) {
+			statement.execute("CREATE TABLE Customers (id INT AUTO_INCREMENT PRIMARY KEY, first_name VARCHAR(45), "
+					+ "last_name VARCHAR(45), email VARCHAR(100), version INT DEFAULT 0)");
+			try (PreparedStatement insert = conn.prepareStatement("INSERT INTO Customers (first_name, last_name, email) VALUES (?, ?, ?)")) {
+				for (int i = 1; i <= CUSTOMERS; i++) {
+					insert.setString(1, "Jim");
+					insert.setString(2, "Smith");
+					insert.setString(3, "jim" + i + "@example.com");
+					insert.addBatch();
+				}
+				insert.executeBatch();
+			}
+		}
+
+		customerCache = new CaffeineCacheWrapper<>("maximumSize=10000");
+	}
+
+	@After
+	public void tearDown() throws SQLException {
+		try (Connection conn = dataSource.getConnection(); Statement statement = conn.createStatement()) {
+			statement.execute("DROP TABLE Customers");
+		}
+	}
+
+	@Test
+	public void testLoadsLastIdRange() throws InterruptedException {
+		CacheWarmer warmer = new CacheWarmer(dataSource, customerCache, 1500, 3, 10000);
+		warmer.warmUp();
+
+		assertTrue(warmer.isDone());
+		assertEquals(1500, warmer.getTarget());
+		assertEquals(1500, warmer.getLoaded());
+		assertEquals(0, warmer.getRemainingChunks());
+		assertFalse(customerCache.containsKey(CUSTOMERS - 1500));
+		assertTrue(customerCache.containsKey(CUSTOMERS - 1500 + 1));
+		assertEquals("jim" + CUSTOMERS + "@example.com", customerCache.get(CUSTOMERS).getEmail());
+	}
+
+	@Test
+	public void testLoadsHotKeys() throws Exception {
+		File hotKeys = folder.newFile("hot-customers.txt");
+		Files.write(hotKeys.toPath(), Arrays.asList("7", "3", "", "2000", "999999"));
+
+		CacheWarmer warmer = new CacheWarmer(dataSource, customerCache, 1000, 2, 10000);
+		warmer.setHotKeysFile(hotKeys.getPath());
+		warmer.warmUp();
+
+		assertEquals(4, warmer.getTarget());
+		// There is no customer 999999.
+		assertEquals(3, warmer.getLoaded());
+		assertTrue(customerCache.containsKey(3));
+		assertTrue(customerCache.containsKey(7));
+		assertTrue(customerCache.containsKey(2000));
+		assertFalse(customerCache.containsKey(CUSTOMERS));
+	}
+
+	@Test
+	public void testKeepsCachedCustomers() throws InterruptedException {
+		Customer cached = new Customer("Jane", "Doe", "jane@example.com");
+		cached.setId(CUSTOMERS);
+		customerCache.put(CUSTOMERS, cached);
+
+		CacheWarmer warmer = new CacheWarmer(dataSource, customerCache, 10, 1, 10000);
+		warmer.warmUp();
+
+		assertEquals("jane@example.com", customerCache.get(CUSTOMERS).getEmail());
+		// The cached customer is not counted as loaded.
+		assertEquals(9, warmer.getLoaded());
+		assertEquals(1, warmer.getCached());
+	}
+
+	@Test
+	public void testSkipsCachedChunks() throws Exception {
+		for (int id = CUSTOMERS - 9; id <= CUSTOMERS; id++) {
+			customerCache.put(id, new Customer("Jane", "Doe", "jane" + id + "@example.com"));
+		}
+		// The cached customers are not queried, the table would fail the query.
+		try (Connection conn = dataSource.getConnection(); Statement statement = conn.createStatement()) {
+			statement.execute("ALTER TABLE Customers RENAME TO Customers_Renamed");
+		}
+
+		CacheWarmer warmer = new CacheWarmer(dataSource, customerCache, 10, 1, 10000);
+		try {
+			warmer.setHotKeysFile(writeHotKeys(CUSTOMERS - 9, CUSTOMERS));
+			warmer.warmUp();
+		} finally {
+			try (Connection conn = dataSource.getConnection(); Statement statement = conn.createStatement()) {
+				statement.execute("ALTER TABLE Customers_Renamed RENAME TO Customers");
+			}
+		}
+
+		assertEquals(0, warmer.getLoaded());
+		assertEquals(10, warmer.getCached());
+		assertEquals(0, warmer.getRemainingChunks());
+	}
+
+	private String writeHotKeys(int fromId, int toId) throws Exception {
+		File hotKeys = folder.newFile("hot-customers.txt");
+		Files.write(hotKeys.toPath(), IntStream.rangeClosed(fromId, toId).mapToObj(Integer::toString).collect(Collectors.toList()));
+		return hotKeys.getPath();
+	}
+
+	@Test
+	public void testDatabaseErrorSkipsWarmUp() throws Exception {
+		try (Connection conn = dataSource.getConnection(); Statement statement = conn.createStatement()) {
+			statement.execute("ALTER TABLE Customers RENAME TO Customers_Renamed");
+		}
+
+		CacheWarmer warmer = new CacheWarmer(dataSource, customerCache, 10, 1, 10000);
+		try {
+			warmer.warmUp();
+		} finally {
+			try (Connection conn = dataSource.getConnection(); Statement statement = conn.createStatement()) {
+				statement.execute("ALTER TABLE Customers_Renamed RENAME TO Customers");
+			}
+		}
+
+		assertTrue(warmer.isDone());
+		assertEquals(0, warmer.getTarget());
+		assertEquals(0, warmer.getLoaded());
+	}
+
+	@Test
+	public void testSkipped() throws InterruptedException {
+		CacheWarmer warmer = new CacheWarmer(dataSource, customerCache, 0, 1, 10000);
+		warmer.warmUp();
+
+		assertTrue(warmer.isDone());
+		assertEquals(0, warmer.getLoaded());
+		assertFalse(customerCache.containsKey(CUSTOMERS));
+	}
+}
@@ -0,0 +1,57 @@
+package com.rest.dao.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class CaffeineCacheWrapperTest {
+
+	private final CaffeineCacheWrapper<Integer, String> cache = new CaffeineCacheWrapper<>("maximumSize=100,expireAfterWrite=2m");
+
+	@Test
+	public void testGetWithLoader() {
+		AtomicInteger loads = new AtomicInteger();
+
+		// Loaded on a miss and cached.
+		assertEquals("value1", cache.get(1, key -> "value" + loads.incrementAndGet()));
+		assertEquals("value1", cache.get(1, key -> "value" + loads.incrementAndGet()));
+		assertEquals(1, loads.get());
+
+		// Nothing is cached when there is nothing to load.
+		assertNull(cache.get(2, key -> null));
+		assertFalse(cache.containsKey(2));
+	}
+
+	@Test
+	public void testPutIfAbsent() {
+		assertTrue(cache.putIfAbsent(1, "value1"));
+		assertFalse(cache.putIfAbsent(1, "value2"));
+		assertEquals("value1", cache.get(1));
+	}
+
+	@Test
+	public void testBulkOperations() {
+		cache.put(1, "value1");
+		cache.put(2, "value2");
+
+		// Keys that are not cached are left out.
+		Map<Integer, String> values = cache.getAll(new HashSet<>(Arrays.asList(1, 2, 3)));
+		assertEquals(2, values.size());
+		assertEquals("value2", values.get(2));
+
+		cache.removeAll(new HashSet<>(Arrays.asList(1, 3)));
+		assertFalse(cache.containsKey(1));
+		assertTrue(cache.containsKey(2));
+
+		cache.clear();
+		assertFalse(cache.containsKey(2));
+	}
+}
@@ -0,0 +1,63 @@
+package com.rest.dao.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+
+import org.openjdk.jol.info.GraphLayout;
+
+import com.rest.domain.Customer;
+
+/**
+ * Measures with JOL the heap each cached customer costs in the cache, not counting the customer itself, for
+ * a cache of a million customers. Run it with:
+ *
+ * mvn test-compile exec:java -Dexec.mainClass=com.rest.dao.cache.CustomerCacheFootprint -Dexec.classpathScope=test
+ *
+ * Give it a heap of a few GB, MAVEN_OPTS=-Xmx4g.
+ */
+public class CustomerCacheFootprint {
+
+	private static final int CUSTOMERS = 1000000;
+
+	public static void main(String[] args) {
+		Customer[] customers = new Customer[CUSTOMERS];
+		for (int id = 1; id <= CUSTOMERS; id++) {
+			Customer customer = new Customer("First" + id, "Last" + id, "customer" + id + "@yahoo.com");
+			customer.setId(id);
+			customers[id - 1] = customer;
+		}
+		GraphLayout customersLayout = GraphLayout.parseInstance((Object) customers);
+
+		IntMapCacheWrapper<Customer> intMapCache = new IntMapCacheWrapper<>(CUSTOMERS, 120000);
+		for (Customer customer : customers) {
+			intMapCache.put(customer.getId(), customer);
+		}
+		print("IntMapCacheWrapper", GraphLayout.parseInstance(intMapCache), customersLayout);
+
+		ConcurrentHashMap<Integer, Customer> map = new ConcurrentHashMap<>(CUSTOMERS);
+		for (Customer customer : customers) {
+			map.put(customer.getId(), customer);
+		}
+		print("ConcurrentHashMap", GraphLayout.parseInstance(map), customersLayout);
+		map = null;
+
+		// Stored by reference as in cache/ehcache.xml.
+		CacheManager cacheManager = Caching.getCachingProvider().getCacheManager();
+		javax.cache.Cache<Integer, Customer> jCache = cacheManager.createCache("footprint",
+				new MutableConfiguration<Integer, Customer>().setStoreByValue(false));
+		for (Customer customer : customers) {
+			jCache.put(customer.getId(), customer);
+		}
+		print("Ehcache JCache", GraphLayout.parseInstance(jCache), customersLayout);
+		cacheManager.close();
+	}
+
+	private static void print(String name, GraphLayout cacheLayout, GraphLayout customersLayout) {
+		// Only the objects of the cache, not the customers.
+		long cacheBytes = cacheLayout.subtract(customersLayout).totalSize();
+		System.out.printf("%-20s %,d bytes per customer%n", name, cacheBytes / CUSTOMERS);
+	}
+}
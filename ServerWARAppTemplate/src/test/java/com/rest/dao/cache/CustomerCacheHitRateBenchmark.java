@@ -0,0 +1,145 @@
+package com.rest.dao.cache;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import com.rest.domain.Customer;
+
+/**
+ * Replays a trace of GET /customers/{id} against the customer cache of Ehcache and of Caffeine, both limited to
+ * 1000 customers, and prints the hit rate and the throughput of each. Run it with:
+ *
+ * mvn test-compile exec:java -Dexec.mainClass=com.rest.dao.cache.CustomerCacheHitRateBenchmark -Dexec.classpathScope=test -Dexec.args=trace.txt
+ *
+ * The trace has the id of a customer per line, for example taken from the access log with:
+ *
+ * grep -o 'GET /rest/customers/[0-9]*' access.log | grep -o '[0-9]*$' > trace.txt
+ *
+ * Without a trace the ids are drawn from a Zipf distribution. Every SCAN_INTERVAL reads a page of SCAN_SIZE
+ * customers is cached, as GET /customers does, to show how the scans evict the hot customers.
+ */
+public class CustomerCacheHitRateBenchmark {
+
+	private static final int CUSTOMERS = 100000;
+	private static final int READS = 2000000;
+	private static final double ZIPF_EXPONENT = 0.9;
+	private static final int SCAN_INTERVAL = 5000;
+	private static final int SCAN_SIZE = 1000;
+	private static final int THREADS = 8;
+
+	public static void main(String[] args) throws Exception {
+		int[] trace = args.length > 0 ? readTrace(args[0]) : zipfTrace();
+
+		// The persistent caches of cache/ehcache.xml are kept apart from those of the application.
+		System.setProperty(PersistentCacheStamp.DIRECTORY_PROPERTY, "target/cache");
+		CacheManager cacheManager = Caching.getCachingProvider().getCacheManager(
+				CustomerCacheHitRateBenchmark.class.getResource("/cache/ehcache.xml").toURI(),
+				CustomerCacheHitRateBenchmark.class.getClassLoader());
+
+		run("ehcache", trace, () -> {
+			JCacheWrapper<Integer, Customer> cache = new JCacheWrapper<>(Customer.class.getName(), cacheManager, Integer.class, Customer.class);
+			cache.clear();
+			return cache;
+		});
+		run("caffeine", trace, () -> new CaffeineCacheWrapper<>("maximumSize=1000,expireAfterWrite=2m"));
+
+		cacheManager.close();
+	}
+
+	private static void run(String name, int[] trace, Supplier<CacheWrapper<Integer, Customer>> cacheSupplier)
+			throws Exception {
+
+		// Hit rate, the trace is replayed in order.
+		CacheWrapper<Integer, Customer> cache = cacheSupplier.get();
+		long hits = 0;
+		for (int read = 0; read < trace.length; read++) {
+			if (replay(cache, trace, read)) {
+				hits++;
+			}
+		}
+
+		// Throughput, each thread replays the trace from another offset.
+		cache = cacheSupplier.get();
+		CacheWrapper<Integer, Customer> threadsCache = cache;
+		CountDownLatch done = new CountDownLatch(THREADS);
+		ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+		long start = System.nanoTime();
+		for (int thread = 0; thread < THREADS; thread++) {
+			int offset = thread * trace.length / THREADS;
+			threads.execute(() -> {
+				for (int read = 0; read < trace.length; read++) {
+					replay(threadsCache, trace, (offset + read) % trace.length);
+				}
+				done.countDown();
+			});
+		}
+		done.await();
+		long elapsedNanos = System.nanoTime() - start;
+		threads.shutdown();
+
+		System.out.printf("%-9s hit rate: %5.1f%%  throughput: %,d reads/s%n", name, 100.0 * hits / trace.length,
+				(long) trace.length * THREADS * 1000000000L / elapsedNanos);
+	}
+
+	private static boolean replay(CacheWrapper<Integer, Customer> cache, int[] trace, int read) {
+		if (read % SCAN_INTERVAL == SCAN_INTERVAL - 1) {
+			int after = (read / SCAN_INTERVAL * SCAN_SIZE) % CUSTOMERS;
+			for (int id = after + 1; id <= after + SCAN_SIZE; id++) {
+				cache.putIfAbsent(id, customer(id));
+			}
+		}
+
+		int id = trace[read];
+		if (cache.get(id) != null) {
+			return true;
+		}
+		cache.put(id, customer(id));
+		return false;
+	}
+
+	private static Customer customer(int id) {
+		Customer customer = new Customer("First" + id, "Last" + id, "customer" + id + "@yahoo.com");
+		customer.setId(id);
+		return customer;
+	}
+
+	private static int[] readTrace(String file) throws Exception {
+		return Files.lines(Paths.get(file)).map(String::trim).filter(line -> !line.isEmpty())
+				.mapToInt(Integer::parseInt).toArray();
+	}
+
+	private static int[] zipfTrace() {
+		Random random = new Random(42);
+
+		// The hot customers are spread over the ids rather than being the first ones.
+		List<Integer> ids = IntStream.rangeClosed(1, CUSTOMERS).boxed().collect(Collectors.toList());
+		Collections.shuffle(ids, random);
+
+		double[] cumulative = new double[CUSTOMERS];
+		double sum = 0;
+		for (int rank = 0; rank < CUSTOMERS; rank++) {
+			sum += 1 / Math.pow(rank + 1, ZIPF_EXPONENT);
+			cumulative[rank] = sum;
+		}
+
+		int[] trace = new int[READS];
+		for (int read = 0; read < READS; read++) {
+			int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+			trace[read] = ids.get(rank < 0 ? -rank - 1 : rank);
+		}
+		return trace;
+	}
+}
@@ -0,0 +1,39 @@
+package com.rest.dao.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.rest.dao.cache.CustomerInvalidation.Operation;
+
+public class CustomerInvalidationTest {
+
+	@Test
+	public void testEncodeDecode() {
+		List<CustomerInvalidation> invalidations = Arrays.asList(
+				new CustomerInvalidation(Operation.CREATE, 1, 0),
+				new CustomerInvalidation(Operation.UPDATE, 2, 7),
+				new CustomerInvalidation(Operation.DELETE, Integer.MAX_VALUE, null));
+
+		byte[] bytes = CustomerInvalidation.encode(invalidations);
+		assertEquals(4 + 3 * 9, bytes.length);
+
+		List<CustomerInvalidation> decoded = CustomerInvalidation.decode(bytes);
+		assertEquals(3, decoded.size());
+		for (int i = 0; i < invalidations.size(); i++) {
+			assertEquals(invalidations.get(i).getOperation(), decoded.get(i).getOperation());
+			assertEquals(invalidations.get(i).getId(), decoded.get(i).getId());
+			assertEquals(invalidations.get(i).getVersion(), decoded.get(i).getVersion());
+		}
+		assertEquals(CustomerInvalidation.NO_VERSION, decoded.get(2).getVersion());
+	}
+
+	@Test
+	public void testEncodeDecodeEmpty() {
+		assertEquals(0, CustomerInvalidation.decode(CustomerInvalidation.encode(Collections.emptyList())).size());
+	}
+}
@@ -0,0 +1,51 @@
+package com.rest.dao.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.rest.domain.Customer;
+
+public class CustomerSerializerTest {
+
+	private final CustomerSerializer serializer = new CustomerSerializer(getClass().getClassLoader());
+
+	@Test
+	public void testSerializeAndRead() {
+		Customer customer = new Customer("Nikola", "Vujasin", "nikola_vujasin@yahoo.com");
+		customer.setId(1);
+		customer.setVersion(3);
+
+		ByteBuffer binary = serializer.serialize(customer);
+		// The id, the version and the three strings with their lengths.
+		assertEquals(4 + 4 + 2 + 6 + 2 + 7 + 2 + 24, binary.remaining());
+
+		Customer read = serializer.read(binary.duplicate());
+		assertEquals(1, read.getId());
+		assertEquals(Integer.valueOf(3), read.getVersion());
+		assertEquals("Nikola", read.getFirstName());
+		assertEquals("Vujasin", read.getLastName());
+		assertEquals("nikola_vujasin@yahoo.com", read.getEmail());
+
+		assertTrue(serializer.equals(customer, binary.duplicate()));
+		customer.setVersion(4);
+		assertFalse(serializer.equals(customer, binary.duplicate()));
+	}
+
+	@Test
+	public void testSerializeWithoutVersion() {
+		// Not ASCII, the lengths are in bytes.
+		Customer customer = new Customer("Đorđe", "Šćepanović", "djordje@yahoo.com");
+		customer.setId(2);
+
+		Customer read = serializer.read(serializer.serialize(customer));
+		assertNull(read.getVersion());
+		assertEquals("Đorđe", read.getFirstName());
+		assertEquals("Šćepanović", read.getLastName());
+	}
+}
@@ -0,0 +1,55 @@
+package com.rest.dao.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.rest.domain.Customer;
+
+/**
+ * Opens the caches of the application, cache/ehcache.xml, the tests use cache/ehcache-test.xml.
+ */
+public class EhcacheConfigurationTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private CacheManager cacheManager;
+
+	@Before
+	public void setUp() throws Exception {
+		System.setProperty(PersistentCacheStamp.DIRECTORY_PROPERTY, folder.getRoot().getPath());
+		cacheManager = Caching.getCachingProvider().getCacheManager(
+				EhcacheConfigurationTest.class.getResource("/cache/ehcache.xml").toURI(),
+				EhcacheConfigurationTest.class.getClassLoader());
+	}
+
+	@After
+	public void tearDown() {
+		cacheManager.close();
+		System.clearProperty(PersistentCacheStamp.DIRECTORY_PROPERTY);
+	}
+
+	@Test
+	public void testCachesAreOpened() {
+		assertNotNull(cacheManager.getCache("com.rest.domain.Customer", Integer.class, Customer.class));
+		assertNotNull(cacheManager.getCache("com.rest.domain.Customer.pinned", Integer.class, Customer.class));
+		assertNotNull(cacheManager.getCache("com.rest.domain.Customer.email", String.class, Integer.class));
+		assertNotNull(cacheManager.getCache("com.rest.domain.Customer.missing", Integer.class, Boolean.class));
+
+		// The off-heap and disk tiers serialize the customers.
+		Customer customer = new Customer("Jane", "Doe", "jane@example.com");
+		customer.setId(1);
+		JCacheWrapper<Integer, Customer> offHeap = new JCacheWrapper<>("com.rest.domain.Customer.offheap", cacheManager, Integer.class, Customer.class);
+		offHeap.put(1, customer);
+		assertEquals("jane@example.com", offHeap.get(1).getEmail());
+	}
+}
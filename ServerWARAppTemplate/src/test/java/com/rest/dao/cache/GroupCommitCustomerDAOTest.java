@@ -0,0 +1,176 @@
+package com.rest.dao.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.springframework.dao.DuplicateKeyException;
+
+import com.rest.dao.CustomerDAO;
+import com.rest.domain.Customer;
+
+public class GroupCommitCustomerDAOTest {
+
+	private static final int CALLERS = 5;
+
+	@Mock // Mock the DAO that is decorated.
+	private CustomerDAO customerDAO;
+
+	@Rule // Create the mocks based on the @Mock annotation
+	public MockitoRule rule = MockitoJUnit.rule();
+
+	private final AtomicInteger ids = new AtomicInteger();
+	private ExecutorService callers;
+	private GroupCommitCustomerDAO groupCommitDAO;
+
+	@Before
+	public void setUp() {
+		callers = Executors.newFixedThreadPool(CALLERS);
+		// One writer that waits up to a second to fill a batch of all the callers.
+		groupCommitDAO = new GroupCommitCustomerDAO(customerDAO, CALLERS, 1000000, 1);
+
+		when(customerDAO.createCustomers(anyList())).thenAnswer(invocation -> {
+			List<Customer> customers = invocation.getArgument(0);
+			customers.forEach(customer -> customer.setId(ids.incrementAndGet()));
+			return customers;
+		});
+		when(customerDAO.createCustomer(any(Customer.class))).thenAnswer(invocation -> {
+			Customer customer = invocation.getArgument(0);
+			if (customer.getEmail().equals("taken@example.com")) {
+				throw new DuplicateKeyException("The email is already taken");
+			}
+			customer.setId(ids.incrementAndGet());
+			return customer;
+		});
+	}
+
+	@After
+	public void tearDown() throws InterruptedException {
+		callers.shutdownNow();
+		groupCommitDAO.close();
+	}
+
+	private List<Future<Customer>> create(String... emails) {
+		List<Future<Customer>> results = new ArrayList<>();
+		for (String email : emails) {
+			results.add(callers.submit(() -> groupCommitDAO.createCustomer(new Customer("Jim", "Smith", email))));
+		}
+		return results;
+	}
+
+	@Test
+	public void testConcurrentCreatesAreBatched() throws Exception {
+		List<Future<Customer>> results = create("a@example.com", "b@example.com", "c@example.com", "d@example.com", "e@example.com");
+
+		Set<Integer> createdIds = new HashSet<>();
+		for (Future<Customer> result : results) {
+			createdIds.add(result.get().getId());
+		}
+		assertEquals(CALLERS, createdIds.size());
+		assertTrue(createdIds.stream().allMatch(id -> id > 0));
+
+		verify(customerDAO, times(1)).createCustomers(anyList());
+		assertEquals(1, groupCommitDAO.getBatches());
+		assertEquals(CALLERS, groupCommitDAO.getRows());
+		assertEquals(CALLERS, groupCommitDAO.getAverageBatchSize(), 0.0);
+	}
+
+	@Test
+	public void testFailedBatchOnlyFailsItsCaller() throws Exception {
+		when(customerDAO.createCustomers(anyList())).thenThrow(new DuplicateKeyException("The email is already taken"));
+
+		List<Future<Customer>> results = create("a@example.com", "b@example.com", "taken@example.com", "d@example.com", "e@example.com");
+
+		int created = 0;
+		for (Future<Customer> result : results) {
+			try {
+				assertTrue(result.get().getId() > 0);
+				created++;
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof DuplicateKeyException);
+			}
+		}
+		assertEquals(CALLERS - 1, created);
+		assertEquals(1, groupCommitDAO.getFailedBatches());
+	}
+
+	@Test
+	public void testErrorFailsTheWholeBatch() throws Exception {
+		when(customerDAO.createCustomers(anyList())).thenThrow(new OutOfMemoryError("Java heap space"));
+
+		List<Future<Customer>> results = create("a@example.com", "b@example.com", "c@example.com", "d@example.com", "e@example.com");
+
+		for (Future<Customer> result : results) {
+			try {
+				result.get(10, TimeUnit.SECONDS);
+				fail("The batch failed");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof OutOfMemoryError);
+			}
+		}
+		assertEquals(1, groupCommitDAO.getFailedBatches());
+
+		// The writer is still running.
+		when(customerDAO.createCustomer(any(Customer.class))).thenAnswer(invocation -> invocation.getArgument(0));
+		assertEquals("f@example.com", create("f@example.com").get(0).get(10, TimeUnit.SECONDS).getEmail());
+	}
+
+	@Test
+	public void testCloseFinishesTheBatchBeingWritten() throws Exception {
+		CountDownLatch writing = new CountDownLatch(1);
+		when(customerDAO.createCustomers(anyList())).thenAnswer(invocation -> {
+			writing.countDown();
+			// Close while the batch is being written, the writer must not be interrupted.
+			Thread.sleep(200);
+			List<Customer> customers = invocation.getArgument(0);
+			customers.forEach(customer -> customer.setId(ids.incrementAndGet()));
+			return customers;
+		});
+
+		List<Future<Customer>> results = create("a@example.com", "b@example.com", "c@example.com", "d@example.com", "e@example.com");
+		assertTrue(writing.await(10, TimeUnit.SECONDS));
+		groupCommitDAO.close();
+
+		for (Future<Customer> result : results) {
+			assertTrue(result.get(10, TimeUnit.SECONDS).getId() > 0);
+		}
+		assertEquals(0, groupCommitDAO.getFailedBatches());
+	}
+
+	@Test
+	public void testCreateAfterCloseIsDirect() throws Exception {
+		groupCommitDAO.close();
+		Customer customer = groupCommitDAO.createCustomer(new Customer("Jim", "Smith", "a@example.com"));
+		assertTrue(customer.getId() > 0);
+		try {
+			groupCommitDAO.createCustomer(new Customer("Jim", "Smith", "taken@example.com"));
+			fail("The email is taken");
+		} catch (DuplicateKeyException e) {
+			// Expected.
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package com.rest.dao.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import com.rest.dao.CustomerDAO;
+import com.rest.domain.Customer;
+
+public class HotKeyCustomerDAOTest {
+
+	@Mock // Mock the DAO that is decorated.
+	private CustomerDAO customerDAO;
+
+	@Rule // Create the mocks based on the @Mock annotation
+	public MockitoRule rule = MockitoJUnit.rule();
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private HotKeySketch hotKeys;
+	private CacheWrapper<Integer, Customer> customerPinnedCache;
+	private HotKeyCustomerDAO hotKeyDAO;
+
+	@Before
+	public void setUp() {
+		hotKeys = new HotKeySketch(1024, 1, 10);
+		customerPinnedCache = new CaffeineCacheWrapper<>("maximumSize=100");
+		// Refreshed by the tests.
+		hotKeyDAO = new HotKeyCustomerDAO(customerDAO, hotKeys, customerPinnedCache, 2, 3600000);
+	}
+
+	@After
+	public void tearDown() {
+		hotKeyDAO.close();
+	}
+
+	private static Customer customer(int id) {
+		Customer customer = new Customer("Jim", "Smith", "jim" + id + "@example.com");
+		customer.setId(id);
+		return customer;
+	}
+
+	@Test
+	public void testHotCustomersArePinned() {
+		when(customerDAO.getCustomer(anyInt())).thenAnswer(invocation -> customer(invocation.<Integer>getArgument(0)));
+		when(customerDAO.getCustomers(anyCollection())).thenReturn(Arrays.asList(customer(1), customer(2)));
+
+		for (int i = 0; i < 10; i++) {
+			hotKeyDAO.getCustomer(1);
+			hotKeyDAO.getCustomer(2);
+		}
+		hotKeyDAO.getCustomer(3);
+		hotKeyDAO.refresh();
+
+		assertEquals(2, hotKeyDAO.getPinned());
+		assertTrue(customerPinnedCache.containsKey(1));
+		assertTrue(customerPinnedCache.containsKey(2));
+		assertFalse(customerPinnedCache.containsKey(3));
+
+		// The pinned customer is answered without the decorated DAO.
+		Customer pinned = customerPinnedCache.get(1);
+		assertSame(pinned, hotKeyDAO.getCustomer(1));
+		verify(customerDAO, times(10)).getCustomer(1);
+		assertEquals(1, hotKeyDAO.getPinnedHits());
+	}
+
+	@Test
+	public void testColdCustomersAreNotPinned() {
+		hotKeyDAO.getCustomer(1);
+		hotKeyDAO.refresh();
+
+		assertEquals(0, hotKeyDAO.getPinned());
+		verify(customerDAO, never()).getCustomers(anyCollection());
+	}
+
+	@Test
+	public void testUpdateUnpins() {
+		customerPinnedCache.put(1, customer(1));
+		hotKeyDAO.updateCustomer(1, customer(1));
+		assertFalse(customerPinnedCache.containsKey(1));
+
+		customerPinnedCache.put(2, customer(2));
+		hotKeyDAO.deleteCustomer(2);
+		assertFalse(customerPinnedCache.containsKey(2));
+	}
+
+	@Test
+	public void testUpdateDuringRefreshUnpins() {
+		// Customer 1 is updated after the refresh read it.
+		when(customerDAO.getCustomers(anyCollection())).thenAnswer(invocation -> {
+			hotKeyDAO.updateCustomer(1, customer(1));
+			return Arrays.asList(customer(1), customer(2));
+		});
+
+		for (int i = 0; i < 10; i++) {
+			hotKeyDAO.getCustomer(1);
+			hotKeyDAO.getCustomer(2);
+		}
+		hotKeyDAO.refresh();
+
+		assertFalse(customerPinnedCache.containsKey(1));
+		assertTrue(customerPinnedCache.containsKey(2));
+	}
+
+	@Test
+	public void testCloseWritesHotKeys() throws Exception {
+		File hotKeysFile = new File(folder.getRoot(), "hot-customers.txt");
+		hotKeyDAO.setHotKeysFile(hotKeysFile.getPath());
+		for (int i = 0; i < 3; i++) {
+			hotKeyDAO.getCustomer(5);
+		}
+		hotKeyDAO.getCustomer(6);
+		hotKeyDAO.close();
+
+		assertEquals(Arrays.asList("5", "6"), Files.readAllLines(hotKeysFile.toPath()));
+	}
+
+}
@@ -0,0 +1,59 @@
+package com.rest.dao.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class HotKeySketchTest {
+
+	@Test
+	public void testEstimateNeverUnderCounts() {
+		HotKeySketch sketch = new HotKeySketch(1 << 20, 1, 10);
+		for (int i = 0; i < 50; i++) {
+			sketch.record(7);
+		}
+		sketch.record(8);
+		assertTrue(sketch.estimate(7) >= 50);
+		assertTrue(sketch.estimate(8) >= 1);
+	}
+
+	@Test
+	public void testTopFindsHotIds() {
+		HotKeySketch sketch = new HotKeySketch(4096, 1, 10);
+		Random random = new Random(1);
+		for (int i = 0; i < 100000; i++) {
+			// Half the reads go to ids 1 to 5, the rest are spread over a million ids.
+			sketch.record(random.nextBoolean() ? 1 + random.nextInt(5) : 1000 + random.nextInt(1000000));
+		}
+
+		List<Map.Entry<Integer, Integer>> top = sketch.top(5);
+		assertEquals(5, top.size());
+		Set<Integer> topIds = top.stream().map(Map.Entry::getKey).collect(Collectors.toSet());
+		for (int id = 1; id <= 5; id++) {
+			assertTrue("Id " + id + " is not in the top " + top, topIds.contains(id));
+		}
+		// The hottest first.
+		assertTrue(top.get(0).getValue() >= top.get(4).getValue());
+	}
+
+	@Test
+	public void testAgingForgetsOldIds() {
+		HotKeySketch sketch = new HotKeySketch(64, 1, 1);
+		for (int i = 0; i < 60; i++) {
+			sketch.record(1);
+		}
+		// Id 2 becomes the hot one, the counters are halved every 64 reads.
+		for (int i = 0; i < 640; i++) {
+			sketch.record(2);
+		}
+		assertEquals(2, sketch.top(1).get(0).getKey().intValue());
+		assertTrue(sketch.estimate(1) < 60);
+	}
+}
@@ -0,0 +1,77 @@
+package com.rest.dao.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class IntMapCacheWrapperTest {
+
+	@Test
+	public void testGetWithLoader() {
+		IntMapCacheWrapper<String> cache = new IntMapCacheWrapper<>(100, 60000);
+		AtomicInteger loads = new AtomicInteger();
+
+		// Loaded on a miss and cached.
+		assertEquals("value1", cache.get(1, key -> "value" + loads.incrementAndGet()));
+		assertEquals("value1", cache.get(1, key -> "value" + loads.incrementAndGet()));
+		assertEquals(1, loads.get());
+
+		// Nothing is cached when there is nothing to load.
+		assertNull(cache.get(2, key -> null));
+		assertFalse(cache.containsKey(2));
+	}
+
+	@Test
+	public void testPutAndRemove() {
+		IntMapCacheWrapper<String> cache = new IntMapCacheWrapper<>(10000, 60000);
+
+		for (int key = 0; key < 5000; key++) {
+			cache.put(key, "value" + key);
+		}
+		assertFalse(cache.putIfAbsent(7, "other"));
+		assertEquals("value7", cache.get(7));
+
+		// Every other key is removed, the keys probed past them are still found.
+		for (int key = 0; key < 5000; key += 2) {
+			cache.remove(key);
+		}
+		for (int key = 0; key < 5000; key++) {
+			assertEquals(key % 2 == 0 ? null : "value" + key, cache.get(key));
+		}
+		assertEquals(2500, cache.getSize());
+
+		cache.clear();
+		assertEquals(0, cache.getSize());
+		assertNull(cache.get(Integer.valueOf(1)));
+	}
+
+	@Test
+	public void testRecentlyReadEntriesAreKept() {
+		IntMapCacheWrapper<String> cache = new IntMapCacheWrapper<>(2, 60000, 1);
+
+		cache.put(1, "value1");
+		cache.put(2, "value2");
+		cache.get(1);
+
+		// Customer 2 wasn't read since it was cached.
+		cache.put(3, "value3");
+		assertEquals(2, cache.getSize());
+		assertTrue(cache.containsKey(1));
+		assertFalse(cache.containsKey(2));
+		assertTrue(cache.containsKey(3));
+	}
+
+	@Test
+	public void testEntriesExpire() {
+		IntMapCacheWrapper<String> cache = new IntMapCacheWrapper<>(100, 0);
+
+		cache.put(1, "value1");
+		assertNull(cache.get(1));
+		assertEquals(0, cache.getSize());
+	}
+}
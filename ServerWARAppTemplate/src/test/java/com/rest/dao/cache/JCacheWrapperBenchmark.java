@@ -0,0 +1,112 @@
+package com.rest.dao.cache;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the reads and writes of a cache looked up in the cache manager on every operation, as JCacheWrapper
+ * used to, with the JCacheWrapper that looks it up once. Run it with 1, 4, 16 and 64 threads with:
+ *
+ * mvn test-compile exec:java -Dexec.mainClass=com.rest.dao.cache.JCacheWrapperBenchmark -Dexec.classpathScope=test
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JCacheWrapperBenchmark {
+
+	private static final String CACHE_NAME = "com.rest.dao.cache.JCacheWrapperBenchmark";
+	private static final int KEYS = 1000;
+
+	@Param({ "lookup", "resolved" })
+	public String wrapper;
+
+	private CacheManager cacheManager;
+	private CacheWrapper<Integer, String> cache;
+
+	@Setup
+	public void setUp() {
+		cacheManager = Caching.getCachingProvider().getCacheManager();
+		cacheManager.createCache(CACHE_NAME, new MutableConfiguration<Integer, String>().setTypes(Integer.class, String.class)
+				.setStoreByValue(false));
+		cache = "lookup".equals(wrapper) ? new LookupWrapper(CACHE_NAME, cacheManager)
+				: new JCacheWrapper<>(CACHE_NAME, cacheManager, Integer.class, String.class);
+		for (int key = 0; key < KEYS; key++) {
+			cache.put(key, "customer" + key);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		cacheManager.destroyCache(CACHE_NAME);
+	}
+
+	@Benchmark
+	public String get() {
+		return cache.get(ThreadLocalRandom.current().nextInt(KEYS));
+	}
+
+	@Benchmark
+	public String getWithLoader() {
+		return cache.get(ThreadLocalRandom.current().nextInt(KEYS), key -> "customer" + key);
+	}
+
+	@Benchmark
+	public void put() {
+		int key = ThreadLocalRandom.current().nextInt(KEYS);
+		cache.put(key, "customer" + key);
+	}
+
+	public static void main(String[] args) throws Exception {
+		for (int threads : new int[] { 1, 4, 16, 64 }) {
+			Options options = new OptionsBuilder()
+					.include(JCacheWrapperBenchmark.class.getSimpleName())
+					.threads(threads)
+					.build();
+			new Runner(options).run();
+		}
+	}
+
+	/**
+	 * The cache of every operation is looked up in the cache manager, as JCacheWrapper used to.
+	 */
+	private static final class LookupWrapper extends JCacheWrapper<Integer, String> {
+
+		private final String cacheName;
+		private final CacheManager cacheManager;
+
+		LookupWrapper(String cacheName, CacheManager cacheManager) {
+			super(cacheName, cacheManager, Integer.class, String.class);
+			this.cacheName = cacheName;
+			this.cacheManager = cacheManager;
+		}
+
+		@Override
+		public Cache<Integer, String> getCache() {
+			return cacheManager.getCache(cacheName, Integer.class, String.class);
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package com.rest.dao.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JCacheWrapperTest {
+
+	private static final String CACHE_NAME = "com.rest.dao.cache.JCacheWrapperTest";
+
+	private CacheManager cacheManager;
+	private JCacheWrapper<Integer, String> jCacheWrapper;
+
+	@Before
+	public void setUp() {
+		cacheManager = Caching.getCachingProvider().getCacheManager();
+		cacheManager.createCache(CACHE_NAME, new MutableConfiguration<Integer, String>().setTypes(Integer.class, String.class));
+		jCacheWrapper = new JCacheWrapper<>(CACHE_NAME, cacheManager, Integer.class, String.class);
+	}
+
+	@After
+	public void tearDown() {
+		Caching.getCachingProvider().getCacheManager().destroyCache(CACHE_NAME);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testMissingCache() {
+		new JCacheWrapper<>("com.rest.dao.cache.JCacheWrapperTest.missing", cacheManager, Integer.class, String.class);
+	}
+
+	@Test
+	public void testFirstLoadedValueIsKept() {
+		// A concurrent load caches its value while this one is loading.
+		assertEquals("first", jCacheWrapper.get(1, key -> {
+			jCacheWrapper.put(key, "first");
+			return "second";
+		}));
+		assertEquals("first", jCacheWrapper.get(1));
+
+		// Nothing is cached when there is nothing to load.
+		assertNull(jCacheWrapper.get(2, key -> null));
+		assertNull(jCacheWrapper.get(2));
+	}
+
+	@Test
+	public void testCacheIsRecreated() {
+		jCacheWrapper.put(1, "value1");
+
+		cacheManager.destroyCache(CACHE_NAME);
+		cacheManager.createCache(CACHE_NAME, new MutableConfiguration<Integer, String>().setTypes(Integer.class, String.class));
+
+		// The new cache is looked up.
+		assertNull(jCacheWrapper.get(1));
+		jCacheWrapper.put(1, "value1");
+		assertEquals("value1", cacheManager.getCache(CACHE_NAME, Integer.class, String.class).get(1));
+	}
+
+	@Test
+	public void testCacheManagerIsRecreated() {
+		cacheManager.close();
+
+		CacheManager recreated = Caching.getCachingProvider().getCacheManager();
+		recreated.createCache(CACHE_NAME, new MutableConfiguration<Integer, String>().setTypes(Integer.class, String.class));
+
+		// The cache is looked up in the cache manager of the same URI.
+		jCacheWrapper.put(1, "value1");
+		assertEquals("value1", recreated.getCache(CACHE_NAME, Integer.class, String.class).get(1));
+	}
+}
@@ -0,0 +1,96 @@
+package com.rest.dao.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import com.rest.dao.CustomerDAO;
+import com.rest.domain.Customer;
+
+public class NegativeCachingCustomerDAOTest {
+
+	private static final String CACHE_NAME = "com.rest.domain.Customer.missing.test";
+
+	@Mock // Mock the DAO that is decorated.
+	private CustomerDAO customerDAO;
+
+	@Rule // Create the mocks based on the @Mock annotation
+	public MockitoRule rule = MockitoJUnit.rule();
+
+	private CacheManager cacheManager;
+	private JCacheWrapper<Integer, Boolean> customerMissingCache;
+	private NegativeCachingCustomerDAO negativeCachingDAO;
+
+	@Before
+	public void setUp() {
+		cacheManager = Caching.getCachingProvider().getCacheManager();
+		cacheManager.createCache(CACHE_NAME, new MutableConfiguration<Integer, Boolean>().setTypes(Integer.class, Boolean.class));
+		customerMissingCache = new JCacheWrapper<>(CACHE_NAME, cacheManager, Integer.class, Boolean.class);
+		negativeCachingDAO = new NegativeCachingCustomerDAO(customerDAO, customerMissingCache);
+	}
+
+	@After
+	public void tearDown() {
+		cacheManager.destroyCache(CACHE_NAME);
+	}
+
+	@Test
+	public void testMissingCustomerIsCached() {
+		// There is no customer 3.
+		assertNull(negativeCachingDAO.getCustomer(3));
+		assertTrue(customerMissingCache.containsKey(3));
+
+		// The repeated request is answered from the cache.
+		assertNull(negativeCachingDAO.getCustomer(3));
+		verify(customerDAO, times(1)).getCustomer(3);
+
+		// Creating the customer removes its id.
+		Customer customer = new Customer("Luka", "Vujasin", "luka_vujasin@yahoo.com");
+		customer.setId(3);
+		when(customerDAO.createCustomer(customer)).thenReturn(customer);
+
+		negativeCachingDAO.createCustomer(customer);
+		assertFalse(customerMissingCache.containsKey(3));
+
+		// Deleting the customer adds its id.
+		negativeCachingDAO.deleteCustomer(3);
+		assertTrue(customerMissingCache.containsKey(3));
+		assertNull(negativeCachingDAO.getCustomer(3));
+		verify(customerDAO, times(1)).getCustomer(3);
+	}
+
+	@Test
+	public void testMissingCustomersByIdsAreCached() {
+		Customer customer = new Customer("Nick", "Vujasin", "nick_vujasin@yahoo.com");
+		customer.setId(1);
+
+		// There is no customer 3.
+		when(customerDAO.getCustomers(Arrays.asList(1, 3))).thenReturn(Arrays.asList(customer));
+		assertEquals(1, negativeCachingDAO.getCustomers(Arrays.asList(1, 3)).size());
+		assertTrue(customerMissingCache.containsKey(3));
+		assertFalse(customerMissingCache.containsKey(1));
+
+		// Customer 3 is no longer looked up.
+		when(customerDAO.getCustomers(Arrays.asList(1))).thenReturn(Arrays.asList(customer));
+		assertEquals(1, negativeCachingDAO.getCustomers(Arrays.asList(1, 3)).size());
+		verify(customerDAO, times(1)).getCustomers(Arrays.asList(1));
+	}
+}
@@ -0,0 +1,35 @@
+package com.rest.dao.cache;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PersistentCacheStampTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testCachesOfAnotherSchemaAreDropped() throws Exception {
+		File directory = new File(folder.getRoot(), "cache");
+		File cached = new File(directory, "customers/segment");
+
+		new PersistentCacheStamp(directory.getPath(), "1.0");
+		assertTrue(cached.getParentFile().mkdirs());
+		assertTrue(cached.createNewFile());
+
+		// The same schema, the caches are kept.
+		new PersistentCacheStamp(directory.getPath(), "1.0");
+		assertTrue(cached.exists());
+
+		// Another schema, the caches are dropped.
+		new PersistentCacheStamp(directory.getPath(), "1.1");
+		assertFalse(directory.exists());
+		assertTrue(new File(folder.getRoot(), "cache.stamp").exists());
+	}
+}
@@ -0,0 +1,72 @@
+package com.rest.dao.cache;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.rest.domain.Customer;
+
+public class PersistentCacheValidatorTest {
+
+	private static final String CACHE_NAME = "PersistentCacheValidatorTest";
+
+	private JdbcDataSource dataSource;
+	private CacheManager cacheManager;
+	private Cache<Integer, Customer> cache;
+
+	@Before
+	public void setUp() throws Exception {
+		dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:PersistentCacheValidatorTest;DB_CLOSE_DELAY=-1");
+		try (Connection conn = dataSource.getConnection(); Statement statement = conn.createStatement()) {
+			statement.execute("CREATE TABLE Customers (id INT PRIMARY KEY, version INT)");
+			statement.execute("INSERT INTO Customers (id, version) VALUES (1, 0), (2, 1)");
+		}
+
+		cacheManager = Caching.getCachingProvider().getCacheManager();
+		cache = cacheManager.createCache(CACHE_NAME, new MutableConfiguration<Integer, Customer>()
+				.setTypes(Integer.class, Customer.class).setStoreByValue(false));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		cacheManager.destroyCache(CACHE_NAME);
+		try (Connection conn = dataSource.getConnection(); Statement statement = conn.createStatement()) {
+			statement.execute("DROP TABLE Customers");
+		}
+	}
+
+	@Test
+	public void testStaleCustomersAreRemoved() {
+		cache.put(1, customer(1, 0));
+		// Updated while the node was down.
+		cache.put(2, customer(2, 0));
+		// Deleted while the node was down.
+		cache.put(3, customer(3, 0));
+
+		new PersistentCacheValidator(dataSource, cacheManager, CACHE_NAME).validate();
+
+		assertTrue(cache.containsKey(1));
+		assertFalse(cache.containsKey(2));
+		assertFalse(cache.containsKey(3));
+	}
+
+	private static Customer customer(int id, int version) {
+		Customer customer = new Customer("Nick", "Vujasin", "nick" + id + "@yahoo.com");
+		customer.setId(id);
+		customer.setVersion(version);
+		return customer;
+	}
+}
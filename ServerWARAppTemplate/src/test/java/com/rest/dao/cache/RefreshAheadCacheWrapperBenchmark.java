@@ -0,0 +1,119 @@
+package com.rest.dao.cache;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.expiry.CreatedExpiryPolicy;
+import javax.cache.expiry.Duration;
+
+/**
+ * Measures the read latency of a hot set of entries that are all put at the same time and so all expire
+ * at the same time, with and without refresh-ahead. Run it with:
+ *
+ * mvn test-compile exec:java -Dexec.mainClass=com.rest.dao.cache.RefreshAheadCacheWrapperBenchmark -Dexec.classpathScope=test
+ *
+ * Every load sleeps to stand in for the query. Without refresh-ahead every reader of an expired entry
+ * waits on a load, which shows in the p99 and the max of each expiry wave.
+ */
+public class RefreshAheadCacheWrapperBenchmark {
+
+	private static final int KEYS = 200;
+	private static final int READERS = 16;
+	private static final long TIME_TO_LIVE_MILLIS = 2000;
+	private static final long LOAD_MILLIS = 20;
+	private static final long RUN_MILLIS = 10000;
+	private static final long READ_INTERVAL_NANOS = 50000;
+
+	public static void main(String[] args) throws Exception {
+		CacheManager cacheManager = Caching.getCachingProvider().getCacheManager();
+
+		run("load on miss", cacheManager, jCacheWrapper -> jCacheWrapper);
+
+		ExecutorService refreshExecutor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(1000));
+		run("refresh ahead", cacheManager,
+				jCacheWrapper -> new RefreshAheadCacheWrapper<>(jCacheWrapper, TIME_TO_LIVE_MILLIS, 100, KEYS, refreshExecutor));
+		refreshExecutor.shutdown();
+
+		cacheManager.close();
+	}
+
+	private static void run(String name, CacheManager cacheManager,
+			Function<CacheWrapper<Integer, String>, CacheWrapper<Integer, String>> wrap) throws Exception {
+
+		String cacheName = "benchmark-" + name.replace(' ', '-');
+		cacheManager.createCache(cacheName, new MutableConfiguration<Integer, String>().setTypes(Integer.class, String.class)
+				.setExpiryPolicyFactory(CreatedExpiryPolicy.factoryOf(new Duration(TimeUnit.MILLISECONDS, TIME_TO_LIVE_MILLIS))));
+		CacheWrapper<Integer, String> cache = wrap.apply(new JCacheWrapper<>(cacheName, cacheManager, Integer.class, String.class));
+
+		Function<Integer, String> loader = key -> {
+			try {
+				Thread.sleep(LOAD_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return "customer" + key;
+		};
+
+		// Put the whole hot set at once so it expires at once.
+		for (int key = 0; key < KEYS; key++) {
+			cache.put(key, loader.apply(key));
+		}
+
+		long[][] latencies = new long[READERS][];
+		int[] counts = new int[READERS];
+		CountDownLatch done = new CountDownLatch(READERS);
+		ExecutorService readers = Executors.newFixedThreadPool(READERS);
+		long end = System.currentTimeMillis() + RUN_MILLIS;
+
+		for (int reader = 0; reader < READERS; reader++) {
+			int index = reader;
+			readers.execute(() -> {
+				long[] samples = new long[1 << 19];
+				int count = 0;
+				while (System.currentTimeMillis() < end && count < samples.length) {
+					int key = ThreadLocalRandom.current().nextInt(KEYS);
+					long start = System.nanoTime();
+					cache.get(key, loader);
+					samples[count++] = System.nanoTime() - start;
+					// Pace the readers so the run spans several expiry waves.
+					LockSupport.parkNanos(READ_INTERVAL_NANOS);
+				}
+				latencies[index] = samples;
+				counts[index] = count;
+				done.countDown();
+			});
+		}
+		done.await();
+		readers.shutdown();
+
+		int total = Arrays.stream(counts).sum();
+		long[] all = new long[total];
+		int offset = 0;
+		for (int reader = 0; reader < READERS; reader++) {
+			System.arraycopy(latencies[reader], 0, all, offset, counts[reader]);
+			offset += counts[reader];
+		}
+		Arrays.sort(all);
+
+		System.out.printf("%-14s reads: %,d  p50: %,d us  p99: %,d us  p99.9: %,d us  max: %,d us%n", name, total,
+				percentile(all, 50), percentile(all, 99), percentile(all, 99.9), all[all.length - 1] / 1000);
+
+		cacheManager.destroyCache(cacheName);
+	}
+
+	private static long percentile(long[] sorted, double percentile) {
+		return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile / 100 * sorted.length) - 1)] / 1000;
+	}
+}
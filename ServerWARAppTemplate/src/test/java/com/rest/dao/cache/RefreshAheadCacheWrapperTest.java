@@ -0,0 +1,119 @@
+package com.rest.dao.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RefreshAheadCacheWrapperTest {
+
+	private static final String CACHE_NAME = "com.rest.dao.cache.RefreshAheadCacheWrapperTest";
+
+	private CacheManager cacheManager;
+	private JCacheWrapper<Integer, String> jCacheWrapper;
+
+	@Before
+	public void setUp() {
+		cacheManager = Caching.getCachingProvider().getCacheManager();
+		cacheManager.createCache(CACHE_NAME, new MutableConfiguration<Integer, String>().setTypes(Integer.class, String.class));
+		jCacheWrapper = new JCacheWrapper<>(CACHE_NAME, cacheManager, Integer.class, String.class);
+	}
+
+	@After
+	public void tearDown() {
+		cacheManager.destroyCache(CACHE_NAME);
+	}
+
+	@Test
+	public void testEntryIsRefreshedAhead() {
+		// With a time to live of 0 every read is past the expiry so every read reloads,
+		// the reload runs on the calling thread.
+		RefreshAheadCacheWrapper<Integer, String> cache = new RefreshAheadCacheWrapper<>(jCacheWrapper, 0, 1.0, 16, Runnable::run);
+
+		AtomicInteger loads = new AtomicInteger();
+
+		// The entry is loaded on a miss.
+		assertEquals("value1", cache.get(1, key -> "value" + loads.incrementAndGet()));
+		assertEquals(1, loads.get());
+
+		// The reader is served the current value while the entry is reloaded.
+		assertEquals("value1", cache.get(1, key -> "value" + loads.incrementAndGet()));
+		assertEquals(2, loads.get());
+		assertEquals(1, cache.getRefreshes());
+
+		assertEquals("value2", cache.get(1));
+	}
+
+	@Test
+	public void testWriteDuringRefreshWins() {
+		List<Runnable> reloads = new ArrayList<>();
+		RefreshAheadCacheWrapper<Integer, String> cache = new RefreshAheadCacheWrapper<>(jCacheWrapper, 0, 1.0, 16, reloads::add);
+
+		cache.put(1, "value1");
+
+		// The reload is queued, the entry is updated before it runs.
+		cache.get(1, key -> "reloaded");
+		cache.put(1, "updated");
+		reloads.forEach(Runnable::run);
+
+		// The reload started before the update so it is dropped.
+		assertEquals("updated", cache.get(1));
+	}
+
+	@Test
+	public void testRemoveDuringRefreshWins() {
+		List<Runnable> reloads = new ArrayList<>();
+		RefreshAheadCacheWrapper<Integer, String> cache = new RefreshAheadCacheWrapper<>(jCacheWrapper, 0, 1.0, 16, reloads::add);
+
+		cache.put(1, "value1");
+
+		// The reload is queued, the entry is removed before it runs.
+		cache.get(1, key -> "reloaded");
+		cache.remove(1);
+		reloads.forEach(Runnable::run);
+
+		assertNull(cache.get(1));
+	}
+
+	@Test
+	public void testCollidingKeyIsNotRefreshed() {
+		List<Runnable> reloads = new ArrayList<>();
+		// A single slot, the keys take it from each other.
+		RefreshAheadCacheWrapper<Integer, String> cache = new RefreshAheadCacheWrapper<>(jCacheWrapper, 0, 1.0, 1, reloads::add);
+
+		cache.put(1, "value1");
+		cache.put(5, "value5");
+
+		// Key 1 lost its timing so it isn't reloaded early, it is still served.
+		assertEquals("value1", cache.get(1, key -> "reloaded"));
+		assertTrue(reloads.isEmpty());
+
+		assertEquals("value5", cache.get(5, key -> "reloaded5"));
+		assertEquals(1, reloads.size());
+	}
+
+	@Test
+	public void testRefreshIsSkippedWhenExecutorIsSaturated() {
+		RefreshAheadCacheWrapper<Integer, String> cache = new RefreshAheadCacheWrapper<>(jCacheWrapper, 0, 1.0, 16,
+				reload -> { throw new RejectedExecutionException(); });
+
+		cache.put(1, "value1");
+
+		// The current value is still served.
+		assertEquals("value1", cache.get(1, key -> "reloaded"));
+		assertEquals(1, cache.getSkippedRefreshes());
+		assertEquals(0, cache.getRefreshes());
+	}
+}
@@ -0,0 +1,125 @@
+package com.rest.dao.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import com.rest.domain.Customer;
+
+public class SingleFlightLoaderTest {
+
+	@Test
+	public void testConcurrentLoadsAreCoalesced() throws Exception {
+		Customer customer = new Customer("Nick", "Vujasin", "nick_vujasin@yahoo.com");
+		customer.setId(1);
+
+		CountDownLatch loadStarted = new CountDownLatch(1);
+		CountDownLatch releaseLoad = new CountDownLatch(1);
+		AtomicInteger loads = new AtomicInteger();
+
+		// The load blocks until released so the second miss arrives while it is in flight.
+		Function<Integer, Customer> loader = id -> {
+			loads.incrementAndGet();
+			loadStarted.countDown();
+			try {
+				releaseLoad.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return customer;
+		};
+
+		SingleFlightLoader<Integer, Customer> singleFlight = new SingleFlightLoader<>();
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<Customer> first = executor.submit(() -> singleFlight.load(1, loader));
+			loadStarted.await(5, TimeUnit.SECONDS);
+
+			Future<Customer> second = executor.submit(() -> singleFlight.load(1, loader));
+
+			// Wait for the second miss to join the load in flight before releasing it.
+			while (singleFlight.getCoalescedLoads() == 0) {
+				Thread.sleep(10);
+			}
+			releaseLoad.countDown();
+
+			assertSame(customer, first.get(5, TimeUnit.SECONDS));
+			assertSame(customer, second.get(5, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+		}
+
+		// Only one of the misses loaded.
+		assertEquals(1, loads.get());
+		assertEquals(1, singleFlight.getOriginatingLoads());
+		assertEquals(1, singleFlight.getCoalescedLoads());
+
+		// The load is forgotten once it completes, the next miss loads again.
+		singleFlight.load(1, loader);
+		assertEquals(2, loads.get());
+		assertEquals(2, singleFlight.getOriginatingLoads());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testFailedLoadIsRethrown() {
+		new SingleFlightLoader<Integer, Customer>().load(1, id -> {
+			throw new IllegalStateException("Database down");
+		});
+	}
+
+	@Test
+	public void testErrorIsRethrownToCoalescedLoads() throws Exception {
+		CountDownLatch loadStarted = new CountDownLatch(1);
+		CountDownLatch releaseLoad = new CountDownLatch(1);
+
+		Function<Integer, Customer> loader = id -> {
+			loadStarted.countDown();
+			try {
+				releaseLoad.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			throw new OutOfMemoryError("Java heap space");
+		};
+
+		SingleFlightLoader<Integer, Customer> singleFlight = new SingleFlightLoader<>();
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<Customer> first = executor.submit(() -> singleFlight.load(1, loader));
+			loadStarted.await(5, TimeUnit.SECONDS);
+
+			Future<Customer> second = executor.submit(() -> singleFlight.load(1, loader));
+			while (singleFlight.getCoalescedLoads() == 0) {
+				Thread.sleep(10);
+			}
+			releaseLoad.countDown();
+
+			// Both get the Error itself, not a CompletionException wrapping it.
+			for (Future<Customer> load : Arrays.asList(first, second)) {
+				try {
+					load.get(5, TimeUnit.SECONDS);
+					fail("The load failed");
+				} catch (ExecutionException e) {
+					assertTrue(e.getCause() instanceof OutOfMemoryError);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package com.rest.dao.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class TieredCacheWrapperTest {
+
+	private final CaffeineCacheWrapper<Integer, String> heap = new CaffeineCacheWrapper<>("maximumSize=100");
+	private final CaffeineCacheWrapper<Integer, String> offHeap = new CaffeineCacheWrapper<>("maximumSize=100");
+	private final TieredCacheWrapper<Integer, String> cache = new TieredCacheWrapper<>(heap, offHeap);
+
+	@Test
+	public void testEntryEvictedFromHeapIsFoundOffHeap() {
+		cache.put(1, "value1");
+		assertEquals("value1", cache.get(1));
+		assertEquals(1, cache.getHeapHits());
+
+		// Evicted from the heap, it is found off-heap and copied back.
+		heap.remove(1);
+		assertEquals("value1", cache.get(1));
+		assertEquals(1, cache.getOffHeapHits());
+		assertTrue(heap.containsKey(1));
+
+		assertNull(cache.get(2));
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testPeekDoesNotCopyBack() {
+		cache.put(1, "value1");
+		heap.remove(1);
+
+		// Found off-heap but left there, and not counted.
+		assertEquals("value1", cache.peek(1));
+		assertFalse(heap.containsKey(1));
+		assertNull(cache.peek(2));
+		assertEquals(0, cache.getOffHeapHits());
+		assertEquals(0, cache.getMisses());
+	}
+
+	@Test
+	public void testGetAll() {
+		cache.put(1, "value1");
+		cache.put(2, "value2");
+		heap.remove(2);
+
+		assertEquals(2, cache.getAll(new HashSet<>(Arrays.asList(1, 2, 3))).size());
+		assertEquals(1, cache.getHeapHits());
+		assertEquals(1, cache.getOffHeapHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testRemoveFromBothTiers() {
+		cache.put(1, "value1");
+		assertFalse(cache.putIfAbsent(1, "other"));
+
+		cache.remove(1);
+		assertFalse(heap.containsKey(1));
+		assertFalse(offHeap.containsKey(1));
+		assertTrue(cache.putIfAbsent(1, "other"));
+	}
+
+	@Test
+	public void testRemovalDuringCopyBackIsNotCopied() {
+		AtomicReference<TieredCacheWrapper<Integer, String>> remover = new AtomicReference<>();
+		// The entry is removed by another request right after it was read off-heap.
+		CaffeineCacheWrapper<Integer, String> racyOffHeap = new CaffeineCacheWrapper<Integer, String>("maximumSize=100") {
+			@Override
+			public String get(Integer key) {
+				String value = super.get(key);
+				if (value != null) {
+					remover.get().remove(key);
+				}
+				return value;
+			}
+		};
+		TieredCacheWrapper<Integer, String> racyCache = new TieredCacheWrapper<>(heap, racyOffHeap);
+		remover.set(racyCache);
+		racyCache.put(1, "value1");
+		heap.remove(1);
+
+		// The reader still gets the value it read, the removed entry is not copied back to the heap.
+		assertEquals("value1", racyCache.get(1));
+		assertFalse(heap.containsKey(1));
+	}
+}
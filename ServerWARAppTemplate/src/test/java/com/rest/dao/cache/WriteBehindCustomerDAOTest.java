@@ -0,0 +1,210 @@
+package com.rest.dao.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import com.rest.dao.CustomerDAO;
+import com.rest.domain.Customer;
+
+public class WriteBehindCustomerDAOTest {
+
+	@Mock // Mock the DAO that is decorated.
+	private CustomerDAO customerDAO;
+
+	@Rule // Create the mocks based on the @Mock annotation
+	public MockitoRule rule = MockitoJUnit.rule();
+
+	private JdbcDataSource dataSource;
+	private CacheWrapper<Integer, Customer> customerCache;
+	private CacheWrapper<String, Integer> customerEmailCache;
+	private WriteBehindCustomerDAO writeBehindDAO;
+
+	@Before
+	public void setUp() throws SQLException {
+		dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:WriteBehindCustomerDAOTest;DB_CLOSE_DELAY=-1");
+
+		try (Connection conn = dataSource.getConnection(); Statement statement = conn.createStatement()) {
+			statement.execute("CREATE TABLE Customers (id INT AUTO_INCREMENT PRIMARY KEY, first_name VARCHAR(45), "
+					+ "last_name VARCHAR(45), email VARCHAR(100) UNIQUE, version INT DEFAULT 0)");
+			statement.execute("INSERT INTO Customers (first_name, last_name, email) VALUES ('Jim', 'Smith', 'jim@example.com')");
+			statement.execute("INSERT INTO Customers (first_name, last_name, email) VALUES ('Jane', 'Doe', 'jane@example.com')");
+		}
+
+		// The customers are checked to exist before they are updated.
+		when(customerDAO.getCustomer(1)).thenReturn(customer(1, "Jim", "jim@example.com", 0));
+		when(customerDAO.getCustomer(2)).thenReturn(customer(2, "Jane", "jane@example.com", 0));
+
+		customerCache = new CaffeineCacheWrapper<>("maximumSize=100");
+		customerEmailCache = new CaffeineCacheWrapper<>("maximumSize=100");
+		// Flushed by the tests.
+		writeBehindDAO = new WriteBehindCustomerDAO(customerDAO, dataSource, customerCache, customerEmailCache, 10, 3600000);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		writeBehindDAO.close();
+		try (Connection conn = dataSource.getConnection(); Statement statement = conn.createStatement()) {
+			statement.execute("DROP TABLE Customers");
+		}
+	}
+
+	private static Customer customer(String firstName, String email, Integer version) {
+		Customer customer = new Customer(firstName, "Smith", email);
+		customer.setVersion(version);
+		return customer;
+	}
+
+	private static Customer customer(int id, String firstName, String email, Integer version) {
+		Customer customer = customer(firstName, email, version);
+		customer.setId(id);
+		return customer;
+	}
+
+	private String[] row(int id) throws SQLException {
+		try (Connection conn = dataSource.getConnection(); Statement statement = conn.createStatement()) {
+			ResultSet rs = statement.executeQuery("SELECT first_name, version FROM Customers WHERE id = " + id);
+			rs.next();
+			return new String[] { rs.getString(1), rs.getString(2) };
+		}
+	}
+
+	@Test
+	public void testUpdatesAreCoalesced() throws SQLException {
+		Customer first = customer("Jimmy", "jim@example.com", 0);
+		writeBehindDAO.updateCustomer(1, first);
+		assertEquals(Integer.valueOf(1), first.getVersion());
+		writeBehindDAO.updateCustomer(1, customer("James", "jim@example.com", 1));
+		writeBehindDAO.updateCustomer(1, customer("Jim", "jim@example.com", 2));
+
+		// Applied to the cache, not written yet.
+		assertEquals("Jim", customerCache.get(1).getFirstName());
+		assertEquals("Jim", writeBehindDAO.getCustomer(1).getFirstName());
+		assertEquals(1, writeBehindDAO.getQueueDepth());
+		assertEquals("0", row(1)[1]);
+
+		writeBehindDAO.flush();
+
+		assertEquals("Jim", row(1)[0]);
+		assertEquals("3", row(1)[1]);
+		assertEquals(0, writeBehindDAO.getQueueDepth());
+		assertEquals(3, writeBehindDAO.getUpdates());
+		assertEquals(1, writeBehindDAO.getWrites());
+		assertEquals(3.0, writeBehindDAO.getCoalescingRatio(), 0.0);
+	}
+
+	@Test
+	public void testStaleVersionFails() {
+		writeBehindDAO.updateCustomer(1, customer("Jimmy", "jim@example.com", 0));
+		try {
+			writeBehindDAO.updateCustomer(1, customer("James", "jim@example.com", 0));
+			fail("The version 0 is stale");
+		} catch (OptimisticLockingFailureException e) {
+			assertEquals("Jimmy", writeBehindDAO.getCustomer(1).getFirstName());
+		}
+	}
+
+	@Test
+	public void testMissingCustomerFails() {
+		try {
+			writeBehindDAO.updateCustomer(3, customer("Jim", "jim3@example.com", 0));
+			fail("There is no customer 3");
+		} catch (EmptyResultDataAccessException e) {
+			assertEquals(0, writeBehindDAO.getQueueDepth());
+			assertFalse(customerCache.containsKey(3));
+		}
+	}
+
+	@Test
+	public void testChangedEmailIsUnmapped() {
+		Customer cached = customer("Jim", "jim@example.com", 0);
+		cached.setId(1);
+		customerCache.put(1, cached);
+		customerEmailCache.put("jim@example.com", 1);
+
+		writeBehindDAO.updateCustomer(1, customer("Jim", "jim.smith@example.com", 0));
+
+		assertNull(customerEmailCache.get("jim@example.com"));
+		assertEquals(Integer.valueOf(1), customerEmailCache.get("jim.smith@example.com"));
+	}
+
+	@Test
+	public void testFailedWriteIsDropped() throws SQLException {
+		// The customer was updated elsewhere, the database has version 1.
+		try (Connection conn = dataSource.getConnection(); Statement statement = conn.createStatement()) {
+			statement.execute("UPDATE Customers SET version = 1 WHERE id = 2");
+		}
+		writeBehindDAO.updateCustomer(1, customer("Jimmy", "jim@example.com", 0));
+		writeBehindDAO.updateCustomer(2, customer("Janet", "jane@example.com", 0));
+
+		writeBehindDAO.flush();
+
+		assertEquals("Jimmy", row(1)[0]);
+		assertEquals("Jane", row(2)[0]);
+		assertFalse(customerCache.containsKey(2));
+		assertEquals(1, writeBehindDAO.getWrites());
+		assertEquals(1, writeBehindDAO.getFailedWrites());
+	}
+
+	@Test
+	public void testDuplicateEmailOnlyDropsItsUpdate() throws SQLException {
+		writeBehindDAO.updateCustomer(1, customer("Jimmy", "jim@example.com", 0));
+		writeBehindDAO.updateCustomer(2, customer("Jane", "jim@example.com", 0));
+
+		writeBehindDAO.flush();
+
+		assertEquals("Jimmy", row(1)[0]);
+		assertEquals("1", row(1)[1]);
+		assertEquals("0", row(2)[1]);
+		assertEquals(1, writeBehindDAO.getFailedWrites());
+	}
+
+	@Test
+	public void testCloseWritesPendingUpdates() throws Exception {
+		writeBehindDAO.updateCustomer(1, customer("Jimmy", "jim@example.com", null));
+		// Without a version the version is unknown, the customer is read from the database next time.
+		assertFalse(customerCache.containsKey(1));
+
+		writeBehindDAO.close();
+
+		assertEquals("Jimmy", row(1)[0]);
+		assertEquals("1", row(1)[1]);
+	}
+
+	@Test
+	public void testDeleteDropsPendingUpdate() {
+		writeBehindDAO.updateCustomer(1, customer("Jimmy", "jim@example.com", 0));
+		writeBehindDAO.deleteCustomer(1);
+
+		assertEquals(0, writeBehindDAO.getQueueDepth());
+		verify(customerDAO).deleteCustomer(1);
+	}
+
+	@Test
+	public void testReadsWithoutPendingUpdateAreDelegated() {
+		Customer customer = customer("Jim", "jim@example.com", 0);
+		when(customerDAO.getCustomer(1)).thenReturn(customer);
+		assertSame(customer, writeBehindDAO.getCustomer(1));
+	}
+}
@@ -6,10 +6,15 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 
 import com.rest.dao.CustomerDAO;
 import com.rest.domain.Customer;
@@ -38,6 +43,66 @@ public class CustomerDAOImplTest extends BaseDAOTest {
 		assertTrue(entityManagerFactory.getCache().contains(Customer.class, 2));
 	}
 	
+	@Test
+	public void testGetCustomersPage() {
+		// There shouldn't be anything in the cache.
+		assertFalse(entityManagerFactory.getCache().contains(Customer.class, 1));
+		assertFalse(entityManagerFactory.getCache().contains(Customer.class, 2));
+		
+		// Retrieve the first page from the DB.
+		List<Customer> customers = customerDAO.getCustomers(0, 1);
+		assertEquals(customers.size(), 1);
+		assertEquals(customers.get(0).getId(), 1);
+		
+		// Only the entity in the page should exist in the cache.
+		assertTrue(entityManagerFactory.getCache().contains(Customer.class, 1));
+		assertFalse(entityManagerFactory.getCache().contains(Customer.class, 2));
+		
+		// Retrieve the next page using the last id of the first page.
+		customers = customerDAO.getCustomers(customers.get(0).getId(), 1);
+		assertEquals(customers.size(), 1);
+		assertEquals(customers.get(0).getId(), 2);
+		
+		// There are no more customers after the last one.
+		customers = customerDAO.getCustomers(2, 1);
+		assertTrue(customers.isEmpty());
+	}
+	
+	@Test
+	public void testGetCustomersByIds() {
+		// Only put customer 2 in the cache.
+		customerDAO.getCustomer(2);
+		assertFalse(entityManagerFactory.getCache().contains(Customer.class, 1));
+		assertTrue(entityManagerFactory.getCache().contains(Customer.class, 2));
+		
+		// Customer 2 comes from the cache and customer 1 from the DB, there is no customer 3.
+		List<Customer> customers = customerDAO.getCustomers(Arrays.asList(2, 3, 1));
+		assertEquals(customers.size(), 2);
+		
+		// The customers are in the order of the ids.
+		assertEquals(customers.get(0).getId(), 2);
+		assertEquals(customers.get(1).getId(), 1);
+		
+		// Both entities should exist in the cache.
+		assertTrue(entityManagerFactory.getCache().contains(Customer.class, 1));
+		assertTrue(entityManagerFactory.getCache().contains(Customer.class, 2));
+	}
+	
+	@Test
+	public void testStreamCustomers() {
+		List<Customer> customers = new ArrayList<>();
+		
+		// Stream the data from the DB.
+		customerDAO.streamCustomers(customers::add);
+		assertEquals(customers.size(), 2);
+		assertEquals(customers.get(0).getId(), 1);
+		assertEquals(customers.get(1).getId(), 2);
+		
+		// Streamed entities are not placed in the cache.
+		assertFalse(entityManagerFactory.getCache().contains(Customer.class, 1));
+		assertFalse(entityManagerFactory.getCache().contains(Customer.class, 2));
+	}
+	
 	@Test
 	public void testGetCustomer() {
 		// There shouldn't be anything in the cache.
@@ -51,6 +116,26 @@ public class CustomerDAOImplTest extends BaseDAOTest {
 		assertTrue(entityManagerFactory.getCache().contains(Customer.class, 1));
 	}
 	
+	@Test
+	public void testFindByEmail() {
+		// There shouldn't be anything in the cache.
+		assertFalse(entityManagerFactory.getCache().contains(Customer.class, 2));
+		
+		// Retrieve the data from the DB, the email is not case sensitive.
+		Customer customer = customerDAO.findByEmail("Stella_Vujasin@yahoo.com");
+		assertEquals(customer.getId(), 2);
+		
+		// The entity should exist in the cache.
+		assertTrue(entityManagerFactory.getCache().contains(Customer.class, 2));
+		
+		// Retrieve the data again, this time from the cache.
+		customer = customerDAO.findByEmail("stella_vujasin@yahoo.com");
+		assertEquals(customer.getId(), 2);
+		
+		// There is no customer with the email.
+		assertNull(customerDAO.findByEmail("luka_vujasin@yahoo.com"));
+	}
+	
 	@Test
 	public void testCreateCustomer() {
 		Customer customer = new Customer("Luka", "Vujasin", "luka_vujasin@yahoo.com");
@@ -67,6 +152,29 @@ public class CustomerDAOImplTest extends BaseDAOTest {
 		customers.stream().forEach(c -> assertTrue(entityManagerFactory.getCache().contains(Customer.class, c.getId())));
 	}
 	
+	@Test
+	public void testCreateCustomers() {
+		List<Customer> customers = new ArrayList<>();
+		customers.add(new Customer("Luka", "Vujasin", "luka_vujasin@yahoo.com"));
+		customers.add(new Customer("Nikola", "Vujasin", "nikola_vujasin@yahoo.com"));
+		
+		List<Customer> newCustomers = customerDAO.createCustomers(customers);
+		assertEquals(newCustomers.size(), 2);
+		
+		// Every customer has its own generated id.
+		assertTrue(newCustomers.get(0).getId() > 0);
+		assertTrue(newCustomers.get(1).getId() > newCustomers.get(0).getId());
+		
+		List<Customer> allCustomers = customerDAO.getCustomers();
+		assertEquals(allCustomers.size(), 4);
+	}
+	
+	@Test(expected = DuplicateKeyException.class)
+	public void testCreateCustomerWithExistingEmail() {
+		// The unique constraint on the email rejects the customer.
+		customerDAO.createCustomer(new Customer("Nikola", "Vujasin", "nick_vujasin@yahoo.com"));
+	}
+	
 	@Test
 	public void testUpdateCustomer() {
 		// There shouldn't be anything in the cache.
@@ -99,6 +207,31 @@ public class CustomerDAOImplTest extends BaseDAOTest {
 		assertTrue(entityManagerFactory.getCache().contains(Customer.class, 1));		
 	}
 	
+	@Test(expected = OptimisticLockingFailureException.class)
+	public void testUpdateCustomerWithStaleVersion() {
+		Customer customer = new Customer("Nick", "Vujasin", "nikola_vujasin@yahoo.com");
+		customer.setVersion(0);
+		
+		customerDAO.updateCustomer(1, customer);
+		
+		// Every update increments the version.
+		assertEquals(Integer.valueOf(1), customerDAO.getCustomer(1).getVersion());
+		
+		// The version was read before the update above, so this update is rejected.
+		Customer staleCustomer = new Customer("Nick", "Vujasin", "nick_vujasin@yahoo.com");
+		staleCustomer.setVersion(0);
+		
+		customerDAO.updateCustomer(1, staleCustomer);
+	}
+	
+	@Test(expected = EmptyResultDataAccessException.class)
+	public void testUpdateCustomerNotFound() {
+		Customer customer = new Customer("Luka", "Vujasin", "luka_vujasin@yahoo.com");
+		customer.setVersion(0);
+		
+		customerDAO.updateCustomer(3, customer);
+	}
+	
 	@Test
 	public void testDeleteCustomer() throws InterruptedException {
 		// There shouldn't be anything in the cache.
@@ -0,0 +1,118 @@
+package com.rest.jms.consumer;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.rest.dao.cache.CacheWrapper;
+import com.rest.dao.cache.CustomerInvalidation;
+import com.rest.dao.cache.CustomerInvalidation.Operation;
+import com.rest.domain.Customer;
+
+public class InvalidationConsumerTest {
+
+	@Mock
+	private CacheWrapper<Integer, Customer> customerCache;
+
+	@Mock
+	private CacheWrapper<Integer, Customer> customerPinnedCache;
+
+	@Mock
+	private CacheWrapper<Integer, Boolean> customerMissingCache;
+
+	@Mock
+	private SessionFactory sessionFactory;
+
+	@Mock
+	private Cache secondLevelCache;
+
+	@Rule // Create the mocks based on the @Mock annotation
+	public MockitoRule rule = MockitoJUnit.rule();
+
+	private InvalidationConsumer invalidationConsumer;
+
+	@Before
+	public void setUp() {
+		invalidationConsumer = new InvalidationConsumer(customerCache, customerPinnedCache, customerMissingCache);
+	}
+
+	private static Customer customer(int id, Integer version) {
+		Customer customer = new Customer("Jim", "Smith", "jim" + id + "@example.com");
+		customer.setId(id);
+		customer.setVersion(version);
+		return customer;
+	}
+
+	@Test
+	public void testCreateRemovesMissing() {
+		invalidationConsumer.apply(Collections.singletonList(new CustomerInvalidation(Operation.CREATE, 1, 0)));
+		verify(customerMissingCache).remove(1);
+		verify(customerCache, never()).remove(1);
+	}
+
+	@Test
+	public void testUpdateRemovesOlderVersion() {
+		when(customerCache.peek(1)).thenReturn(customer(1, 2));
+		invalidationConsumer.apply(Collections.singletonList(new CustomerInvalidation(Operation.UPDATE, 1, 3)));
+		verify(customerCache).remove(1);
+		// The version is peeked, a get would copy the customer between the tiers of the cache.
+		verify(customerCache, never()).get(1);
+	}
+
+	@Test
+	public void testUpdateKeepsSameOrNewerVersion() {
+		when(customerCache.peek(1)).thenReturn(customer(1, 3));
+		when(customerCache.peek(2)).thenReturn(customer(2, 5));
+		invalidationConsumer.apply(Arrays.asList(new CustomerInvalidation(Operation.UPDATE, 1, 3),
+				new CustomerInvalidation(Operation.UPDATE, 2, 4)));
+		verify(customerCache, never()).remove(1);
+		verify(customerCache, never()).remove(2);
+		verify(customerPinnedCache).remove(1);
+		verify(customerPinnedCache).remove(2);
+	}
+
+	@Test
+	public void testUpdateWithoutVersionRemoves() {
+		when(customerCache.peek(1)).thenReturn(customer(1, 3));
+		invalidationConsumer.apply(Collections.singletonList(new CustomerInvalidation(Operation.UPDATE, 1, null)));
+		verify(customerCache).remove(1);
+	}
+
+	@Test
+	public void testDeleteRemoves() {
+		invalidationConsumer.apply(Collections.singletonList(new CustomerInvalidation(Operation.DELETE, 1, null)));
+		verify(customerCache).remove(1);
+		verify(customerPinnedCache).remove(1);
+	}
+
+	@Test
+	public void testSecondLevelCacheEvicted() {
+		when(sessionFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+		when(sessionFactory.getCache()).thenReturn(secondLevelCache);
+		ReflectionTestUtils.setField(invalidationConsumer, "entityManagerFactories", Collections.<EntityManagerFactory>singletonList(sessionFactory));
+
+		invalidationConsumer.apply(Arrays.asList(new CustomerInvalidation(Operation.UPDATE, 1, null),
+				new CustomerInvalidation(Operation.DELETE, 2, null)));
+		verify(secondLevelCache).evict(Customer.class, 1);
+		verify(secondLevelCache).evict(Customer.class, 2);
+
+		// The cached email lookups are evicted once.
+		verify(secondLevelCache).evictDefaultQueryRegion();
+	}
+}
@@ -0,0 +1,108 @@
+package com.rest.jms.consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.rest.aspect.Event;
+import com.rest.domain.EndpointLatency;
+
+public class LatencyAggregatorTest {
+
+	private long now;
+
+	private LatencyAggregator latencyAggregator;
+
+	@Before
+	public void setUp() {
+		now = TimeUnit.HOURS.toMillis(1);
+		latencyAggregator = new LatencyAggregator(3, () -> now);
+	}
+
+	private static Event event(String method, String path, int status, long duration) {
+		Event event = mock(Event.class);
+		when(event.getMethod()).thenReturn(method);
+		when(event.getResourcePath()).thenReturn(path);
+		when(event.getStatus()).thenReturn(status);
+		when(event.getDuration()).thenReturn(duration);
+		return event;
+	}
+
+	@Test
+	public void testNormalize() {
+		assertEquals("/customers", LatencyAggregator.normalize("/customers"));
+		assertEquals("/customers/{id}", LatencyAggregator.normalize("/customers/123"));
+		assertEquals("/customers/{id}/orders/{id}", LatencyAggregator.normalize("/customers/1/orders/22"));
+		assertEquals("/customers/batch", LatencyAggregator.normalize("/customers/batch"));
+		assertEquals("/customers/12ab", LatencyAggregator.normalize("/customers/12ab"));
+		assertEquals("/", LatencyAggregator.normalize(null));
+	}
+
+	@Test
+	public void testEndpoints() {
+		for (int i = 1; i <= 100; i++) {
+			latencyAggregator.record(event("GET", "/customers/" + i, 200, i));
+		}
+		latencyAggregator.record(event("GET", "/customers/7", 404, 3));
+		latencyAggregator.record(event("GET", "/customers/7", 404, 5));
+
+		List<EndpointLatency> latencies = latencyAggregator.getLatencies(1);
+		assertEquals(2, latencies.size());
+
+		// The busiest first.
+		EndpointLatency found = latencies.get(0);
+		assertEquals("GET", found.getMethod());
+		assertEquals("/customers/{id}", found.getPath());
+		assertEquals("2xx", found.getStatus());
+		assertEquals(1, found.getWindow());
+		assertEquals(100, found.getCount());
+		// The highest values of the buckets of 50, 90 and 100.
+		assertEquals(51, found.getP50());
+		assertEquals(91, found.getP90());
+		assertEquals(103, found.getMax());
+
+		EndpointLatency notFound = latencies.get(1);
+		assertEquals("4xx", notFound.getStatus());
+		assertEquals(2, notFound.getCount());
+		assertEquals(5, notFound.getMax());
+	}
+
+	@Test
+	public void testWindowsAndThroughput() {
+		now += TimeUnit.MINUTES.toMillis(20);
+		latencyAggregator.record(event("GET", "/customers", 200, 10));
+		now += TimeUnit.MINUTES.toMillis(3);
+		for (int i = 0; i < 60; i++) {
+			latencyAggregator.record(event("GET", "/customers", 200, 10));
+		}
+		// 30 seconds into the minute.
+		now += TimeUnit.SECONDS.toMillis(30);
+
+		assertEquals(60, latencyAggregator.getLatencies(1).get(0).getCount());
+		assertEquals(2.0, latencyAggregator.getLatencies(1).get(0).getThroughput(), 0.001);
+		assertEquals(61, latencyAggregator.getLatencies(5).get(0).getCount());
+		assertEquals(61 / 270.0, latencyAggregator.getLatencies(5).get(0).getThroughput(), 0.001);
+
+		now += TimeUnit.MINUTES.toMillis(16);
+		assertEquals(0, latencyAggregator.getLatencies(15).size());
+	}
+
+	@Test
+	public void testMaxEndpoints() {
+		latencyAggregator.record(event("GET", "/customers", 200, 1));
+		latencyAggregator.record(event("GET", "/hello", 200, 1));
+		latencyAggregator.record(event("POST", "/customers", 201, 1));
+		latencyAggregator.record(event("GET", "/unknown", 404, 1));
+		latencyAggregator.record(event("GET", "/unknown2", 404, 1));
+
+		assertEquals(4, latencyAggregator.getEndpoints());
+		assertEquals(LatencyAggregator.OTHER_PATH, latencyAggregator.getLatencies(1).get(0).getPath());
+		assertEquals(2, latencyAggregator.getLatencies(1).get(0).getCount());
+	}
+}
@@ -0,0 +1,82 @@
+package com.rest.jms.consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void testBuckets() {
+		// Exact below 16.
+		for (int value = 0; value < 16; value++) {
+			assertEquals(value, LatencyHistogram.bucket(value));
+			assertEquals(value, LatencyHistogram.highestValue(value));
+		}
+
+		// Every value falls within its bucket, which is within 1/16 of it.
+		for (long value = 16; value < 1L << LatencyHistogram.MAX_EXPONENT; value = value * 17 / 16 + 1) {
+			int bucket = LatencyHistogram.bucket(value);
+			assertTrue(LatencyHistogram.lowestValue(bucket) <= value);
+			assertTrue(LatencyHistogram.highestValue(bucket) >= value);
+			assertTrue(LatencyHistogram.highestValue(bucket) - LatencyHistogram.lowestValue(bucket) <= value / 16);
+		}
+
+		assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+		assertEquals(0, LatencyHistogram.bucket(-1));
+	}
+
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int value = 1; value <= 1000; value++) {
+			histogram.record(value, 100);
+		}
+
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot(1, 100);
+		assertEquals(1000, snapshot.getCount());
+		assertWithin(500, snapshot.valueAt(50));
+		assertWithin(900, snapshot.valueAt(90));
+		assertWithin(990, snapshot.valueAt(99));
+		assertWithin(999, snapshot.valueAt(99.9));
+		assertWithin(1000, snapshot.getMax());
+	}
+
+	private static void assertWithin(long expected, long actual) {
+		assertTrue(expected + " ~ " + actual, actual >= expected && actual <= expected + expected / 16);
+	}
+
+	@Test
+	public void testWindows() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		// 10 latencies in each of minutes 0 to 19.
+		for (long minute = 0; minute < 20; minute++) {
+			for (int i = 0; i < 10; i++) {
+				histogram.record(minute, minute);
+			}
+		}
+
+		assertEquals(10, histogram.snapshot(1, 19).getCount());
+		assertEquals(50, histogram.snapshot(5, 19).getCount());
+		assertEquals(150, histogram.snapshot(15, 19).getCount());
+		assertEquals(19, histogram.snapshot(5, 19).getMax());
+		assertEquals(15, histogram.snapshot(5, 19).valueAt(0));
+
+		// Minutes without records leave the windows.
+		assertEquals(0, histogram.snapshot(1, 25).getCount());
+		assertEquals(20, histogram.snapshot(5, 22).getCount());
+
+		// A reused slot starts over.
+		histogram.record(1, 35);
+		assertEquals(1, histogram.snapshot(1, 35).getCount());
+		assertEquals(0, histogram.snapshot(15, 50).getCount());
+	}
+
+	@Test
+	public void testEmpty() {
+		LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot(15, 100);
+		assertEquals(0, snapshot.getCount());
+		assertEquals(0, snapshot.valueAt(99));
+	}
+}
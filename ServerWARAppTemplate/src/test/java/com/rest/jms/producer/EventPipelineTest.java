@@ -0,0 +1,143 @@
+package com.rest.jms.producer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import com.rest.aspect.Event;
+import com.rest.jms.producer.EventPipeline.OverflowPolicy;
+
+public class EventPipelineTest {
+
+	@Mock
+	private JmsProducer jmsProducer;
+
+	@Rule // Create the mocks based on the @Mock annotation
+	public MockitoRule rule = MockitoJUnit.rule();
+
+	private final List<List<Event>> batches = new ArrayList<>();
+
+	@Before
+	public void setUp() {
+		when(jmsProducer.send(anyList())).thenAnswer(invocation -> batches.add(new ArrayList<Event>(invocation.getArgument(0))));
+	}
+
+	private static Event event(String path) {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setMethod("GET");
+		request.setPathInfo(path);
+		return new Event(request).start();
+	}
+
+	// No drainers, the tests drain.
+	private EventPipeline pipeline(OverflowPolicy overflowPolicy) {
+		return new EventPipeline(jmsProducer, 4, overflowPolicy, 3, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSampleRateBelowOneIsRejected() {
+		pipeline(OverflowPolicy.SAMPLE).setSampleRate(0);
+	}
+
+	@Test
+	public void testEventsAreSentInBatches() {
+		EventPipeline pipeline = pipeline(OverflowPolicy.DROP_NEWEST);
+		for (int i = 0; i < 4; i++) {
+			pipeline.publish(event("/customers/" + i));
+		}
+		assertEquals(4, pipeline.getQueueDepth());
+
+		assertEquals(3, pipeline.drain());
+		assertEquals(1, pipeline.drain());
+		assertEquals(0, pipeline.drain());
+
+		assertEquals(2, batches.size());
+		assertEquals("/customers/0", batches.get(0).get(0).getResourceURI());
+		assertEquals(4, pipeline.getSent());
+		assertEquals(0, pipeline.getQueueDepth());
+	}
+
+	@Test
+	public void testBatchWindow() throws InterruptedException {
+		EventPipeline pipeline = pipeline(OverflowPolicy.DROP_NEWEST);
+		pipeline.setBatchWindowMillis(10000);
+		pipeline.publish(event("/customers/0"));
+
+		Thread publisher = new Thread(() -> {
+			pipeline.publish(event("/customers/1"));
+			pipeline.publish(event("/customers/2"));
+		});
+		publisher.start();
+
+		// Waits for the events published after the first until the batch is full.
+		assertEquals(3, pipeline.drain());
+		publisher.join();
+		assertEquals(1, batches.size());
+		assertEquals(3, pipeline.getAverageBatchSize(), 0);
+	}
+
+	@Test
+	public void testDropNewest() {
+		EventPipeline pipeline = pipeline(OverflowPolicy.DROP_NEWEST);
+		for (int i = 0; i < 6; i++) {
+			pipeline.publish(event("/customers/" + i));
+		}
+		assertEquals(6, pipeline.getPublished());
+		assertEquals(2, pipeline.getDropped());
+
+		pipeline.drain();
+		assertEquals("/customers/0", batches.get(0).get(0).getResourceURI());
+	}
+
+	@Test
+	public void testDropOldest() {
+		EventPipeline pipeline = pipeline(OverflowPolicy.DROP_OLDEST);
+		for (int i = 0; i < 6; i++) {
+			pipeline.publish(event("/customers/" + i));
+		}
+		assertEquals(2, pipeline.getDropped());
+		assertEquals(4, pipeline.getQueueDepth());
+
+		pipeline.drain();
+		assertEquals("/customers/2", batches.get(0).get(0).getResourceURI());
+	}
+
+	@Test
+	public void testSample() {
+		EventPipeline pipeline = pipeline(OverflowPolicy.SAMPLE);
+		pipeline.setSampleRate(Integer.MAX_VALUE);
+		for (int i = 0; i < 6; i++) {
+			pipeline.publish(event("/customers/" + i));
+		}
+		// Half full, the rest are sampled and almost certainly dropped.
+		assertTrue(pipeline.getQueueDepth() >= 2);
+		assertEquals(6, pipeline.getQueueDepth() + pipeline.getDropped());
+	}
+
+	@Test
+	public void testFailedSendIsCounted() throws InterruptedException {
+		when(jmsProducer.send(anyList())).thenReturn(false);
+		EventPipeline pipeline = pipeline(OverflowPolicy.DROP_NEWEST);
+		pipeline.publish(event("/customers/1"));
+
+		pipeline.close();
+
+		verify(jmsProducer, times(1)).send(anyList());
+		assertEquals(1, pipeline.getFailed());
+		assertEquals(0, pipeline.getQueueDepth());
+	}
+}
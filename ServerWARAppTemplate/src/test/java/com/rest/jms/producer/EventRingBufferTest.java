@@ -0,0 +1,85 @@
+package com.rest.jms.producer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class EventRingBufferTest {
+
+	@Test
+	public void testOfferPollInOrder() {
+		EventRingBuffer<Integer> buffer = new EventRingBuffer<>(4);
+		assertNull(buffer.poll());
+
+		// Several laps around the slots.
+		for (int lap = 0; lap < 3; lap++) {
+			for (int i = 0; i < 4; i++) {
+				assertTrue(buffer.offer(lap * 4 + i));
+			}
+			assertFalse(buffer.offer(-1));
+			assertEquals(4, buffer.size());
+
+			for (int i = 0; i < 4; i++) {
+				assertEquals(Integer.valueOf(lap * 4 + i), buffer.poll());
+			}
+			assertNull(buffer.poll());
+			assertEquals(0, buffer.size());
+		}
+	}
+
+	@Test
+	public void testCapacityIsRoundedUp() {
+		assertEquals(8, new EventRingBuffer<Integer>(5).capacity());
+		assertEquals(8, new EventRingBuffer<Integer>(8).capacity());
+	}
+
+	@Test
+	public void testConcurrentOfferPoll() throws InterruptedException {
+		int producers = 4;
+		int perProducer = 100000;
+		EventRingBuffer<Integer> buffer = new EventRingBuffer<>(64);
+		ConcurrentHashMap<Integer, Boolean> received = new ConcurrentHashMap<>();
+		AtomicInteger remaining = new AtomicInteger(producers * perProducer);
+		CountDownLatch done = new CountDownLatch(producers + 2);
+
+		List<Thread> threads = new ArrayList<>();
+		for (int p = 0; p < producers; p++) {
+			int first = p * perProducer;
+			threads.add(new Thread(() -> {
+				for (int i = first; i < first + perProducer; i++) {
+					while (!buffer.offer(i)) {
+						Thread.yield();
+					}
+				}
+				done.countDown();
+			}));
+		}
+		for (int c = 0; c < 2; c++) {
+			threads.add(new Thread(() -> {
+				while (remaining.get() > 0) {
+					Integer element = buffer.poll();
+					if (element != null) {
+						// Every element is taken exactly once.
+						assertNull(received.put(element, Boolean.TRUE));
+						remaining.decrementAndGet();
+					}
+				}
+				done.countDown();
+			}));
+		}
+		threads.forEach(Thread::start);
+		done.await();
+
+		assertEquals(producers * perProducer, received.size());
+		assertNull(buffer.poll());
+	}
+}
@@ -0,0 +1,111 @@
+package com.rest.jms.producer;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Session;
+
+import org.apache.activemq.artemis.jms.client.ActiveMQJMSConnectionFactory;
+import org.apache.activemq.artemis.jms.client.ActiveMQQueue;
+import org.apache.activemq.artemis.junit.EmbeddedJMSResource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jms.connection.CachingConnectionFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import com.rest.aspect.Event;
+
+/**
+ * Measures the time the event of a REST request adds to the request, sent with a connection opened per send,
+ * as JmsProducer used to, and with the connection, sessions and producers cached. Reports the latency
+ * percentiles with 1, 4, 16 and 64 threads sending to an embedded broker. Run it with:
+ *
+ * mvn test-compile exec:java -Dexec.mainClass=com.rest.jms.producer.JmsProducerBenchmark -Dexec.classpathScope=test
+ *
+ * Against a broker on another host the connection per send also pays the network round trips of the handshake.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JmsProducerBenchmark {
+
+	@Param({ "uncached", "cached" })
+	public String connections;
+
+	private EmbeddedJMSResource broker;
+	private CachingConnectionFactory cachingConnectionFactory;
+	private Connection drain;
+	private JmsProducer jmsProducer;
+	private Event event;
+
+	@Setup
+	public void setUp() throws JMSException {
+		broker = new EmbeddedJMSResource();
+		broker.start();
+
+		ConnectionFactory connectionFactory = new ActiveMQJMSConnectionFactory("vm://0");
+		Destination eventsQueue = new ActiveMQQueue("events");
+
+		// Consume the events so that they don't pile up in the broker.
+		drain = connectionFactory.createConnection();
+		drain.createSession(false, Session.AUTO_ACKNOWLEDGE).createConsumer(eventsQueue).setMessageListener(message -> {});
+		drain.start();
+
+		if ("cached".equals(connections)) {
+			cachingConnectionFactory = new CachingConnectionFactory(connectionFactory);
+			cachingConnectionFactory.setSessionCacheSize(64);
+			cachingConnectionFactory.setReconnectOnException(true);
+			connectionFactory = cachingConnectionFactory;
+		}
+		jmsProducer = new JmsProducer(connectionFactory, eventsQueue);
+
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setMethod("GET");
+		request.setPathInfo("/customers/1");
+		request.setRemoteAddr("localhost");
+		event = new Event(request).start();
+	}
+
+	@TearDown
+	public void tearDown() throws JMSException {
+		if (cachingConnectionFactory != null) {
+			cachingConnectionFactory.destroy();
+		}
+		drain.close();
+		broker.stop();
+	}
+
+	@Benchmark
+	public void send() {
+		jmsProducer.send(event);
+	}
+
+	public static void main(String[] args) throws Exception {
+		for (int threads : new int[] { 1, 4, 16, 64 }) {
+			Options options = new OptionsBuilder()
+					.include(JmsProducerBenchmark.class.getSimpleName())
+					.threads(threads)
+					.build();
+			new Runner(options).run();
+		}
+	}
+}
@@ -5,10 +5,10 @@ import static org.junit.Assert.assertEquals;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.jms.BytesMessage;
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.MessageListener;
-import javax.jms.ObjectMessage;
 import javax.ws.rs.core.Response;
 
 import org.apache.activemq.artemis.junit.EmbeddedJMSResource;
@@ -21,6 +21,7 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import com.rest.aspect.Event;
+import com.rest.aspect.EventCodec;
 import com.rest.domain.Customer;
 
 /**
@@ -81,8 +82,10 @@ public class JmsProducerTest implements MessageListener {
 	@Override
 	public void onMessage(Message message) {
 		try {
-			ObjectMessage objectMessage = ((ObjectMessage) message);
-			Event receivedEvent = (Event) objectMessage.getObject();
+			BytesMessage bytesMessage = ((BytesMessage) message);
+			byte[] body = new byte[(int) bytesMessage.getBodyLength()];
+			bytesMessage.readBytes(body);
+			Event receivedEvent = EventCodec.decode(body);
 		
 			assertEquals(receivedEvent.getMethod(), method);
 			assertEquals(receivedEvent.getResourceURI(), pathInfo);
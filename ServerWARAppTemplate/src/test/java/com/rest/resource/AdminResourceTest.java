@@ -0,0 +1,96 @@
+package com.rest.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.core.Response;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import com.rest.dao.cache.CacheWrapper;
+import com.rest.dao.cache.HotKeySketch;
+import com.rest.domain.Customer;
+import com.rest.domain.EndpointLatencies;
+import com.rest.domain.EndpointLatency;
+import com.rest.domain.HotCustomer;
+import com.rest.domain.HotCustomers;
+import com.rest.exception.BadRequestException;
+import com.rest.jms.consumer.LatencyAggregator;
+
+public class AdminResourceTest {
+
+	@InjectMocks // Inject the mocks into the AdminResource.
+	private AdminResource adminResource;
+
+	@Mock
+	private HotKeySketch customerHotKeys;
+
+	@Mock
+	private CacheWrapper<Integer, Customer> customerPinnedCache;
+
+	@Mock
+	private LatencyAggregator latencyAggregator;
+
+	@Rule // Create the mocks based on the @Mock annotation
+	public MockitoRule rule = MockitoJUnit.rule();
+
+	@Rule
+	public ExpectedException exceptionRule = ExpectedException.none();
+
+	@Test
+	public void testGetHotCustomers() {
+		List<Map.Entry<Integer, Integer>> top = Arrays.asList(new AbstractMap.SimpleImmutableEntry<>(7, 120),
+				new AbstractMap.SimpleImmutableEntry<>(3, 40));
+		when(customerHotKeys.top(2)).thenReturn(top);
+		when(customerPinnedCache.containsKey(7)).thenReturn(true);
+
+		Response response = adminResource.getHotCustomers(2, new MockHttpServletRequest());
+
+		assertEquals(200, response.getStatus());
+		List<HotCustomer> hotCustomers = ((HotCustomers) response.getEntity()).getHotCustomers();
+		assertEquals(2, hotCustomers.size());
+		assertEquals(7, hotCustomers.get(0).getId());
+		assertEquals(120, hotCustomers.get(0).getEstimate());
+		assertTrue(hotCustomers.get(0).isPinned());
+		assertFalse(hotCustomers.get(1).isPinned());
+
+		// The limit is capped by the server.
+		when(customerHotKeys.top(AdminResource.MAX_HOT_CUSTOMERS)).thenReturn(Collections.emptyList());
+
+		response = adminResource.getHotCustomers(Integer.MAX_VALUE, new MockHttpServletRequest());
+
+		assertEquals(0, ((HotCustomers) response.getEntity()).getHotCustomers().size());
+	}
+
+	@Test
+	public void testGetLatencies() throws BadRequestException {
+		EndpointLatency latency = new EndpointLatency("GET", "/customers/{id}", "2xx", 5, 600, 2.0, 3, 8, 20, 45, 60);
+		when(latencyAggregator.getLatencies(5)).thenReturn(Collections.singletonList(latency));
+
+		Response response = adminResource.getLatencies(5, new MockHttpServletRequest());
+
+		assertEquals(200, response.getStatus());
+		assertEquals(1, ((EndpointLatencies) response.getEntity()).getEndpointLatencies().size());
+
+		exceptionRule.expect(BadRequestException.class);
+		exceptionRule.expectMessage("Bad Request");
+
+		// Call the AdminResource with a window that is not kept.
+		adminResource.getLatencies(2, new MockHttpServletRequest());
+	}
+}
@@ -1,13 +1,28 @@
 package com.rest.resource;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.function.Consumer;
 
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -16,11 +31,16 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.mock.web.MockHttpServletRequest;
 
 import com.rest.domain.Customer;
+import com.rest.domain.CustomerBatchResult;
+import com.rest.domain.CustomerBatchResults;
 import com.rest.domain.Customers;
 import com.rest.exception.BadRequestException;
+import com.rest.exception.ConflictException;
 import com.rest.exception.NotFoundException;
 import com.rest.service.CustomerService;
 import com.rest.service.validation.ValidationException;
@@ -77,13 +97,13 @@ public class CustomerResourceTest {
 		customers.add(customer2);
 
 		// Set up customer service to return the 2 customers defined above.
-		when(customerService.getCustomers()).thenReturn(customers);
+		when(customerService.getCustomers(0, CustomerResource.DEFAULT_PAGE_SIZE)).thenReturn(customers);
 
 		// Create a request without the accept header populated.
 		MockHttpServletRequest request = new MockHttpServletRequest();
 		
 		// Call the CustomerResource. The response defaults to json.
-		Response response = customerResource.getCustomers(request);
+		Response response = customerResource.getCustomers(null, 0, null, request);
 		
 		assertEquals(2, ((Customers) response.getEntity()).getCustomers().size());
 		assertEquals(200, response.getStatus());
@@ -93,7 +113,7 @@ public class CustomerResourceTest {
 		request.addHeader("Accept", "application/json");
 		
 		// Call the CustomerResource.
-		response = customerResource.getCustomers(request);
+		response = customerResource.getCustomers(null, 0, null, request);
 		
 		assertEquals(2, ((Customers) response.getEntity()).getCustomers().size());
 		assertEquals(200, response.getStatus());
@@ -103,11 +123,135 @@ public class CustomerResourceTest {
 		request.addHeader("Accept", "application/xml");
 		
 		// Call the CustomerResource.
-		response = customerResource.getCustomers(request);
+		response = customerResource.getCustomers(null, 0, null, request);
 		assertEquals(2, ((Customers) response.getEntity()).getCustomers().size());
 		assertEquals(200, response.getStatus());
 	}
 
+	@Test
+	public void testGetCustomersPage() {
+		Customer customer1 = new Customer("Nick", "Vujasin", "nick_vujasin@yahoo.com");
+		customer1.setId(1);
+		Customer customer2 = new Customer("Luka", "Vujasin", "luka_vujasin@yahoo.com");
+		customer2.setId(2);
+
+		List<Customer> customers = new ArrayList<>();
+		customers.add(customer1);
+		customers.add(customer2);
+
+		// Set up customer service to return a full page of 2 customers.
+		when(customerService.getCustomers(0, 2)).thenReturn(customers);
+		
+		Response response = customerResource.getCustomers(null, 2, null, new MockHttpServletRequest());
+		
+		// A full page hands back a cursor that points after the last customer.
+		String nextCursor = ((Customers) response.getEntity()).getNextCursor();
+		assertNotNull(nextCursor);
+		assertEquals(2, CustomerResource.decodeCursor(nextCursor));
+		
+		// Set up customer service to return an empty page after the last customer.
+		when(customerService.getCustomers(2, 2)).thenReturn(new ArrayList<>());
+		
+		response = customerResource.getCustomers(nextCursor, 2, null, new MockHttpServletRequest());
+		
+		assertEquals(0, ((Customers) response.getEntity()).getCustomers().size());
+		assertNull(((Customers) response.getEntity()).getNextCursor());
+		
+		// The limit is capped by the server.
+		when(customerService.getCustomers(0, CustomerResource.MAX_PAGE_SIZE)).thenReturn(customers);
+		
+		response = customerResource.getCustomers(null, Integer.MAX_VALUE, null, new MockHttpServletRequest());
+		
+		assertEquals(2, ((Customers) response.getEntity()).getCustomers().size());
+		assertNull(((Customers) response.getEntity()).getNextCursor());
+		
+		exceptionRule.expect(BadRequestException.class);
+		exceptionRule.expectMessage("Bad Request");
+
+		// Call the CustomerResource with a cursor that is not valid.
+		customerResource.getCustomers("not a cursor", 2, null, new MockHttpServletRequest());
+	}
+
+	@Test
+	public void testGetCustomersByIds() {
+		Customer customer1 = new Customer("Nick", "Vujasin", "nick_vujasin@yahoo.com");
+		customer1.setId(1);
+		Customer customer2 = new Customer("Luka", "Vujasin", "luka_vujasin@yahoo.com");
+		customer2.setId(2);
+
+		// Set up customer service to return the customers in the order of the ids, there is no customer 3.
+		when(customerService.getCustomers(new LinkedHashSet<>(Arrays.asList(2, 3, 1)))).thenReturn(Arrays.asList(customer2, customer1));
+		
+		// Duplicate ids are only retrieved once.
+		Response response = customerResource.getCustomers(null, 0, "2, 3,1,2", new MockHttpServletRequest());
+		
+		assertEquals(200, response.getStatus());
+		assertEquals(2, ((Customers) response.getEntity()).getCustomers().size());
+		assertEquals(2, ((Customers) response.getEntity()).getCustomers().get(0).getId());
+		assertNull(((Customers) response.getEntity()).getNextCursor());
+		
+		exceptionRule.expect(BadRequestException.class);
+		exceptionRule.expectMessage("Bad Request");
+
+		// Call the CustomerResource with ids that are not valid.
+		customerResource.getCustomers(null, 0, "1,a", new MockHttpServletRequest());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testGetCustomersExport() throws IOException {
+		Customer customer1 = new Customer("Nick", "Vujasin", "nick_vujasin@yahoo.com");
+		customer1.setId(1);
+		Customer customer2 = new Customer("Luka", "Vujasin", "luka_vujasin@yahoo.com");
+		customer2.setId(2);
+		
+		// Set up customer service to stream the 2 customers defined above.
+		doAnswer(invocation -> {
+			Consumer<Customer> consumer = (Consumer<Customer>) invocation.getArguments()[0];
+			consumer.accept(customer1);
+			consumer.accept(customer2);
+			return null;
+		}).when(customerService).streamCustomers(any());
+		
+		// Create a request without the accept header populated, Jersey accepts any type. The response defaults to json.
+		HttpHeaders headers = mock(HttpHeaders.class);
+		when(headers.getAcceptableMediaTypes()).thenReturn(Collections.singletonList(MediaType.WILDCARD_TYPE));
+		Response response = customerResource.getCustomersExport(new MockHttpServletRequest(), headers);
+		assertEquals(200, response.getStatus());
+		
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		((StreamingOutput) response.getEntity()).write(output);
+		
+		String json = output.toString("UTF-8");
+		assertTrue(json.startsWith("{\"customers\":["));
+		assertTrue(json.contains("\"first_name\":\"Nick\""));
+		assertTrue(json.contains("\"email\":\"luka_vujasin@yahoo.com\""));
+		
+		// Create a request preferring xml, "application/json;q=0.5, application/xml" sorted by Jersey.
+		when(headers.getAcceptableMediaTypes()).thenReturn(Arrays.asList(MediaType.APPLICATION_XML_TYPE, MediaType.APPLICATION_JSON_TYPE));
+		
+		response = customerResource.getCustomersExport(new MockHttpServletRequest(), headers);
+		assertEquals(200, response.getStatus());
+		
+		output = new ByteArrayOutputStream();
+		((StreamingOutput) response.getEntity()).write(output);
+		
+		String xml = output.toString("UTF-8");
+		assertTrue(xml.contains("<customers><customer>"));
+		assertTrue(xml.contains("<first_name>Luka</first_name>"));
+		assertTrue(xml.endsWith("</customer></customers>"));
+	}
+
+	@Test
+	public void testExportMediaType() {
+		// "application/json, application/xml;q=0.5" contains xml but prefers json.
+		assertEquals(MediaType.APPLICATION_JSON, CustomerResource.exportMediaType(
+				Arrays.asList(MediaType.APPLICATION_JSON_TYPE, MediaType.valueOf("application/xml;q=0.5"))));
+		assertEquals(MediaType.APPLICATION_XML, CustomerResource.exportMediaType(
+				Arrays.asList(MediaType.valueOf("text/html"), MediaType.APPLICATION_XML_TYPE, MediaType.WILDCARD_TYPE)));
+		assertEquals(MediaType.APPLICATION_JSON, CustomerResource.exportMediaType(Collections.emptyList()));
+	}
+
 	@Test
 	public void testDeleteCustomer() {
 		Response response = customerResource.deleteCustomer(1, new MockHttpServletRequest());
@@ -138,6 +282,37 @@ public class CustomerResourceTest {
 		customerResource.createCustomer(customer, new MockHttpServletRequest());
 	}
 
+	@Test
+	public void testCreateCustomers() {
+		Customer customer1 = new Customer("Nick", "Vujasin", "nick_vujasin@yahoo.com");
+		Customer customer2 = new Customer("Luka", "Vujasin", "");
+		
+		Customers customers = new Customers();
+		customers.add(customer1);
+		customers.add(customer2);
+		
+		CustomerBatchResults results = new CustomerBatchResults();
+		results.add(CustomerBatchResult.created(0, 1));
+		results.add(CustomerBatchResult.failed(1, Collections.singletonList("email:Email must be populated")));
+		
+		// Set up customer service to create the first customer and fail the second.
+		when(customerService.createCustomers(customers.getCustomers())).thenReturn(results);
+		
+		// Call the CustomerResource.
+		Response response = customerResource.createCustomers(customers, new MockHttpServletRequest());
+		
+		assertEquals(200, response.getStatus());
+		assertEquals(1, ((CustomerBatchResults) response.getEntity()).getCreated());
+		assertEquals(1, ((CustomerBatchResults) response.getEntity()).getFailed());
+		assertEquals(Integer.valueOf(1), ((CustomerBatchResults) response.getEntity()).getResults().get(0).getId());
+		
+		exceptionRule.expect(BadRequestException.class);
+		exceptionRule.expectMessage("Bad Request");
+		
+		// Call the CustomerResource with an empty batch.
+		customerResource.createCustomers(new Customers(), new MockHttpServletRequest());
+	}
+
 	@Test
 	public void testUpdateCustomer() throws ValidationException {
 		Customer customer = new Customer("Nick", "Vujasin", "nick_vujasin@yahoo.com");
@@ -157,4 +332,34 @@ public class CustomerResourceTest {
 		// Call the CustomerResource.
 		customerResource.updateCustomer(1, customer, new MockHttpServletRequest());
 	}
+
+	@Test
+	public void testUpdateCustomerConflict() throws ValidationException {
+		Customer customer = new Customer("Nick", "Vujasin", "nick_vujasin@yahoo.com");
+		customer.setVersion(0);
+
+		// Set up customer service void method update customer to throw an optimistic locking 
+		// failure, the customer was updated by another request.
+		doThrow(new OptimisticLockingFailureException("Stale version")).when(customerService).updateCustomer(1, customer);
+
+		exceptionRule.expect(ConflictException.class);
+		exceptionRule.expectMessage("Conflict");
+
+		// Call the CustomerResource.
+		customerResource.updateCustomer(1, customer, new MockHttpServletRequest());
+	}
+
+	@Test
+	public void testUpdateCustomerNotFound() throws ValidationException {
+		Customer customer = new Customer("Nick", "Vujasin", "nick_vujasin@yahoo.com");
+
+		// Set up customer service void method update customer to throw an empty result, there is no customer 1.
+		doThrow(new EmptyResultDataAccessException(1)).when(customerService).updateCustomer(1, customer);
+
+		exceptionRule.expect(NotFoundException.class);
+		exceptionRule.expectMessage("Not Found");
+
+		// Call the CustomerResource.
+		customerResource.updateCustomer(1, customer, new MockHttpServletRequest());
+	}
 }
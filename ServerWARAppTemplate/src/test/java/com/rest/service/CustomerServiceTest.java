@@ -1,8 +1,10 @@
 package com.rest.service;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.when;
 
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.Set;
 
 import javax.validation.ConstraintViolation;
@@ -14,8 +16,19 @@ import org.junit.BeforeClass;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.springframework.dao.DuplicateKeyException;
 
+import com.rest.dao.CustomerDAO;
+import com.rest.domain.Customer;
+import com.rest.domain.CustomerBatchResult;
+import com.rest.domain.CustomerBatchResults;
 import com.rest.service.impl.CustomerServiceImpl;
+import com.rest.service.validation.DomainValidatorFactory;
+import com.rest.service.validation.ValidationException;
 
 /** 
  * This class is really easy to test, it really is just a pass through between the REST and DAO layers that does validation.
@@ -27,6 +40,18 @@ public class CustomerServiceTest {
 	@Rule
 	public ExpectedException exceptionRule = ExpectedException.none();
 	
+	@InjectMocks // Inject the Mock customerDAO and validatorFactory into the CustomerServiceImpl.
+	private CustomerServiceImpl customerService;
+	
+	@Mock // Mock the DAO instance
+	private CustomerDAO customerDAO;
+	
+	@Mock // Mock the validator instance, every customer passes validation.
+	private DomainValidatorFactory validatorFactory;
+	
+	@Rule // Create the mocks based on the @Mock annotation
+	public MockitoRule rule = MockitoJUnit.rule();
+	
 	// The ExecutableValidator interface offers these 2 methods for method validation:
     // validateParameters() and validateReturnValue()
 	private static ExecutableValidator executableValidator;
@@ -50,4 +75,43 @@ public class CustomerServiceTest {
         assertEquals(1, violations.size());
         assertEquals(violations.iterator().next().getConstraintDescriptor().getAnnotation().annotationType().getSimpleName(), "NotNull");
     }
+    
+    @Test
+    public void duplicateEmailsInBatchOnCreateCustomers() {
+    	Customer customer1 = new Customer("Nick", "Vujasin", "nick_vujasin@yahoo.com");
+    	Customer customer2 = new Customer("Nikola", "Vujasin", "nick_vujasin@yahoo.com");
+    	Customer customer3 = new Customer("Luka", "Vujasin", "luka_vujasin@yahoo.com");
+    	
+    	// The DAO sets the generated ids on the customers it creates.
+    	when(customerDAO.createCustomers(Arrays.asList(customer1, customer3))).thenAnswer(invocation -> {
+    		customer1.setId(1);
+    		customer3.setId(2);
+    		return Arrays.asList(customer1, customer3);
+    	});
+    	
+    	CustomerBatchResults results = customerService.createCustomers(Arrays.asList(customer1, customer2, customer3));
+    	
+    	assertEquals(2, results.getCreated());
+    	assertEquals(1, results.getFailed());
+    	
+    	// The outcomes are reported in the order the customers were sent.
+    	assertEquals(CustomerBatchResult.Status.CREATED, results.getResults().get(0).getStatus());
+    	assertEquals(Integer.valueOf(1), results.getResults().get(0).getId());
+    	assertEquals(CustomerBatchResult.Status.FAILED, results.getResults().get(1).getStatus());
+    	assertEquals("email:The email is already taken", results.getResults().get(1).getErrors().get(0));
+    	assertEquals(CustomerBatchResult.Status.CREATED, results.getResults().get(2).getStatus());
+    	assertEquals(Integer.valueOf(2), results.getResults().get(2).getId());
+    }
+    
+    @Test
+    public void duplicateKeyOnCreateCustomer() throws ValidationException {
+    	Customer customer = new Customer("Nick", "Vujasin", "nick_vujasin@yahoo.com");
+    	
+    	// The unique constraint on the email rejects the customer.
+    	when(customerDAO.createCustomer(customer)).thenThrow(new DuplicateKeyException("The email is already taken"));
+    	
+    	exceptionRule.expect(ValidationException.class);
+    	
+    	customerService.createCustomer(customer);
+    }
 }
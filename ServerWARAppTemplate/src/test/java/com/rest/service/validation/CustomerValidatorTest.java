@@ -2,6 +2,9 @@ package com.rest.service.validation;
 
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
@@ -48,7 +51,7 @@ public class CustomerValidatorTest {
 		customers.add(customer1);
 		customers.add(customer2);
 		
-		when(customerDAO.getCustomers()).thenReturn(customers);
+		when(customerDAO.findByEmail("nick_vujasin@yahoo.com")).thenReturn(customer1);
 		
 		// Call the validator.
 		customerValidator.validate(customer, errors, ValidationOperation.CREATE);
@@ -75,7 +78,7 @@ public class CustomerValidatorTest {
 		customers.add(customer1);
 		customers.add(customer2);
 		
-		when(customerDAO.getCustomers()).thenReturn(customers);
+		when(customerDAO.findByEmail("nick_vujasin@yahoo.com")).thenReturn(customer1);
 		
 		// Call the validator.
 		customerValidator.validate(customer, errors, ValidationOperation.UPDATE);
@@ -84,6 +87,38 @@ public class CustomerValidatorTest {
 		assertNotNull(errors.getFieldError("email"));
 	}
 	
+	@Test
+	public void validateUpdateWithOwnEmail() {
+		Customer customer = new Customer("Nikola", "Vujasin", "nick_vujasin@yahoo.com");
+		customer.setId(1);
+		
+		BeanPropertyBindingResult errors = new BeanPropertyBindingResult(customer, "Errors");
+		
+		Customer customer1 = new Customer("Nick", "Vujasin", "nick_vujasin@yahoo.com");
+		customer1.setId(1);
+		
+		// The customer being updated is the one that has the email.
+		when(customerDAO.findByEmail("nick_vujasin@yahoo.com")).thenReturn(customer1);
+		
+		// Call the validator.
+		customerValidator.validate(customer, errors, ValidationOperation.UPDATE);
+		
+		assertTrue(errors.getAllErrors().size() == 0);
+	}
+	
+	@Test
+	public void validateCreateWithUniqueConstraint() {
+		Customer customer = new Customer("Nick", "Vujasin", "nick_vujasin@yahoo.com");
+		
+		BeanPropertyBindingResult errors = new BeanPropertyBindingResult(customer, "Errors");
+		
+		// Call the validator, the email is left to the unique constraint of the database.
+		customerValidator.validate(customer, errors, ValidationOperation.CREATE, UniquenessCheck.CONSTRAINT);
+		
+		assertTrue(errors.getAllErrors().size() == 0);
+		verify(customerDAO, never()).findByEmail(anyString());
+	}
+	
 	@Test
 	public void validateWithMissingFirstName() {
 		Customer customer = new Customer("", "Vujasin", "nick_vujasin@yahoo.com");